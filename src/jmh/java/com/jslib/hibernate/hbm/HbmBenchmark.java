@@ -0,0 +1,206 @@
+package com.jslib.hibernate.hbm;
+
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jslib.converter.Converter;
+import com.jslib.converter.ConverterRegistry;
+
+/**
+ * User defined types conversion cost, both directions. Values are read from an in-memory result set and written to a
+ * prepared statement that is never executed, so that measurement is dominated by user type logic.
+ * <p>
+ * Benchmarks with <code>converter</code> prefix replicate former user type logic, dispatching every value through
+ * generic converter, and are kept as baseline for per type codecs.
+ * 
+ * @author Iulian Rotaru
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HbmBenchmark
+{
+  private static final String[] URL_COLUMN = new String[] { "url" };
+  private static final String[] UUID_COLUMN = new String[] { "uuid" };
+  private static final String[] TIME_ZONE_COLUMN = new String[] { "timezone" };
+  private static final String[] STATUS_COLUMN = new String[] { "status" };
+
+  public static enum Status
+  {
+    NONE, CREATED, ACTIVE, SUSPENDED, CLOSED
+  }
+
+  public static class StatusHbm extends ObjectHbm<Status>
+  {
+    public StatusHbm()
+    {
+      super(Status.class);
+    }
+  }
+
+  private final UrlHbm urlHbm = new UrlHbm();
+  private final UuidHbm uuidHbm = new UuidHbm();
+  private final TimeZoneHbm timeZoneHbm = new TimeZoneHbm();
+  private final StatusHbm statusHbm = new StatusHbm();
+  private final Converter converter = ConverterRegistry.getConverter();
+
+  private SimpleResultSet resultSet;
+  private Connection connection;
+  private PreparedStatement statement;
+
+  private URL url;
+  private UUID uuid;
+  private TimeZone timeZone;
+
+  @Setup
+  public void setup() throws Exception
+  {
+    url = new URL("http://site.com/index.htm");
+    uuid = UUID.randomUUID();
+    timeZone = TimeZone.getTimeZone("Europe/Bucharest");
+
+    resultSet = new SimpleResultSet();
+    resultSet.addColumn("url", Types.VARCHAR, 255, 0);
+    resultSet.addColumn("uuid", Types.VARCHAR, 36, 0);
+    resultSet.addColumn("timezone", Types.VARCHAR, 64, 0);
+    resultSet.addColumn("status", Types.VARCHAR, 16, 0);
+    resultSet.addRow(url.toExternalForm(), uuid.toString(), timeZone.getID(), Status.ACTIVE.name());
+    resultSet.next();
+
+    connection = DriverManager.getConnection("jdbc:h2:mem:hbm");
+    statement = connection.prepareStatement("SELECT ?");
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException
+  {
+    statement.close();
+    connection.close();
+  }
+
+  @Benchmark
+  public Object urlGet() throws SQLException
+  {
+    return urlHbm.nullSafeGet(resultSet, URL_COLUMN, null);
+  }
+
+  @Benchmark
+  public Object uuidGet() throws SQLException
+  {
+    return uuidHbm.nullSafeGet(resultSet, UUID_COLUMN, null);
+  }
+
+  @Benchmark
+  public Object timeZoneGet() throws SQLException
+  {
+    return timeZoneHbm.nullSafeGet(resultSet, TIME_ZONE_COLUMN, null);
+  }
+
+  @Benchmark
+  public void urlSet() throws SQLException
+  {
+    urlHbm.nullSafeSet(statement, url, 1);
+  }
+
+  @Benchmark
+  public void uuidSet() throws SQLException
+  {
+    uuidHbm.nullSafeSet(statement, uuid, 1);
+  }
+
+  @Benchmark
+  public void timeZoneSet() throws SQLException
+  {
+    timeZoneHbm.nullSafeSet(statement, timeZone, 1);
+  }
+
+  @Benchmark
+  public Object statusGet() throws SQLException
+  {
+    return statusHbm.nullSafeGet(resultSet, STATUS_COLUMN, null);
+  }
+
+  @Benchmark
+  public void statusSet() throws SQLException
+  {
+    statusHbm.nullSafeSet(statement, Status.ACTIVE, 1);
+  }
+
+  @Benchmark
+  public Object converterUrlGet() throws SQLException
+  {
+    return converterGet(URL_COLUMN, URL.class);
+  }
+
+  @Benchmark
+  public Object converterUuidGet() throws SQLException
+  {
+    return converterGet(UUID_COLUMN, UUID.class);
+  }
+
+  @Benchmark
+  public Object converterTimeZoneGet() throws SQLException
+  {
+    return converterGet(TIME_ZONE_COLUMN, TimeZone.class);
+  }
+
+  @Benchmark
+  public Object converterStatusGet() throws SQLException
+  {
+    return converterGet(STATUS_COLUMN, Status.class);
+  }
+
+  @Benchmark
+  public void converterUrlSet() throws SQLException
+  {
+    statement.setString(1, converter.asString(url));
+  }
+
+  @Benchmark
+  public void converterUuidSet() throws SQLException
+  {
+    statement.setString(1, converter.asString(uuid));
+  }
+
+  @Benchmark
+  public void converterTimeZoneSet() throws SQLException
+  {
+    statement.setString(1, converter.asString(timeZone));
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private Object converterGet(String[] column, Class<?> clazz) throws SQLException
+  {
+    String value = resultSet.getString(column[0]);
+    if(resultSet.wasNull() || value.trim().length() == 0) {
+      return null;
+    }
+    if(clazz.isEnum()) {
+      return Enum.valueOf((Class<? extends Enum>)clazz, value);
+    }
+    return converter.asObject(value, clazz);
+  }
+}
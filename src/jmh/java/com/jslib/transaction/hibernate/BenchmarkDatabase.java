@@ -0,0 +1,69 @@
+package com.jslib.transaction.hibernate;
+
+import java.lang.reflect.Proxy;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.jslib.api.transaction.Transaction;
+import com.jslib.api.transaction.TransactionContext;
+
+/**
+ * Embedded H2 database shared by all benchmark threads. Creates transaction manager configured from
+ * <code>hibernate-h2.cfg.xml</code> and seeds person table with {@link #ROWS_COUNT} records.
+ * 
+ * @author Iulian Rotaru
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase
+{
+  public static final String CONFIG_FILE = "hibernate-h2.cfg.xml";
+
+  public static final int ROWS_COUNT = 1000;
+
+  TransactionManagerImpl transactionManager;
+
+  @Setup
+  public void setup()
+  {
+    transactionManager = new TransactionManagerImpl(new HibernateAdapter(CONFIG_FILE));
+
+    Transaction transaction = transactionManager.createTransaction(null);
+    try {
+      Session session = transaction.getResourceManager();
+      for(int i = 0; i < ROWS_COUNT; ++i) {
+        session.save(new Person());
+      }
+      transaction.commit();
+    }
+    finally {
+      transaction.close();
+    }
+  }
+
+  /**
+   * Create session manager on current thread transaction. Transaction context is a dynamic proxy that supports only
+   * resource manager retrieval, which is all session manager needs.
+   * 
+   * @return session manager instance.
+   */
+  SessionManager sessionManager()
+  {
+    TransactionContext context = (TransactionContext)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { TransactionContext.class }, (proxy, method, args) -> {
+      if(!method.getName().equals("getResourceManager")) {
+        throw new UnsupportedOperationException(method.getName());
+      }
+      return transactionManager.getSession();
+    });
+    return new SessionManagerImpl(context);
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    transactionManager.destroy();
+  }
+}
@@ -0,0 +1,161 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jslib.api.transaction.Transaction;
+
+/**
+ * Per transaction overhead of thread transaction context: lookup of current thread transaction and explicit binding
+ * of a transaction created on a different thread. High thread count variants measure contention, if any.
+ * <p>
+ * <code>swarm*</code> benchmarks run the same operations on {@link #SWARM_SIZE} concurrently alive threads, every
+ * thread performing a single operation, which is the usage pattern of a thread per request server; reported time is per
+ * thread. Thread local lookup on a fresh thread pays for thread local map creation, binding pays in addition for
+ * binding instance and restore on close. Compare both with <code>swarmBaseline</code> which only starts and joins
+ * threads. Virtual threads variant needs Java 21 runtime; on older runtimes it fails on setup.
+ * 
+ * @author Iulian Rotaru
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextBenchmark
+{
+  public static final int SWARM_SIZE = 10000;
+
+  /** Transaction created on trial setup thread, that is, not on benchmark thread. */
+  @State(Scope.Benchmark)
+  public static class ForeignTransaction
+  {
+    Transaction transaction;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkDatabase database)
+    {
+      transaction = database.transactionManager.createReadOnlyTransaction(null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+      transaction.close();
+    }
+  }
+
+  /** Thread factory for swarm threads, platform or virtual. */
+  @State(Scope.Benchmark)
+  public static class Swarm
+  {
+    @Param({ "platform", "virtual" })
+    String threads;
+
+    ThreadFactory threadFactory;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+      if(threads.equals("platform")) {
+        threadFactory = Thread::new;
+        return;
+      }
+      // virtual threads API is not available on Java 11 release target
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      threadFactory = (ThreadFactory)Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+    }
+
+    /**
+     * Start {@link #SWARM_SIZE} threads, release them at once when all are alive and wait for all to complete.
+     * 
+     * @param operation operation executed once by every thread.
+     */
+    void run(Supplier<Object> operation) throws InterruptedException
+    {
+      CountDownLatch start = new CountDownLatch(1);
+      Thread[] swarm = new Thread[SWARM_SIZE];
+      for(int i = 0; i < SWARM_SIZE; ++i) {
+        swarm[i] = threadFactory.newThread(() -> {
+          try {
+            start.await();
+          }
+          catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+          operation.get();
+        });
+        swarm[i].start();
+      }
+      start.countDown();
+      for(Thread thread : swarm) {
+        thread.join();
+      }
+    }
+  }
+
+  @Benchmark
+  public Object currentTransaction(BenchmarkDatabase database)
+  {
+    return database.transactionManager.getTransaction();
+  }
+
+  @Benchmark
+  public Object bindTransaction(BenchmarkDatabase database, ForeignTransaction foreign)
+  {
+    TransactionBinding binding = database.transactionManager.bind(foreign.transaction);
+    try {
+      return database.transactionManager.getTransaction();
+    }
+    finally {
+      binding.close();
+    }
+  }
+
+  @Benchmark
+  @Threads(64)
+  public Object bindTransactionConcurrent(BenchmarkDatabase database, ForeignTransaction foreign)
+  {
+    return bindTransaction(database, foreign);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SWARM_SIZE)
+  public void swarmBaseline(Swarm swarm) throws InterruptedException
+  {
+    swarm.run(() -> null);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SWARM_SIZE)
+  public void swarmCurrentTransaction(BenchmarkDatabase database, Swarm swarm) throws InterruptedException
+  {
+    swarm.run(() -> currentTransaction(database));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SWARM_SIZE)
+  public void swarmBindTransaction(BenchmarkDatabase database, ForeignTransaction foreign, Swarm swarm) throws InterruptedException
+  {
+    swarm.run(() -> bindTransaction(database, foreign));
+  }
+}
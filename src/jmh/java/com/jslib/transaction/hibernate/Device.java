@@ -0,0 +1,26 @@
+package com.jslib.transaction.hibernate;
+
+import java.net.URL;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * Benchmark entity with properties mapped on stock user defined types. It is mapped twice, see
+ * <code>benchmark-device.hbm</code>: entity <code>Device</code> uses immutable user types whereas
+ * <code>MutableDevice</code> uses the same types declared mutable.
+ * 
+ * @author Iulian Rotaru
+ */
+public class Device
+{
+  public static enum Status
+  {
+    NONE, ACTIVE, SUSPENDED, RETIRED
+  }
+
+  public int id;
+  public UUID serial;
+  public TimeZone timeZone;
+  public URL endpoint;
+  public Status status;
+}
@@ -0,0 +1,151 @@
+package com.jslib.transaction.hibernate;
+
+import java.net.URL;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jslib.api.transaction.Transaction;
+import com.jslib.hibernate.hbm.ObjectHbm;
+
+/**
+ * Flush dirty check cost over {@link #DEVICES_COUNT} loaded and unchanged entities, with properties mapped on immutable
+ * user types, entity <code>Device</code>, versus the same user types declared mutable, entity
+ * <code>MutableDevice</code>, that is, former behavior of all stock user types: declared mutable, with values not
+ * copied. Mutable user types below use {@link ObjectHbm#ObjectHbm(Class, boolean)} that does not opt in for codec copy,
+ * so that baseline measures dirty check on mutable types, not string codec round trips.
+ * 
+ * @author Iulian Rotaru
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlushBenchmark
+{
+  static final int DEVICES_COUNT = 100000;
+
+  private static final int BATCH_SIZE = 1000;
+
+  @State(Scope.Benchmark)
+  public static class Devices
+  {
+    @Setup(Level.Trial)
+    public void setup(BenchmarkDatabase database) throws Exception
+    {
+      Transaction transaction = database.transactionManager.createTransaction(null);
+      try {
+        Session session = transaction.getResourceManager();
+        TimeZone[] timeZones = new TimeZone[] { TimeZone.getTimeZone("UTC"), TimeZone.getTimeZone("Europe/Bucharest") };
+        URL endpoint = new URL("http://site.com/device");
+        for(int i = 0; i < DEVICES_COUNT; ++i) {
+          for(String entityName : new String[] { "Device", "MutableDevice" }) {
+            Device device = new Device();
+            device.serial = UUID.randomUUID();
+            device.timeZone = timeZones[i % timeZones.length];
+            device.endpoint = endpoint;
+            device.status = Device.Status.values()[i % Device.Status.values().length];
+            session.save(entityName, device);
+          }
+          if(i % BATCH_SIZE == 0) {
+            session.flush();
+            session.clear();
+          }
+        }
+        transaction.commit();
+      }
+      finally {
+        transaction.close();
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class LoadedSession
+  {
+    @Param({ "Device", "MutableDevice" })
+    String entityName;
+
+    Transaction transaction;
+    Session session;
+    List<?> devices;
+
+    @Setup(Level.Iteration)
+    public void setup(BenchmarkDatabase database, Devices devices)
+    {
+      transaction = database.transactionManager.createTransaction(null);
+      session = transaction.getResourceManager();
+      this.devices = session.createQuery("from " + entityName).list();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown()
+    {
+      // there are no changes to commit; closing not committed transaction rolls it back
+      transaction.close();
+    }
+  }
+
+  @Benchmark
+  public void flush(LoadedSession loaded)
+  {
+    loaded.session.flush();
+  }
+
+  public static class StatusHbm extends ObjectHbm<Device.Status>
+  {
+    public StatusHbm()
+    {
+      super(Device.Status.class, false);
+    }
+  }
+
+  public static class MutableStatusHbm extends ObjectHbm<Device.Status>
+  {
+    public MutableStatusHbm()
+    {
+      super(Device.Status.class, true);
+    }
+  }
+
+  public static class MutableUuidHbm extends ObjectHbm<UUID>
+  {
+    public MutableUuidHbm()
+    {
+      super(UUID.class, true);
+    }
+  }
+
+  public static class MutableTimeZoneHbm extends ObjectHbm<TimeZone>
+  {
+    public MutableTimeZoneHbm()
+    {
+      super(TimeZone.class, true);
+    }
+  }
+
+  public static class MutableUrlHbm extends ObjectHbm<URL>
+  {
+    public MutableUrlHbm()
+    {
+      super(URL.class, true);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jslib.api.transaction.Transaction;
+
+/**
+ * HQL query with a collection parameter bound to an <code>IN</code> clause, with and without values list padding. Every
+ * invocation uses the next list size from a fixed sequence of sizes up to {@link #maxListSize} so that, without padding,
+ * Hibernate and JDBC statement caches see many distinct SQL statements.
+ * <p>
+ * Padding is a session factory setting so every trial builds its own transaction manager on benchmark database, with
+ * padding property set as requested by {@link #padding} parameter.
+ * 
+ * @author Iulian Rotaru
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InClauseBenchmark
+{
+  @Param({ "false", "true" })
+  public boolean padding;
+
+  @Param({ "16", "128", "900" })
+  public int maxListSize;
+
+  private TransactionManagerImpl transactionManager;
+  private Transaction transaction;
+  private Session session;
+  private List<List<Integer>> lists;
+  private int index;
+
+  @Setup(Level.Trial)
+  public void setupTrial(BenchmarkDatabase database)
+  {
+    Configuration configuration = new Configuration().configure(BenchmarkDatabase.CONFIG_FILE);
+    // keep benchmark database rows, already created by shared database state
+    configuration.getProperties().remove("hibernate.hbm2ddl.auto");
+    configuration.setProperty(InClause.PADDING_PROPERTY, Boolean.toString(padding));
+    transactionManager = new TransactionManagerImpl(configuration);
+
+    lists = new ArrayList<>();
+    for(int size = 1; size <= maxListSize; ++size) {
+      List<Integer> ids = new ArrayList<>(size);
+      for(int i = 1; i <= size; ++i) {
+        ids.add(i);
+      }
+      lists.add(ids);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setup()
+  {
+    transaction = transactionManager.createReadOnlyTransaction(null);
+    session = transaction.getResourceManager();
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown()
+  {
+    transaction.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial()
+  {
+    transactionManager.destroy();
+  }
+
+  @Benchmark
+  public List<Person> hqlInList()
+  {
+    List<Integer> ids = lists.get(index++ % lists.size());
+    session.clear();
+    return new HqlQueryImpl(session, "from Person p where p.id in (:ids)").param("ids", ids).list();
+  }
+}
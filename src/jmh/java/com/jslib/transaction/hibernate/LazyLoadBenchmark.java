@@ -0,0 +1,114 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jslib.api.transaction.Transaction;
+
+/**
+ * List of {@link #MEMBERS_COUNT} members with two lazy fields, team proxy and tags collection, initialized per row, as
+ * {@link Hibernate#initialize(Object)} on every entity field, versus batch initialization from
+ * {@link HqlQuery#load(String...)}. Session is cleared before every list so that lazy fields are not initialized.
+ * 
+ * @author Iulian Rotaru
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LazyLoadBenchmark
+{
+  static final int MEMBERS_COUNT = 1000;
+
+  private static final int TEAMS_COUNT = 50;
+
+  @State(Scope.Benchmark)
+  public static class Members
+  {
+    @Setup(Level.Trial)
+    public void setup(BenchmarkDatabase database)
+    {
+      Transaction transaction = database.transactionManager.createTransaction(null);
+      try {
+        Session session = transaction.getResourceManager();
+        Team[] teams = new Team[TEAMS_COUNT];
+        for(int i = 0; i < TEAMS_COUNT; ++i) {
+          teams[i] = new Team();
+          teams[i].name = "team-" + i;
+          session.save(teams[i]);
+        }
+        for(int i = 0; i < MEMBERS_COUNT; ++i) {
+          Member member = new Member();
+          member.name = "member-" + i;
+          member.team = teams[i % TEAMS_COUNT];
+          member.tags.add("tag-" + i % 7);
+          member.tags.add("tag-" + i % 11);
+          session.save(member);
+        }
+        transaction.commit();
+      }
+      finally {
+        transaction.close();
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class QuerySession
+  {
+    Transaction transaction;
+    Session session;
+
+    @Setup(Level.Iteration)
+    public void setup(BenchmarkDatabase database)
+    {
+      transaction = database.transactionManager.createReadOnlyTransaction(null);
+      session = transaction.getResourceManager();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown()
+    {
+      transaction.close();
+    }
+
+    Session session()
+    {
+      session.clear();
+      return session;
+    }
+  }
+
+  @Benchmark
+  public List<Member> perRowInitialize(Members members, QuerySession query)
+  {
+    List<Member> list = new HqlQueryImpl(query.session(), "from Member").list();
+    for(Member member : list) {
+      Hibernate.initialize(member.team);
+      Hibernate.initialize(member.tags);
+    }
+    return list;
+  }
+
+  @Benchmark
+  public List<Member> batchLoad(Members members, QuerySession query)
+  {
+    return new HqlQueryImpl(query.session(), "from Member").load("team", "tags").list();
+  }
+}
@@ -0,0 +1,17 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Benchmark entity with two lazy fields: team proxy and tags collection.
+ * 
+ * @author Iulian Rotaru
+ */
+public class Member
+{
+  public int id;
+  public String name;
+  public Team team;
+  public Set<String> tags = new HashSet<>();
+}
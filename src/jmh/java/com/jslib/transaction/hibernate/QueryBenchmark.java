@@ -0,0 +1,107 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jslib.api.transaction.Transaction;
+
+/**
+ * HQL and SQL query helpers executed on a read-only session kept open for the whole measurement iteration. Session
+ * first level cache is cleared before every query so that rows hydration is part of the measurement.
+ * 
+ * @author Iulian Rotaru
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark
+{
+  private static final int LIST_SIZE = 100;
+
+  @State(Scope.Thread)
+  public static class QuerySession
+  {
+    Transaction transaction;
+    Session session;
+
+    @Setup(Level.Iteration)
+    public void setup(BenchmarkDatabase database)
+    {
+      transaction = database.transactionManager.createReadOnlyTransaction(null);
+      session = transaction.getResourceManager();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown()
+    {
+      transaction.close();
+    }
+
+    Session session()
+    {
+      session.clear();
+      return session;
+    }
+  }
+
+  @Benchmark
+  public List<Person> hqlList(QuerySession query)
+  {
+    return new HqlQueryImpl(query.session(), "from Person where id<=?", LIST_SIZE).list();
+  }
+
+  @Benchmark
+  public Map<Integer, String> hqlMap(QuerySession query)
+  {
+    return new HqlQueryImpl(query.session(), "select p.id,p.name from Person p where p.id<=?", LIST_SIZE).map();
+  }
+
+  @Benchmark
+  public Person hqlObject(QuerySession query)
+  {
+    return new HqlQueryImpl(query.session(), "from Person where id=?", 1).object();
+  }
+
+  @Benchmark
+  public Long sqlScalarObject(QuerySession query)
+  {
+    return new SqlQueryImpl(query.session(), "SELECT COUNT(*) AS count FROM person").object("count", Long.class);
+  }
+
+  @Benchmark
+  public List<Integer> sqlScalarList(QuerySession query)
+  {
+    return new SqlQueryImpl(query.session(), "SELECT age FROM person WHERE id<=?", LIST_SIZE).list("age", Integer.class);
+  }
+
+  @Benchmark
+  public List<Person> sqlEntityList(QuerySession query)
+  {
+    return new SqlQueryImpl(query.session(), "SELECT * FROM person WHERE id<=?", LIST_SIZE).list(Person.class);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public List<Person> hqlListConcurrent(QuerySession query)
+  {
+    return hqlList(query);
+  }
+}
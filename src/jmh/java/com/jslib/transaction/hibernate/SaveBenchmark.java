@@ -0,0 +1,96 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jslib.api.transaction.Transaction;
+
+/**
+ * Import of {@link #ENTITIES_COUNT} new entities in a single transaction: one by one save, batch save and stateless
+ * session insert. Results are reported per entity; rows per second is the inverse of average time.
+ * 
+ * @author Iulian Rotaru
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(SaveBenchmark.ENTITIES_COUNT)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SaveBenchmark
+{
+  static final int ENTITIES_COUNT = 100000;
+
+  private static final int BATCH_SIZE = 50;
+
+  @State(Scope.Thread)
+  public static class Entities
+  {
+    List<Person> persons;
+
+    @Setup(Level.Invocation)
+    public void setup()
+    {
+      persons = new ArrayList<>(ENTITIES_COUNT);
+      for(int i = 0; i < ENTITIES_COUNT; ++i) {
+        Person person = new Person();
+        // zero ID marks entity as transient, see mapping
+        person.id = 0;
+        persons.add(person);
+      }
+    }
+  }
+
+  @Benchmark
+  public void saveLoop(BenchmarkDatabase database, Entities entities)
+  {
+    Transaction transaction = database.transactionManager.createTransaction(null);
+    try {
+      database.sessionManager().save(entities.persons);
+      transaction.commit();
+    }
+    finally {
+      transaction.close();
+    }
+  }
+
+  @Benchmark
+  public void saveBatch(BenchmarkDatabase database, Entities entities)
+  {
+    Transaction transaction = database.transactionManager.createTransaction(null);
+    try {
+      database.sessionManager().save(entities.persons, BATCH_SIZE);
+      transaction.commit();
+    }
+    finally {
+      transaction.close();
+    }
+  }
+
+  @Benchmark
+  public void insertStateless(BenchmarkDatabase database, Entities entities)
+  {
+    Transaction transaction = database.transactionManager.createTransaction(null);
+    try {
+      database.sessionManager().insert(entities.persons);
+      transaction.commit();
+    }
+    finally {
+      transaction.close();
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package com.jslib.transaction.hibernate;
+
+/**
+ * Benchmark entity referenced by {@link Member} through a lazy, proxied, association.
+ * 
+ * @author Iulian Rotaru
+ */
+public class Team
+{
+  public int id;
+  public String name;
+}
@@ -0,0 +1,94 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jslib.api.transaction.Transaction;
+
+/**
+ * Transaction open / close cost for writable, read-only and nested transactions, single and multi-thread. Every
+ * transaction loads one person by ID so that session actually acquires a JDBC connection.
+ * 
+ * @author Iulian Rotaru
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionBenchmark
+{
+  @Benchmark
+  public Object writableTransaction(BenchmarkDatabase database)
+  {
+    Transaction transaction = database.transactionManager.createTransaction(null);
+    try {
+      Session session = transaction.getResourceManager();
+      Object person = session.get(Person.class, 1);
+      transaction.commit();
+      return person;
+    }
+    finally {
+      transaction.close();
+    }
+  }
+
+  @Benchmark
+  public Object readOnlyTransaction(BenchmarkDatabase database)
+  {
+    Transaction transaction = database.transactionManager.createReadOnlyTransaction(null);
+    try {
+      Session session = transaction.getResourceManager();
+      return session.get(Person.class, 1);
+    }
+    finally {
+      transaction.close();
+    }
+  }
+
+  @Benchmark
+  public Object nestedTransaction(BenchmarkDatabase database)
+  {
+    Transaction transaction = database.transactionManager.createTransaction(null);
+    try {
+      Transaction nested = database.transactionManager.createTransaction(null);
+      Object person;
+      try {
+        Session session = nested.getResourceManager();
+        person = session.get(Person.class, 1);
+        nested.commit();
+      }
+      finally {
+        nested.close();
+      }
+      transaction.commit();
+      return person;
+    }
+    finally {
+      transaction.close();
+    }
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Object writableTransactionConcurrent(BenchmarkDatabase database)
+  {
+    return writableTransaction(database);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Object readOnlyTransactionConcurrent(BenchmarkDatabase database)
+  {
+    return readOnlyTransaction(database);
+  }
+}
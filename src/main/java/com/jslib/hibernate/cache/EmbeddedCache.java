@@ -0,0 +1,215 @@
+package com.jslib.hibernate.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.cache.Cache;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.Timestamper;
+
+/**
+ * Embedded cache region, bounded and with optional entries time to live. Entries are kept in least recently used order
+ * and eldest entry is evicted when region size exceeds maximum entries. Expired entries are removed lazily, on read.
+ * Region counts hits, misses and evictions, for monitoring.
+ * <p>
+ * This region does not support locking; it is meant for read only and non strict read write cache concurrency
+ * strategies, as Hibernate stock hash table cache.
+ * <p>
+ * This region implements Hibernate legacy cache SPI, see {@link EmbeddedCacheProvider}.
+ * 
+ * @author Iulian Rotaru
+ */
+@SuppressWarnings("deprecation")
+public class EmbeddedCache implements Cache {
+	/** Lock timeout, in Hibernate timestamp units, used only by read write cache concurrency strategy. */
+	private static final int TIMEOUT = Timestamper.ONE_MS * 60000;
+
+	private final String regionName;
+	/** Maximum number of entries or zero for not bounded region. */
+	private final int maxEntries;
+	/** Entries time to live, in milliseconds, or zero if entries never expire. */
+	private final long ttl;
+
+	/** Cache entries in least recently used order, guarded by this map lock. */
+	private final Map<Object, CacheEntry> entries;
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * Create cache region.
+	 * 
+	 * @param regionName region name,
+	 * @param maxEntries maximum number of entries, zero for not bounded region,
+	 * @param ttl entries time to live, in milliseconds, zero if entries never expire.
+	 */
+	public EmbeddedCache(String regionName, int maxEntries, long ttl) {
+		this.regionName = regionName;
+		this.maxEntries = maxEntries;
+		this.ttl = ttl;
+		this.entries = new LinkedHashMap<Object, CacheEntry>(64, 0.75F, true) {
+			private static final long serialVersionUID = 4812340875325960162L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, CacheEntry> eldest) {
+				if (EmbeddedCache.this.maxEntries > 0 && size() > EmbeddedCache.this.maxEntries) {
+					evictionCount.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	@Override
+	public Object read(Object key) throws CacheException {
+		return get(key);
+	}
+
+	@Override
+	public Object get(Object key) throws CacheException {
+		synchronized (entries) {
+			CacheEntry entry = entries.get(key);
+			if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+				entries.remove(key);
+				evictionCount.increment();
+				entry = null;
+			}
+			if (entry == null) {
+				missCount.increment();
+				return null;
+			}
+			hitCount.increment();
+			return entry.value;
+		}
+	}
+
+	@Override
+	public void put(Object key, Object value) throws CacheException {
+		CacheEntry entry = new CacheEntry(value, ttl > 0 ? System.currentTimeMillis() + ttl : 0);
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+	}
+
+	@Override
+	public void update(Object key, Object value) throws CacheException {
+		put(key, value);
+	}
+
+	@Override
+	public void remove(Object key) throws CacheException {
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	@Override
+	public void clear() throws CacheException {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	@Override
+	public void destroy() throws CacheException {
+		clear();
+	}
+
+	@Override
+	public void lock(Object key) throws CacheException {
+		// local cache is not cluster aware and does not need locking
+	}
+
+	@Override
+	public void unlock(Object key) throws CacheException {
+	}
+
+	@Override
+	public long nextTimestamp() {
+		return Timestamper.next();
+	}
+
+	@Override
+	public int getTimeout() {
+		return TIMEOUT;
+	}
+
+	@Override
+	public String getRegionName() {
+		return regionName;
+	}
+
+	@Override
+	public long getSizeInMemory() {
+		return -1;
+	}
+
+	@Override
+	public long getElementCountInMemory() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	@Override
+	public long getElementCountOnDisk() {
+		return 0;
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public Map toMap() {
+		long now = System.currentTimeMillis();
+		Map<Object, Object> map = new HashMap<>();
+		synchronized (entries) {
+			for (Map.Entry<Object, CacheEntry> entry : entries.entrySet()) {
+				if (!entry.getValue().isExpired(now)) {
+					map.put(entry.getKey(), entry.getValue().value);
+				}
+			}
+		}
+		return map;
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * Get number of entries removed because region size exceeded maximum entries or because entries expired.
+	 * 
+	 * @return evictions count.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "EmbeddedCache(" + regionName + ')';
+	}
+
+	/** Cache entry with expiration timestamp. */
+	private static final class CacheEntry {
+		final Object value;
+		/** Expiration timestamp, in milliseconds, or zero if entry never expires. */
+		final long expires;
+
+		CacheEntry(Object value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+
+		boolean isExpired(long now) {
+			return expires != 0 && now >= expires;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.jslib.hibernate.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.cache.Cache;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.CacheProvider;
+import org.hibernate.cache.Timestamper;
+
+/**
+ * Hibernate cache provider for embedded, in process, second level and query caches. Needs no external cache server and
+ * is suitable for reference data and for tests. Enable it with <code>hibernate.cache.provider_class</code> property;
+ * Hibernate adapter uses this provider if second level or query cache is enabled and there is no cache provider or
+ * region factory configured.
+ * <p>
+ * Every cache region is bounded and evicts least recently used entries. Cache regions are configured from Hibernate
+ * properties, with region specific properties taking precedence:
+ * <ul>
+ * <li><code>hibernate.cache.embedded.max_entries</code> - maximum number of entries per region, default to 10000,
+ * <li><code>hibernate.cache.embedded.ttl</code> - entries time to live, in seconds, default to zero, that is, no
+ * expiration,
+ * <li><code>hibernate.cache.embedded.[region].max_entries</code> - maximum number of entries for named region,
+ * <li><code>hibernate.cache.embedded.[region].ttl</code> - entries time to live for named region.
+ * </ul>
+ * Hibernate update timestamps region is never bounded and its entries never expire since an evicted timestamp would
+ * allow stale query cache results.
+ * <p>
+ * Cache regions are registered by name for hit / miss monitoring, see {@link #getCache(String)}. If multiple session
+ * factories use this provider, e.g. multiple tenants, configure <code>hibernate.cache.region_prefix</code> to keep
+ * regions names distinct; otherwise last created region hides previous ones with the same name.
+ * <p>
+ * Read replicas session factories have second level and query caches disabled: replica caches would not be invalidated
+ * by writes on primary database and, with no time to live configured, would serve stale entries forever.
+ * <p>
+ * This provider is built on Hibernate legacy cache provider SPI, deprecated in favor of region factories but still
+ * supported by Hibernate 3.6; it is the simplest SPI for a non transactional cache and is used by Hibernate stock
+ * providers too.
+ * 
+ * @author Iulian Rotaru
+ */
+@SuppressWarnings("deprecation")
+public class EmbeddedCacheProvider implements CacheProvider {
+	/** Properties prefix for embedded cache configuration. */
+	public static final String PROPERTY_PREFIX = "hibernate.cache.embedded.";
+
+	private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	/** Hibernate region for tables update timestamps, used to invalidate query cache. */
+	private static final String UPDATE_TIMESTAMPS_REGION = "org.hibernate.cache.UpdateTimestampsCache";
+
+	/** Live cache regions by name. */
+	private static final Map<String, EmbeddedCache> caches = new ConcurrentHashMap<>();
+
+	/**
+	 * Get cache region by name.
+	 * 
+	 * @param regionName region name, including configured region prefix.
+	 * @return cache region or null if region is not created.
+	 */
+	public static EmbeddedCache getCache(String regionName) {
+		return caches.get(regionName);
+	}
+
+	/**
+	 * Get all live cache regions.
+	 * 
+	 * @return cache regions.
+	 */
+	public static Collection<EmbeddedCache> getCaches() {
+		return Collections.unmodifiableCollection(caches.values());
+	}
+
+	@Override
+	public Cache buildCache(String regionName, Properties properties) throws CacheException {
+		int maxEntries = 0;
+		long ttl = 0;
+		if (!regionName.endsWith(UPDATE_TIMESTAMPS_REGION)) {
+			maxEntries = integer(properties, regionName, "max_entries", DEFAULT_MAX_ENTRIES);
+			ttl = integer(properties, regionName, "ttl", 0);
+		}
+		EmbeddedCache cache = new EmbeddedCache(regionName, maxEntries, ttl * 1000L) {
+			@Override
+			public void destroy() {
+				super.destroy();
+				caches.remove(regionName, this);
+			}
+		};
+		caches.put(regionName, cache);
+		return cache;
+	}
+
+	@Override
+	public long nextTimestamp() {
+		return Timestamper.next();
+	}
+
+	@Override
+	public void start(Properties properties) throws CacheException {
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	@Override
+	public boolean isMinimalPutsEnabledByDefault() {
+		return false;
+	}
+
+	private static int integer(Properties properties, String regionName, String name, int defaultValue) {
+		String value = properties.getProperty(PROPERTY_PREFIX + regionName + '.' + name);
+		if (value == null) {
+			value = properties.getProperty(PROPERTY_PREFIX + name);
+		}
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new CacheException(String.format("Invalid embedded cache property |%s| for region |%s|.", name, regionName));
+		}
+	}
+}
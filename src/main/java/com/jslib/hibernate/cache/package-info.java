@@ -0,0 +1,6 @@
+/**
+ * Embedded, in process, Hibernate second level cache.
+ *
+ * @author Iulian Rotaru
+ */
+package com.jslib.hibernate.cache;
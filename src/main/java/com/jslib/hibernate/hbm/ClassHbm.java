@@ -9,6 +9,6 @@ package com.jslib.hibernate.hbm;
 public class ClassHbm extends ObjectHbm<Class> {
 	/** Create user defined type for Java class. */
 	public ClassHbm() {
-		super(Class.class);
+		super(Class.class, false);
 	}
 }
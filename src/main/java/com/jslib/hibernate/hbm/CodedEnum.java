@@ -0,0 +1,33 @@
+package com.jslib.hibernate.hbm;
+
+/**
+ * Enumeration with explicit persistent codes, used by {@link EnumHbm}. Codes should be unique per enumeration and
+ * stable across releases, so that constants can be reordered or inserted without data migration.
+ * 
+ * <pre>
+ * public enum State implements CodedEnum {
+ * 	CREATED(1), ACTIVE(2), CLOSED(9);
+ * 
+ * 	private final int code;
+ * 
+ * 	private State(int code) {
+ * 		this.code = code;
+ * 	}
+ * 
+ * 	&#64;Override
+ * 	public int code() {
+ * 		return code;
+ * 	}
+ * }
+ * </pre>
+ * 
+ * @author Iulian Rotaru
+ */
+public interface CodedEnum {
+	/**
+	 * Get persistent code for this enumeration constant.
+	 * 
+	 * @return constant code.
+	 */
+	int code();
+}
@@ -0,0 +1,489 @@
+package com.jslib.hibernate.hbm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import org.hibernate.HibernateException;
+
+/**
+ * Compact binary encoder and decoder for value objects stored by {@link CompactValueHbm}. Codec is created once per value
+ * class, on first use, and holds a field handle and a field writer for every persistent field, so that there is no
+ * reflection on encoding or decoding.
+ * <p>
+ * Persistent fields are all not static and not transient fields, including inherited ones, in fields name order. Every
+ * field is written with its own binary format and, if not primitive, prefixed by a null flag. Supported field types are
+ * primitives and their boxing classes, string, enumeration, UUID, date, big decimal and nested value objects, that are
+ * encoded recursively. Value class should have a no arguments constructor, not necessarily public, and persistent
+ * fields should not be final since decoder sets fields after instance creation.
+ * <p>
+ * Encoded format has no field names so adding, removing or renaming fields invalidates stored values. To detect this,
+ * every encoded value object, nested ones included, starts with a 32 bits schema fingerprint computed from persistent
+ * fields names and types; decoding a value with a different fingerprint fails instead of returning garbage.
+ * 
+ * @author Iulian Rotaru
+ * @param <T> value type.
+ */
+final class CompactCodec<T> {
+	/** Codecs cache, created on first request for a value class. */
+	private static final ClassValue<CompactCodec<?>> CODECS = new ClassValue<CompactCodec<?>>() {
+		@Override
+		protected CompactCodec<?> computeValue(Class<?> type) {
+			return new CompactCodec<>(type);
+		}
+	};
+
+	/**
+	 * Get codec for requested value class.
+	 * 
+	 * @param type value class.
+	 * @param <T> value type.
+	 * @return value class codec.
+	 * @throws HibernateException if value class has no default constructor or has fields with not supported type.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> CompactCodec<T> forClass(Class<T> type) {
+		return (CompactCodec<T>) CODECS.get(type);
+	}
+
+	private final Class<T> type;
+	private final MethodHandle constructor;
+	private final List<Property> properties = new ArrayList<>();
+	/** Schema fingerprint, CRC32 of persistent fields names and types, written before every encoded value. */
+	private final int fingerprint;
+
+	private CompactCodec(Class<T> type) {
+		this.type = type;
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+			this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class));
+
+			List<Field> fields = new ArrayList<>();
+			for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+				for (Field field : clazz.getDeclaredFields()) {
+					if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+						fields.add(field);
+					}
+				}
+			}
+			fields.sort(Comparator.comparing(Field::getName));
+
+			CRC32 crc = new CRC32();
+			for (Field field : fields) {
+				if (Modifier.isFinal(field.getModifiers())) {
+					throw new HibernateException(String.format("Not supported final field |%s| on value class |%s|.", field.getName(), type.getName()));
+				}
+				crc.update((field.getName() + ':' + field.getType().getName() + ';').getBytes(StandardCharsets.UTF_8));
+				VarHandle handle = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup()).unreflectVarHandle(field);
+				properties.add(property(field, handle));
+			}
+			this.fingerprint = (int) crc.getValue();
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new HibernateException(String.format("Value class |%s| has no accessible default constructor.", type.getName()), e);
+		}
+	}
+
+	/**
+	 * Encode value to bytes.
+	 * 
+	 * @param value not null value.
+	 * @return encoded bytes.
+	 */
+	public byte[] encode(T value) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try {
+			write(value, new DataOutputStream(bytes));
+		} catch (IOException e) {
+			throw new HibernateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decode value from bytes.
+	 * 
+	 * @param bytes encoded bytes.
+	 * @return newly created value.
+	 * @throws HibernateException if bytes are not a valid encoding for value class.
+	 */
+	public T decode(byte[] bytes) {
+		try {
+			return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+		} catch (IOException e) {
+			throw new HibernateException(String.format("Invalid encoded value for class |%s|.", type.getName()), e);
+		}
+	}
+
+	private void write(Object value, DataOutput out) throws IOException {
+		out.writeInt(fingerprint);
+		for (Property property : properties) {
+			property.write(value, out);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private T read(DataInput in) throws IOException {
+		if (in.readInt() != fingerprint) {
+			throw new HibernateException(String.format("Encoded value schema does not match fields of value class |%s|.", type.getName()));
+		}
+		T value;
+		try {
+			value = (T) constructor.invoke();
+		} catch (Throwable e) {
+			throw new HibernateException(String.format("Fail to create instance of value class |%s|.", type.getName()), e);
+		}
+		for (Property property : properties) {
+			property.read(value, in);
+		}
+		return value;
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// field properties
+
+	/** Persistent field writer and reader. */
+	private interface Property {
+		void write(Object object, DataOutput out) throws IOException;
+
+		void read(Object object, DataInput in) throws IOException;
+	}
+
+	/** Reference type encoding, without null flag. */
+	private interface Format {
+		void write(Object value, DataOutput out) throws IOException;
+
+		Object read(DataInput in) throws IOException;
+	}
+
+	private static Property property(Field field, VarHandle handle) {
+		Class<?> fieldType = field.getType();
+		if (fieldType == int.class) {
+			return new Property() {
+				@Override
+				public void write(Object object, DataOutput out) throws IOException {
+					out.writeInt((int) handle.get(object));
+				}
+
+				@Override
+				public void read(Object object, DataInput in) throws IOException {
+					handle.set(object, in.readInt());
+				}
+			};
+		}
+		if (fieldType == long.class) {
+			return new Property() {
+				@Override
+				public void write(Object object, DataOutput out) throws IOException {
+					out.writeLong((long) handle.get(object));
+				}
+
+				@Override
+				public void read(Object object, DataInput in) throws IOException {
+					handle.set(object, in.readLong());
+				}
+			};
+		}
+		if (fieldType == double.class) {
+			return new Property() {
+				@Override
+				public void write(Object object, DataOutput out) throws IOException {
+					out.writeDouble((double) handle.get(object));
+				}
+
+				@Override
+				public void read(Object object, DataInput in) throws IOException {
+					handle.set(object, in.readDouble());
+				}
+			};
+		}
+		if (fieldType == boolean.class) {
+			return new Property() {
+				@Override
+				public void write(Object object, DataOutput out) throws IOException {
+					out.writeBoolean((boolean) handle.get(object));
+				}
+
+				@Override
+				public void read(Object object, DataInput in) throws IOException {
+					handle.set(object, in.readBoolean());
+				}
+			};
+		}
+		if (fieldType.isPrimitive()) {
+			// less common primitives, byte, short, char and float, are boxed on access
+			Format format = format(fieldType, field);
+			return new Property() {
+				@Override
+				public void write(Object object, DataOutput out) throws IOException {
+					format.write(handle.get(object), out);
+				}
+
+				@Override
+				public void read(Object object, DataInput in) throws IOException {
+					handle.set(object, format.read(in));
+				}
+			};
+		}
+
+		Format format = format(fieldType, field);
+		return new Property() {
+			@Override
+			public void write(Object object, DataOutput out) throws IOException {
+				Object value = handle.get(object);
+				out.writeBoolean(value != null);
+				if (value != null) {
+					format.write(value, out);
+				}
+			}
+
+			@Override
+			public void read(Object object, DataInput in) throws IOException {
+				handle.set(object, in.readBoolean() ? format.read(in) : null);
+			}
+		};
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Format format(Class<?> type, Field field) {
+		if (type == Integer.class || type == int.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					out.writeInt((Integer) value);
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return in.readInt();
+				}
+			};
+		}
+		if (type == Long.class || type == long.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					out.writeLong((Long) value);
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return in.readLong();
+				}
+			};
+		}
+		if (type == Double.class || type == double.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					out.writeDouble((Double) value);
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return in.readDouble();
+				}
+			};
+		}
+		if (type == Float.class || type == float.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					out.writeFloat((Float) value);
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return in.readFloat();
+				}
+			};
+		}
+		if (type == Boolean.class || type == boolean.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					out.writeBoolean((Boolean) value);
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return in.readBoolean();
+				}
+			};
+		}
+		if (type == Short.class || type == short.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					out.writeShort((Short) value);
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return in.readShort();
+				}
+			};
+		}
+		if (type == Byte.class || type == byte.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					out.writeByte((Byte) value);
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return in.readByte();
+				}
+			};
+		}
+		if (type == Character.class || type == char.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					out.writeChar((Character) value);
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return in.readChar();
+				}
+			};
+		}
+		if (type == String.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					writeString((String) value, out);
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return readString(in);
+				}
+			};
+		}
+		if (type.isEnum()) {
+			// enumeration constants are stored by name so that constants can be reordered
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					out.writeUTF(((Enum<?>) value).name());
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return Enum.valueOf((Class<? extends Enum>) type, in.readUTF());
+				}
+			};
+		}
+		if (type == UUID.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					out.writeLong(((UUID) value).getMostSignificantBits());
+					out.writeLong(((UUID) value).getLeastSignificantBits());
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return new UUID(in.readLong(), in.readLong());
+				}
+			};
+		}
+		if (type == Date.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					out.writeLong(((Date) value).getTime());
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return new Date(in.readLong());
+				}
+			};
+		}
+		if (type == BigDecimal.class) {
+			return new Format() {
+				@Override
+				public void write(Object value, DataOutput out) throws IOException {
+					writeString(((BigDecimal) value).toString(), out);
+				}
+
+				@Override
+				public Object read(DataInput in) throws IOException {
+					return new BigDecimal(readString(in));
+				}
+			};
+		}
+		if (type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.getName().startsWith("java.")) {
+			throw new HibernateException(String.format("Not supported type |%s| for value field |%s|.", type.getName(), field));
+		}
+
+		// nested value object; codec is resolved on first use to allow for recursive value classes
+		return new Format() {
+			@Override
+			public void write(Object value, DataOutput out) throws IOException {
+				// encoding carries no class; a subclass instance would be written without its own fields
+				if (value.getClass() != type) {
+					throw new HibernateException(String.format("Invalid nested value type |%s| for field |%s|. Expected |%s|.", value.getClass().getName(), field, type.getName()));
+				}
+				CompactCodec.forClass(type).write(value, out);
+			}
+
+			@Override
+			public Object read(DataInput in) throws IOException {
+				return CompactCodec.forClass(type).read(in);
+			}
+		};
+	}
+
+	/**
+	 * Write string as UTF-8 bytes prefixed by bytes length. Unlike {@link DataOutput#writeUTF(String)} there is no 64KB
+	 * limit on string length.
+	 * 
+	 * @param value string value,
+	 * @param out data output.
+	 * @throws IOException if write fails.
+	 */
+	private static void writeString(String value, DataOutput out) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Read string written by {@link #writeString(String, DataOutput)}.
+	 * 
+	 * @param in data input.
+	 * @return string value.
+	 * @throws IOException if read fails or bytes length is not valid.
+	 */
+	private static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			throw new IOException(String.format("Invalid string length |%d|.", length));
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
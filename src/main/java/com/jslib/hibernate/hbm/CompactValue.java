@@ -0,0 +1,122 @@
+package com.jslib.hibernate.hbm;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Value object persisted in a single binary column by {@link CompactValueHbm}. Compact value holds value object encoded
+ * bytes and decodes value object lazily, on first {@link #get()}, so that entities loaded but not inspected do not pay
+ * the decoding cost. Equality is based on encoded bytes; flush dirty check compares bytes and does not decode values.
+ * <p>
+ * Compact value is immutable: value object is encoded when compact value is created and changes on value object after
+ * that are not persisted. To update a value, create a new compact value and assign it to entity field.
+ * 
+ * <pre>
+ * class Person {
+ * 	CompactValue&lt;Address&gt; address;
+ * }
+ * 
+ * person.address = CompactValue.of(address);
+ * String city = person.address.get().city;
+ * </pre>
+ * 
+ * @author Iulian Rotaru
+ * @param <T> value object type.
+ */
+public final class CompactValue<T> implements Serializable {
+	private static final long serialVersionUID = -4102863937127716843L;
+
+	/**
+	 * Create compact value for a value object, encoding it immediately.
+	 * 
+	 * @param value value object, not null.
+	 * @param <T> value object type.
+	 * @return compact value.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> CompactValue<T> of(T value) {
+		Class<T> type = (Class<T>) value.getClass();
+		CompactValue<T> compactValue = new CompactValue<>(type, CompactCodec.forClass(type).encode(value));
+		compactValue.value = value;
+		return compactValue;
+	}
+
+	/** Value object class. */
+	private final Class<T> type;
+	/** Value object encoded bytes. */
+	private final byte[] bytes;
+	/** Value object decoded on first access, null if not yet decoded. */
+	private transient T value;
+
+	/**
+	 * Create compact value from encoded bytes. Value object is not decoded.
+	 * 
+	 * @param type value object class,
+	 * @param bytes encoded bytes.
+	 */
+	CompactValue(Class<T> type, byte[] bytes) {
+		this.type = type;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Get value object, decoding it if this is the first access.
+	 * 
+	 * @return value object.
+	 */
+	public T get() {
+		if (value == null) {
+			value = CompactCodec.forClass(type).decode(bytes);
+		}
+		return value;
+	}
+
+	/**
+	 * Test if value object was already decoded or was provided on creation.
+	 * 
+	 * @return true if value object is available without decoding.
+	 */
+	public boolean isDecoded() {
+		return value != null;
+	}
+
+	/**
+	 * Get value object class.
+	 * 
+	 * @return value object class.
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * Get value object encoded bytes. Returned array is internal state and should not be changed.
+	 * 
+	 * @return encoded bytes.
+	 */
+	byte[] getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CompactValue)) {
+			return false;
+		}
+		CompactValue<?> other = (CompactValue<?>) obj;
+		return type == other.type && Arrays.equals(bytes, other.bytes);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(bytes);
+	}
+
+	@Override
+	public String toString() {
+		return value != null ? value.toString() : type.getName() + "[" + bytes.length + " bytes]";
+	}
+}
@@ -0,0 +1,136 @@
+package com.jslib.hibernate.hbm;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.usertype.ParameterizedType;
+import org.hibernate.usertype.UserType;
+
+/**
+ * Hibernate user defined type for {@link CompactValue}, mapping a value object to a single <code>VARBINARY</code>
+ * column. Value object class is configured with <code>valueClass</code> type parameter and is encoded in a compact
+ * binary format, see {@link CompactCodec} for supported value object fields.
+ * 
+ * <pre>
+ * &lt;property name="address" length="1024"&gt;
+ *   &lt;type name="com.jslib.hibernate.hbm.CompactValueHbm"&gt;
+ *     &lt;param name="valueClass"&gt;com.company.Address&lt;/param&gt;
+ *   &lt;/type&gt;
+ * &lt;/property&gt;
+ * </pre>
+ * 
+ * <b>Warning:</b> declare column <code>length</code> large enough for the largest encoded value. Without it Hibernate
+ * schema export creates a <code>VARBINARY(255)</code> column and larger values, e.g. with long strings, are truncated or
+ * rejected by database. For values with no upper bound declare a large object column type explicitly, e.g.
+ * <code>&lt;column name="address" sql-type="blob" /&gt;</code>.
+ * <p>
+ * Nested value objects are encoded with the codec of declared field type; a subclass instance on a nested field is
+ * rejected since its own fields would be lost.
+ * <p>
+ * Loaded values are not decoded; decoding is performed on first {@link CompactValue#get()}. Compact values are
+ * immutable and compared by encoded bytes, so that dirty check neither copies nor decodes values.
+ * 
+ * @author Iulian Rotaru
+ */
+public class CompactValueHbm implements UserType, ParameterizedType {
+	/** Type parameter for value object class name. */
+	public static final String VALUE_CLASS_PARAMETER = "valueClass";
+
+	/** Supported SQL types. */
+	private static final int[] SQL_TYPES = { Types.VARBINARY };
+
+	/** Value object class. */
+	private Class<?> valueClass;
+
+	@Override
+	public void setParameterValues(Properties parameters) {
+		String className = parameters != null ? parameters.getProperty(VALUE_CLASS_PARAMETER) : null;
+		if (className == null) {
+			throw new HibernateException(String.format("Missing |%s| parameter on compact value user type.", VALUE_CLASS_PARAMETER));
+		}
+		try {
+			valueClass = Class.forName(className.trim(), true, Thread.currentThread().getContextClassLoader());
+		} catch (ClassNotFoundException e) {
+			throw new HibernateException(String.format("Value class |%s| not found.", className));
+		}
+		// fail fast on not supported value class
+		CompactCodec.forClass(valueClass);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public Object nullSafeGet(ResultSet resultSet, String[] names, Object owner) throws HibernateException, SQLException {
+		byte[] bytes = resultSet.getBytes(names[0]);
+		return bytes != null ? new CompactValue(valueClass, bytes) : null;
+	}
+
+	@Override
+	public void nullSafeSet(PreparedStatement preparedStatement, Object value, int index) throws HibernateException, SQLException {
+		if (value == null) {
+			preparedStatement.setNull(index, Types.VARBINARY);
+			return;
+		}
+		CompactValue<?> compactValue = (CompactValue<?>) value;
+		if (compactValue.getType() != valueClass) {
+			throw new HibernateException(String.format("Invalid compact value type |%s|. Expected |%s|.", compactValue.getType().getName(), valueClass.getName()));
+		}
+		preparedStatement.setBytes(index, compactValue.getBytes());
+	}
+
+	@Override
+	public int[] sqlTypes() {
+		return SQL_TYPES;
+	}
+
+	@Override
+	public Class<?> returnedClass() {
+		return CompactValue.class;
+	}
+
+	@Override
+	public boolean equals(Object x, Object y) throws HibernateException {
+		if (x == y) {
+			return true;
+		}
+		if (x == null || y == null) {
+			return false;
+		}
+		return x.equals(y);
+	}
+
+	@Override
+	public int hashCode(Object x) throws HibernateException {
+		return x.hashCode();
+	}
+
+	@Override
+	public Object deepCopy(Object value) throws HibernateException {
+		return value;
+	}
+
+	@Override
+	public boolean isMutable() {
+		return false;
+	}
+
+	@Override
+	public Serializable disassemble(Object value) throws HibernateException {
+		return value != null ? ((CompactValue<?>) value).getBytes() : null;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public Object assemble(Serializable cached, Object owner) throws HibernateException {
+		return cached != null ? new CompactValue(valueClass, (byte[]) cached) : null;
+	}
+
+	@Override
+	public Object replace(Object original, Object target, Object owner) throws HibernateException {
+		return original;
+	}
+}
@@ -0,0 +1,210 @@
+package com.jslib.hibernate.hbm;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.usertype.ParameterizedType;
+import org.hibernate.usertype.UserType;
+
+/**
+ * Hibernate user defined type storing enumerations as small integers, <code>TINYINT</code> or <code>SMALLINT</code>,
+ * instead of constant names. Stored value is constant code, if enumeration implements {@link CodedEnum}, or constant
+ * ordinal otherwise. Note that ordinals change when constants are reordered; use explicit codes for enumerations that
+ * are not append only.
+ * <p>
+ * Enumeration class is configured with <code>enumClass</code> type parameter or by a subclass constructor. Column type
+ * is <code>TINYINT</code> if all codes fit a signed byte and <code>SMALLINT</code> otherwise, but it can be forced with
+ * <code>sqlType</code> type parameter, with values <code>tinyint</code> or <code>smallint</code>.
+ * 
+ * <pre>
+ * &lt;property name="state"&gt;
+ *   &lt;type name="com.jslib.hibernate.hbm.EnumHbm"&gt;
+ *     &lt;param name="enumClass"&gt;com.company.State&lt;/param&gt;
+ *   &lt;/type&gt;
+ * &lt;/property&gt;
+ * </pre>
+ * 
+ * Codes are resolved once, when enumeration class is set: constant code is read from an array indexed by ordinal and
+ * constant from an array indexed by code offset from minimum code.
+ * 
+ * @author Iulian Rotaru
+ */
+public class EnumHbm implements UserType, ParameterizedType {
+	/** Type parameter for enumeration class name. */
+	public static final String ENUM_CLASS_PARAMETER = "enumClass";
+	/** Type parameter for column SQL type, <code>tinyint</code> or <code>smallint</code>. */
+	public static final String SQL_TYPE_PARAMETER = "sqlType";
+
+	/** Enumeration class. */
+	private Class<? extends Enum<?>> clazz;
+	/** Constant codes indexed by constant ordinal. */
+	private int[] codes;
+	/** Constants indexed by code offset from minimum code; null for unused codes. */
+	private Enum<?>[] constants;
+	/** Minimum code value. */
+	private int minCode;
+	/** Column SQL type. */
+	private int[] sqlTypes;
+
+	/** Create user type with enumeration class configured from type parameters. */
+	public EnumHbm() {
+	}
+
+	/**
+	 * Create user type for given enumeration class.
+	 * 
+	 * @param clazz enumeration class.
+	 */
+	protected EnumHbm(Class<? extends Enum<?>> clazz) {
+		setEnumClass(clazz, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void setParameterValues(Properties parameters) {
+		String className = parameters != null ? parameters.getProperty(ENUM_CLASS_PARAMETER) : null;
+		String sqlType = parameters != null ? parameters.getProperty(SQL_TYPE_PARAMETER) : null;
+		if (className == null) {
+			if (clazz == null) {
+				throw new HibernateException(String.format("Missing |%s| parameter on enumeration user type.", ENUM_CLASS_PARAMETER));
+			}
+			setEnumClass(clazz, sqlType);
+			return;
+		}
+		Class<?> enumClass;
+		try {
+			enumClass = Class.forName(className.trim(), true, Thread.currentThread().getContextClassLoader());
+		} catch (ClassNotFoundException e) {
+			throw new HibernateException(String.format("Enumeration class |%s| not found.", className));
+		}
+		if (!enumClass.isEnum()) {
+			throw new HibernateException(String.format("Class |%s| is not an enumeration.", className));
+		}
+		setEnumClass((Class<? extends Enum<?>>) enumClass, sqlType);
+	}
+
+	private void setEnumClass(Class<? extends Enum<?>> clazz, String sqlType) {
+		this.clazz = clazz;
+		Enum<?>[] values = clazz.getEnumConstants();
+
+		codes = new int[values.length];
+		int maxCode = Integer.MIN_VALUE;
+		minCode = Integer.MAX_VALUE;
+		for (int i = 0; i < values.length; ++i) {
+			codes[i] = values[i] instanceof CodedEnum ? ((CodedEnum) values[i]).code() : i;
+			minCode = Math.min(minCode, codes[i]);
+			maxCode = Math.max(maxCode, codes[i]);
+		}
+		if (values.length == 0) {
+			minCode = maxCode = 0;
+		}
+		if (minCode < Short.MIN_VALUE || maxCode > Short.MAX_VALUE) {
+			throw new HibernateException(String.format("Enumeration |%s| codes do not fit SMALLINT.", clazz.getName()));
+		}
+
+		constants = new Enum<?>[maxCode - minCode + 1];
+		for (int i = 0; i < values.length; ++i) {
+			int index = codes[i] - minCode;
+			if (constants[index] != null) {
+				throw new HibernateException(String.format("Enumeration |%s| has duplicated code |%d|.", clazz.getName(), codes[i]));
+			}
+			constants[index] = values[i];
+		}
+
+		boolean tinyint = minCode >= Byte.MIN_VALUE && maxCode <= Byte.MAX_VALUE;
+		if (sqlType != null) {
+			switch (sqlType.trim().toLowerCase()) {
+			case "tinyint":
+				if (!tinyint) {
+					throw new HibernateException(String.format("Enumeration |%s| codes do not fit TINYINT.", clazz.getName()));
+				}
+				break;
+
+			case "smallint":
+				tinyint = false;
+				break;
+
+			default:
+				throw new HibernateException(String.format("Invalid enumeration SQL type |%s|.", sqlType));
+			}
+		}
+		sqlTypes = new int[] { tinyint ? Types.TINYINT : Types.SMALLINT };
+	}
+
+	@Override
+	public Object nullSafeGet(ResultSet resultSet, String[] names, Object owner) throws HibernateException, SQLException {
+		int code = resultSet.getInt(names[0]);
+		if (resultSet.wasNull()) {
+			return null;
+		}
+		int index = code - minCode;
+		if (index < 0 || index >= constants.length || constants[index] == null) {
+			throw new HibernateException(String.format("Invalid code |%d| for enumeration |%s|.", code, clazz.getName()));
+		}
+		return constants[index];
+	}
+
+	@Override
+	public void nullSafeSet(PreparedStatement preparedStatement, Object value, int index) throws HibernateException, SQLException {
+		if (value == null) {
+			preparedStatement.setNull(index, sqlTypes[0]);
+			return;
+		}
+		int code = codes[((Enum<?>) value).ordinal()];
+		if (sqlTypes[0] == Types.TINYINT) {
+			preparedStatement.setByte(index, (byte) code);
+		} else {
+			preparedStatement.setShort(index, (short) code);
+		}
+	}
+
+	@Override
+	public int[] sqlTypes() {
+		return sqlTypes;
+	}
+
+	@Override
+	public Class<?> returnedClass() {
+		return clazz;
+	}
+
+	@Override
+	public boolean equals(Object x, Object y) throws HibernateException {
+		return x == y;
+	}
+
+	@Override
+	public int hashCode(Object x) throws HibernateException {
+		return System.identityHashCode(x);
+	}
+
+	@Override
+	public Object deepCopy(Object value) throws HibernateException {
+		return value;
+	}
+
+	@Override
+	public boolean isMutable() {
+		return false;
+	}
+
+	@Override
+	public Serializable disassemble(Object value) throws HibernateException {
+		return (Serializable) value;
+	}
+
+	@Override
+	public Object assemble(Serializable cached, Object owner) throws HibernateException {
+		return cached;
+	}
+
+	@Override
+	public Object replace(Object original, Object target, Object owner) throws HibernateException {
+		return original;
+	}
+}
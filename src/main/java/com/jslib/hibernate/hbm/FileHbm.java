@@ -10,6 +10,6 @@ import java.io.File;
 public class FileHbm extends ObjectHbm<File> {
 	/** Create Hibernate user defined type for Java file. */
 	public FileHbm() {
-		super(File.class);
+		super(File.class, false);
 	}
 }
@@ -9,44 +9,94 @@ import java.sql.Types;
 import org.hibernate.HibernateException;
 import org.hibernate.usertype.UserType;
 
-import com.jslib.converter.Converter;
-import com.jslib.converter.ConverterRegistry;
-
 /**
- * Generic object for Hibernate user defined type.
+ * Generic object for Hibernate user defined type. Value is stored as string; string codec is selected once, on user type
+ * creation, with specialized codecs for enumerations, UUID, time zone and URL, and converter registry for other types.
+ * Blank strings are loaded as null.
+ * <p>
+ * User type declares if mapped class is mutable. Values of immutable classes are not checked for in place changes on
+ * flush. By default, values are shared by entity, its dirty check snapshot and second level cache, with no copy, so
+ * that in place changes of mutable values are not detected; this is also the behavior of types created with
+ * {@link #ObjectHbm(Class)}. Subclasses for mutable classes can opt in for value copy using string codec, see
+ * {@link #ObjectHbm(Class, boolean, boolean)}; in place changes are then detected on flush, provided mapped class
+ * implements value based equality, and do not alter cached values.
+ * <p>
+ * <b>Note:</b> types created with {@link #ObjectHbm(Class)} used to be mutable for every mapped class. Now a type
+ * over an enumeration is immutable and compares values by identity; this applies to third party subclasses too. The
+ * change is compatible for enumerations, whose constants are unique and cannot be replaced in place, but a subclass that
+ * relied on {@link #isMutable()} being true for an enumeration should declare its mutability explicitly, see
+ * {@link #ObjectHbm(Class, boolean)}.
  * 
  * @author Iulian Rotaru
  * @param <T> Java type to create Hibernate user defined type for.
  */
 public abstract class ObjectHbm<T> implements UserType {
-	/** Converter instance. */
-	private Converter converter;
+	/** Value string codec. */
+	private final ValueCodec<T> codec;
 	/** Type to create Hibernate user type for. */
-	private Class<T> clazz;
+	private final Class<T> clazz;
+	/** Mapped class instances are mutable. */
+	private final boolean mutable;
+	/** Copy mutable values using string codec for dirty check snapshot and second level cache. */
+	private final boolean copy;
+	/** Mapped class instances are unique per value, e.g. enumeration constants, and can be compared by identity. */
+	private final boolean unique;
 
 	/**
-	 * Create Hibernate user defined type for request Java class.
+	 * Create Hibernate user defined type for request Java class. Enumerations are immutable; all other classes are
+	 * considered mutable. Values are not copied.
 	 * 
 	 * @param clazz Java class to create Hibernate user type for.
 	 */
 	public ObjectHbm(Class<T> clazz) {
-		this.converter = ConverterRegistry.getConverter();
+		this(clazz, !clazz.isEnum());
+	}
+
+	/**
+	 * Create Hibernate user defined type for request Java class with given mutability. Values are not copied.
+	 * 
+	 * @param clazz Java class to create Hibernate user type for,
+	 * @param mutable true if instances of mapped class can be changed in place.
+	 */
+	protected ObjectHbm(Class<T> clazz, boolean mutable) {
+		this(clazz, mutable, false);
+	}
+
+	/**
+	 * Create Hibernate user defined type for request Java class with given mutability, optionally copying mutable
+	 * values. Copy is a string codec round trip and is performed for every loaded value, for dirty check snapshot, and
+	 * for every cached value; it is worth only if values are actually changed in place and mapped class has value based
+	 * equality, otherwise every flush updates the entity.
+	 * 
+	 * @param clazz Java class to create Hibernate user type for,
+	 * @param mutable true if instances of mapped class can be changed in place,
+	 * @param copy true to copy mutable values, ignored if mapped class is not mutable.
+	 */
+	protected ObjectHbm(Class<T> clazz, boolean mutable, boolean copy) {
 		this.clazz = clazz;
+		this.codec = ValueCodec.forClass(clazz);
+		this.mutable = mutable;
+		this.copy = mutable && copy;
+		this.unique = clazz.isEnum();
 	}
 
 	@Override
 	public Object assemble(Serializable cached, Object owner) throws HibernateException {
-		return cached;
+		// cached value is the value instance, as always stored, copied if copy is enabled
+		return deepCopy(cached);
 	}
 
 	@Override
 	public Object deepCopy(Object object) throws HibernateException {
-		return object;
+		if (!copy || object == null) {
+			return object;
+		}
+		return copy(object);
 	}
 
 	@Override
 	public Serializable disassemble(Object object) throws HibernateException {
-		return (Serializable) object;
+		return (Serializable) deepCopy(object);
 	}
 
 	@Override
@@ -54,7 +104,7 @@ public abstract class ObjectHbm<T> implements UserType {
 		if (x == y) {
 			return true;
 		}
-		if (null == x || null == y) {
+		if (unique || null == x || null == y) {
 			return false;
 		}
 		return x.equals(y);
@@ -62,42 +112,33 @@ public abstract class ObjectHbm<T> implements UserType {
 
 	@Override
 	public int hashCode(Object x) throws HibernateException {
-		return x.hashCode();
+		return unique ? System.identityHashCode(x) : x.hashCode();
 	}
 
 	@Override
 	public boolean isMutable() {
-		return true;
+		return mutable;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object copy(Object object) {
+		String value = codec.encode((T) object);
+		return value != null ? codec.decode(value) : null;
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	public Object nullSafeGet(ResultSet resultSet, String[] values, Object owner) throws HibernateException, SQLException {
 		String value = resultSet.getString(values[0]);
-		Object object = null;
-		if (!resultSet.wasNull()) {
-			if (value.trim().length() != 0) {
-				if (clazz.isEnum()) {
-					object = Enum.valueOf((Class<? extends Enum>) clazz, value);
-				} else {
-					object = converter.asObject(value, clazz);
-				}
-			}
+		if (value == null || value.isBlank()) {
+			return null;
 		}
-		return object;
+		return codec.decode(value);
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public void nullSafeSet(PreparedStatement preparedStatement, Object object, int index) throws HibernateException, SQLException {
-		if (object == null) {
-			preparedStatement.setNull(index, Types.VARCHAR);
-			return;
-		}
-		if (clazz.isEnum()) {
-			preparedStatement.setString(index, ((Enum<?>) object).name());
-			return;
-		}
-		String value = converter.asString(object);
+		String value = object != null ? codec.encode((T) object) : null;
 		if (value == null) {
 			preparedStatement.setNull(index, Types.VARCHAR);
 			return;
@@ -0,0 +1,42 @@
+package com.jslib.hibernate.hbm;
+
+import java.io.Serializable;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+/**
+ * Hibernate identifier generator for time ordered, version 7 UUIDs. Most significant 48 bits are Unix time in
+ * milliseconds and the rest, except version and variant bits, are random. Consecutive identifiers are close in index
+ * order, which improves index locality compared with random, version 4 UUIDs, especially when stored as binary, see
+ * {@link UuidHbm}.
+ *
+ * <pre>
+ * &lt;id name="id" column="id" type="com.jslib.hibernate.hbm.UuidHbm"&gt;
+ *   &lt;generator class="com.jslib.hibernate.hbm.TimeOrderedUuidGenerator" /&gt;
+ * &lt;/id&gt;
+ * </pre>
+ *
+ * @author Iulian Rotaru
+ */
+public class TimeOrderedUuidGenerator implements IdentifierGenerator {
+	@Override
+	public Serializable generate(SessionImplementor session, Object object) throws HibernateException {
+		return next();
+	}
+
+	/**
+	 * Create a version 7 UUID for current time.
+	 *
+	 * @return newly created UUID.
+	 */
+	public static UUID next() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long mostSignificantBits = (System.currentTimeMillis() << 16) | 0x7000L | (random.nextInt() & 0x0FFFL);
+		long leastSignificantBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(mostSignificantBits, leastSignificantBits);
+	}
+}
@@ -3,13 +3,19 @@ package com.jslib.hibernate.hbm;
 import java.util.TimeZone;
 
 /**
- * Time zone Hibernate user defined type.
+ * Time zone Hibernate user defined type. Every loaded entity gets its own time zone instance but instances are treated
+ * as immutable: in place changes are not detected on flush.
+ * <p>
+ * Note that {@link TimeZone} is actually mutable, e.g. {@link TimeZone#setID(String)} or
+ * {@link TimeZone#setRawOffset(int)}, but in place changes on a mapped time zone are not persisted; assign a new time
+ * zone instance to change entity property. This is the same behavior as before mutability was declared per type, when
+ * values were never copied and dirty check compared the same instance.
  * 
  * @author Iulian Rotaru
  */
 public class TimeZoneHbm extends ObjectHbm<TimeZone> {
 	/** Create user defined type for Java time zone. */
 	public TimeZoneHbm() {
-		super(TimeZone.class);
+		super(TimeZone.class, false);
 	}
 }
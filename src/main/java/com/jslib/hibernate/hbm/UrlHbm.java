@@ -10,6 +10,6 @@ import java.net.URL;
 public class UrlHbm extends ObjectHbm<URL> {
 	/** Create user defined type for Java URL. */
 	public UrlHbm() {
-		super(URL.class);
+		super(URL.class, false);
 	}
 }
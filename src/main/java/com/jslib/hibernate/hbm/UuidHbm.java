@@ -1,15 +1,209 @@
 package com.jslib.hibernate.hbm;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Properties;
 import java.util.UUID;
 
+import org.hibernate.HibernateException;
+import org.hibernate.usertype.ParameterizedType;
+
 /**
- * UUID Hibernate user defined type.
+ * UUID Hibernate user defined type. By default UUID is stored as 36 characters string but storage can be configured
+ * with <code>storage</code> type parameter:
+ * <ul>
+ * <li><code>string</code> - default, 36 characters <code>VARCHAR</code>,
+ * <li><code>binary</code> - 16 bytes <code>BINARY</code>, most significant byte first, so that time ordered UUIDs, see
+ * {@link TimeOrderedUuidGenerator}, are stored in index order,
+ * <li><code>native</code> - database native UUID type, e.g. PostgreSQL or H2 <code>UUID</code>; use only with databases
+ * that support it. Hibernate dialects have no column type for <code>OTHER</code> SQL type so if schema is exported
+ * column type should be declared explicitly, e.g. <code>&lt;column name="id" sql-type="uuid" /&gt;</code>,
+ * <li><code>dual</code> - migration mode for a <code>VARBINARY</code> column holding both legacy string values and
+ * binary values; reads both formats and writes binary. Queries bind binary values only, see warning below.
+ * </ul>
+ * 
+ * <pre>
+ * &lt;property name="id" column="id" length="16"&gt;
+ *   &lt;type name="com.jslib.hibernate.hbm.UuidHbm"&gt;
+ *     &lt;param name="storage"&gt;binary&lt;/param&gt;
+ *   &lt;/type&gt;
+ * &lt;/property&gt;
+ * </pre>
+ * 
+ * <b>Warning:</b> binary storage column should be exactly 16 bytes. Without <code>length="16"</code> Hibernate schema
+ * export creates a <code>BINARY(255)</code> column; databases that pad fixed length binary values, e.g. MySQL, return
+ * 255 bytes and every read fails with invalid UUID bytes length. The same for dual mode, where column should be declared
+ * with <code>length="36"</code>.
+ * <p>
+ * A string column can be migrated to binary storage without downtime: alter column to <code>VARBINARY(36)</code>,
+ * switch mapping to dual mode, convert legacy rows, alter column to <code>BINARY(16)</code> and finally switch mapping
+ * to binary mode.
+ * <p>
+ * <b>Warning:</b> dual mode reads both formats only when a row is hydrated. Every value bound as query parameter is
+ * written in binary format, so lookups by UUID, e.g. <code>session.get()</code> on an UUID identifier or HQL
+ * <code>where e.uuid=?</code>, and joins against a column already converted to binary do not match legacy string rows:
+ * those rows are invisible to queries until converted. Convert legacy rows right after switching to dual mode, before
+ * relying on lookups, for example on MySQL:
+ * 
+ * <pre>
+ * UPDATE entity SET uuid=UNHEX(REPLACE(uuid,'-','')) WHERE LENGTH(uuid)=36;
+ * </pre>
+ * 
+ * Dual mode is meant only for the conversion window; it does not make legacy rows queryable.
  * 
  * @author Iulian Rotaru
  */
-public class UuidHbm extends ObjectHbm<UUID> {
+public class UuidHbm extends ObjectHbm<UUID> implements ParameterizedType {
+	/** Type parameter for UUID storage mode. */
+	public static final String STORAGE_PARAMETER = "storage";
+
+	/** UUID storage modes. */
+	private enum Storage {
+		STRING, BINARY, NATIVE, DUAL
+	}
+
+	/** UUID length, in bytes, for binary storage. */
+	private static final int BINARY_LENGTH = 16;
+	/** UUID length, in characters, for string storage. */
+	private static final int STRING_LENGTH = 36;
+
+	private static final int[] BINARY_SQL_TYPES = { Types.BINARY };
+	private static final int[] NATIVE_SQL_TYPES = { Types.OTHER };
+	private static final int[] DUAL_SQL_TYPES = { Types.VARBINARY };
+
+	private Storage storage = Storage.STRING;
+
 	/** Create user defined type for Java UUID. */
 	public UuidHbm() {
-		super(UUID.class);
+		super(UUID.class, false);
+	}
+
+	@Override
+	public void setParameterValues(Properties parameters) {
+		String value = parameters != null ? parameters.getProperty(STORAGE_PARAMETER) : null;
+		if (value != null) {
+			try {
+				storage = Storage.valueOf(value.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new HibernateException(String.format("Invalid UUID storage |%s|.", value));
+			}
+		}
+	}
+
+	@Override
+	public Object nullSafeGet(ResultSet resultSet, String[] values, Object owner) throws HibernateException, SQLException {
+		switch (storage) {
+		case BINARY:
+			return fromBytes(resultSet.getBytes(values[0]));
+
+		case NATIVE:
+			// not all drivers map native UUID to Java UUID
+			Object value = resultSet.getObject(values[0]);
+			if (value instanceof String) {
+				return UUID.fromString((String) value);
+			}
+			if (value instanceof byte[]) {
+				return fromBytes((byte[]) value);
+			}
+			return value;
+
+		case DUAL:
+			byte[] bytes = resultSet.getBytes(values[0]);
+			if (bytes != null && bytes.length == STRING_LENGTH) {
+				return UUID.fromString(new String(bytes, StandardCharsets.US_ASCII));
+			}
+			return fromBytes(bytes);
+
+		default:
+			return super.nullSafeGet(resultSet, values, owner);
+		}
+	}
+
+	@Override
+	public void nullSafeSet(PreparedStatement preparedStatement, Object object, int index) throws HibernateException, SQLException {
+		switch (storage) {
+		case BINARY:
+		case DUAL:
+			// dual mode binds binary format for query parameters too; legacy string rows are not matched
+			if (object == null) {
+				preparedStatement.setNull(index, sqlTypes()[0]);
+				return;
+			}
+			preparedStatement.setBytes(index, toBytes((UUID) object));
+			break;
+
+		case NATIVE:
+			if (object == null) {
+				preparedStatement.setNull(index, Types.OTHER);
+				return;
+			}
+			preparedStatement.setObject(index, object, Types.OTHER);
+			break;
+
+		default:
+			super.nullSafeSet(preparedStatement, object, index);
+		}
+	}
+
+	@Override
+	public int[] sqlTypes() {
+		switch (storage) {
+		case BINARY:
+			return BINARY_SQL_TYPES;
+
+		case NATIVE:
+			return NATIVE_SQL_TYPES;
+
+		case DUAL:
+			return DUAL_SQL_TYPES;
+
+		default:
+			return super.sqlTypes();
+		}
+	}
+
+	/**
+	 * Create UUID from its 16 bytes representation, most significant byte first.
+	 * 
+	 * @param bytes UUID bytes, possible null.
+	 * @return UUID instance or null if bytes argument is null.
+	 * @throws HibernateException if bytes length is not 16.
+	 */
+	public static UUID fromBytes(byte[] bytes) {
+		if (bytes == null) {
+			return null;
+		}
+		if (bytes.length != BINARY_LENGTH) {
+			throw new HibernateException(String.format("Invalid UUID bytes length |%d|.", bytes.length));
+		}
+		long mostSignificantBits = 0;
+		long leastSignificantBits = 0;
+		for (int i = 0; i < 8; ++i) {
+			mostSignificantBits = (mostSignificantBits << 8) | (bytes[i] & 0xFF);
+			leastSignificantBits = (leastSignificantBits << 8) | (bytes[i + 8] & 0xFF);
+		}
+		return new UUID(mostSignificantBits, leastSignificantBits);
+	}
+
+	/**
+	 * Get 16 bytes representation of a UUID, most significant byte first.
+	 * 
+	 * @param uuid UUID instance.
+	 * @return UUID bytes.
+	 */
+	public static byte[] toBytes(UUID uuid) {
+		long mostSignificantBits = uuid.getMostSignificantBits();
+		long leastSignificantBits = uuid.getLeastSignificantBits();
+		byte[] bytes = new byte[BINARY_LENGTH];
+		for (int i = 7; i >= 0; --i) {
+			bytes[i] = (byte) mostSignificantBits;
+			bytes[i + 8] = (byte) leastSignificantBits;
+			mostSignificantBits >>>= 8;
+			leastSignificantBits >>>= 8;
+		}
+		return bytes;
 	}
 }
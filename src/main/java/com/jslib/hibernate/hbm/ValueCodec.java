@@ -0,0 +1,180 @@
+package com.jslib.hibernate.hbm;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.HibernateException;
+
+import com.jslib.converter.Converter;
+import com.jslib.converter.ConverterRegistry;
+
+/**
+ * String codec for values stored by {@link ObjectHbm} user types. Codec is selected once, when user type is created, so
+ * that row hydration does not test value class and does not dispatch through generic converter for common types. There
+ * are specialized codecs for enumerations, UUID, time zone and URL; all other types use {@link ConverterRegistry}
+ * converter.
+ * 
+ * @author Iulian Rotaru
+ * @param <T> value type.
+ */
+abstract class ValueCodec<T> {
+	/**
+	 * Get codec for requested value class.
+	 * 
+	 * @param clazz value class.
+	 * @param <T> value type.
+	 * @return value codec.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static <T> ValueCodec<T> forClass(Class<T> clazz) {
+		if (clazz.isEnum()) {
+			return new EnumCodec(clazz);
+		}
+		if (clazz == UUID.class) {
+			return (ValueCodec<T>) new UuidCodec();
+		}
+		if (clazz == TimeZone.class) {
+			return (ValueCodec<T>) new TimeZoneCodec();
+		}
+		if (clazz == URL.class) {
+			return (ValueCodec<T>) new UrlCodec();
+		}
+		return new ConverterCodec<>(clazz);
+	}
+
+	/**
+	 * Create value from its string representation.
+	 * 
+	 * @param value not empty string representation.
+	 * @return value instance.
+	 */
+	public abstract T decode(String value);
+
+	/**
+	 * Get string representation of a value.
+	 * 
+	 * @param value not null value.
+	 * @return value string representation, possible null.
+	 */
+	public abstract String encode(T value);
+
+	/** Enumeration codec using a name to constant table built once per enumeration class. */
+	private static final class EnumCodec<E extends Enum<E>> extends ValueCodec<E> {
+		private final Class<E> clazz;
+		private final Map<String, E> constants = new HashMap<>();
+
+		public EnumCodec(Class<E> clazz) {
+			this.clazz = clazz;
+			for (E constant : clazz.getEnumConstants()) {
+				constants.put(constant.name(), constant);
+			}
+		}
+
+		@Override
+		public E decode(String value) {
+			E constant = constants.get(value);
+			if (constant == null) {
+				throw new IllegalArgumentException(String.format("No enum constant %s.%s", clazz.getCanonicalName(), value));
+			}
+			return constant;
+		}
+
+		@Override
+		public String encode(E value) {
+			return value.name();
+		}
+	}
+
+	private static final class UuidCodec extends ValueCodec<UUID> {
+		@Override
+		public UUID decode(String value) {
+			return UUID.fromString(value);
+		}
+
+		@Override
+		public String encode(UUID value) {
+			return value.toString();
+		}
+	}
+
+	/**
+	 * Time zone codec keeping a prototype instance per time zone ID and returning a clone of it, so that standard
+	 * {@link TimeZone#getTimeZone(String)} lookup is not performed on every row while every entity still gets its own
+	 * instance. Only IDs known by the runtime are kept, so that prototypes map is bounded by available IDs count; custom
+	 * and invalid IDs, the latter resolved to GMT, are looked up on every call.
+	 */
+	private static final class TimeZoneCodec extends ValueCodec<TimeZone> {
+		private static final Set<String> AVAILABLE_IDS = new HashSet<>(Arrays.asList(TimeZone.getAvailableIDs()));
+		private static final Map<String, TimeZone> TIME_ZONES = new ConcurrentHashMap<>();
+
+		@Override
+		public TimeZone decode(String value) {
+			if (!AVAILABLE_IDS.contains(value)) {
+				return TimeZone.getTimeZone(value);
+			}
+			return (TimeZone) TIME_ZONES.computeIfAbsent(value, TimeZone::getTimeZone).clone();
+		}
+
+		@Override
+		public String encode(TimeZone value) {
+			return value.getID();
+		}
+	}
+
+	/** URL codec caching parsed URLs, up to a fixed capacity; after capacity is reached URLs are parsed on every row. */
+	private static final class UrlCodec extends ValueCodec<URL> {
+		private static final int CAPACITY = 4096;
+		private static final Map<String, URL> URLS = new ConcurrentHashMap<>();
+
+		@Override
+		public URL decode(String value) {
+			URL url = URLS.get(value);
+			if (url != null) {
+				return url;
+			}
+			try {
+				url = new URL(value);
+			} catch (MalformedURLException e) {
+				throw new HibernateException(e);
+			}
+			if (URLS.size() < CAPACITY) {
+				URLS.put(value, url);
+			}
+			return url;
+		}
+
+		@Override
+		public String encode(URL value) {
+			return value.toExternalForm();
+		}
+	}
+
+	/** Generic codec delegating to converter registry. */
+	private static final class ConverterCodec<T> extends ValueCodec<T> {
+		private final Converter converter;
+		private final Class<T> clazz;
+
+		public ConverterCodec(Class<T> clazz) {
+			this.converter = ConverterRegistry.getConverter();
+			this.clazz = clazz;
+		}
+
+		@Override
+		public T decode(String value) {
+			return converter.asObject(value, clazz);
+		}
+
+		@Override
+		public String encode(T value) {
+			return converter.asString(value);
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package com.jslib.transaction.hibernate;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.HibernateException;
+import org.hibernate.transform.ResultTransformer;
+
+/**
+ * Result transformer for DTO projections, replacement for Hibernate <code>Transformers.aliasToBean</code>. For every
+ * DTO class and aliases set, that is, results shape, transformer resolves constructor and properties setters once and
+ * caches them as method handles, so that rows mapping does not use reflection.
+ * <p>
+ * If DTO class has a no-arguments constructor, DTO is created with it and tuple values are injected by alias, using
+ * setter, if present, or field. Null value for a primitive property is ignored and property keeps its default value. If
+ * there is no no-arguments constructor, DTO is created with the constructor having the same number of parameters as
+ * tuple size, tuple values being passed by position; this supports immutable DTO classes and records, via canonical
+ * constructor, provided select order matches constructor parameters order.
+ * <p>
+ * As with Hibernate alias to bean transformer, there is no type conversion; it is caller responsibility to ensure
+ * selected values type match DTO properties type.
+ * 
+ * @author Iulian Rotaru
+ */
+final class BeanTransformer implements ResultTransformer
+{
+  private static final long serialVersionUID = 6139527844710273391L;
+
+  /** Row mappers cache, per DTO class and aliases list. */
+  private static final ClassValue<Map<List<String>, BeanMapper>> mappers = new ClassValue<Map<List<String>, BeanMapper>>()
+  {
+    @Override
+    protected Map<List<String>, BeanMapper> computeValue(Class<?> type)
+    {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  private final Class<?> type;
+
+  /** Aliases array used to resolve last mapper. Hibernate uses the same aliases array for all rows of a query. */
+  private transient String[] lastAliases;
+  private transient BeanMapper lastMapper;
+
+  public BeanTransformer(Class<?> type)
+  {
+    this.type = type;
+  }
+
+  @Override
+  public Object transformTuple(Object[] tuple, String[] aliases)
+  {
+    BeanMapper mapper = lastMapper;
+    if(mapper == null || aliases != lastAliases) {
+      mapper = mappers.get(type).computeIfAbsent(Arrays.asList(aliases.clone()), key -> new BeanMapper(type, aliases));
+      lastAliases = aliases;
+      lastMapper = mapper;
+    }
+    return mapper.map(tuple);
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public List transformList(List list)
+  {
+    return list;
+  }
+
+  /** Precomputed row mapper for a DTO class and aliases set. */
+  private static final class BeanMapper
+  {
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<?> type;
+    private final String[] aliases;
+    /** DTO constructor, with <code>()Object</code> type for default constructor and <code>(Object[])Object</code> otherwise. */
+    private final MethodHandle constructor;
+    /** True if DTO is created with tuple values passed by position to constructor. */
+    private final boolean positional;
+    /** Setters with <code>(Object,Object)void</code> type, by tuple index; null for positional constructor. */
+    private final MethodHandle[] setters;
+    /** Flags for primitive properties, by tuple index. */
+    private final boolean[] primitives;
+
+    BeanMapper(Class<?> type, String[] aliases)
+    {
+      this.type = type;
+      this.aliases = aliases.clone();
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      try {
+        Constructor<?> defaultConstructor = defaultConstructor(type);
+        if(defaultConstructor == null) {
+          Constructor<?> constructor = positionalConstructor(type, aliases.length);
+          constructor.setAccessible(true);
+          this.constructor = lookup.unreflectConstructor(constructor).asSpreader(Object[].class, aliases.length).asType(MethodType.methodType(Object.class, Object[].class));
+          this.positional = true;
+          this.setters = null;
+          this.primitives = null;
+          return;
+        }
+
+        defaultConstructor.setAccessible(true);
+        this.constructor = lookup.unreflectConstructor(defaultConstructor).asType(MethodType.methodType(Object.class));
+        this.positional = false;
+        this.setters = new MethodHandle[aliases.length];
+        this.primitives = new boolean[aliases.length];
+        for(int i = 0; i < aliases.length; ++i) {
+          if(aliases[i] == null) {
+            throw new HibernateException(String.format("Missing alias for column |%d| mapped to |%s|.", i, type.getName()));
+          }
+          Method setter = setter(type, aliases[i]);
+          if(setter != null) {
+            setter.setAccessible(true);
+            setters[i] = lookup.unreflect(setter).asType(SETTER_TYPE);
+            primitives[i] = setter.getParameterTypes()[0].isPrimitive();
+            continue;
+          }
+          Field field = field(type, aliases[i]);
+          if(field == null) {
+            throw new HibernateException(String.format("Missing setter or field for alias |%s| on |%s|.", aliases[i], type.getName()));
+          }
+          field.setAccessible(true);
+          setters[i] = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+          primitives[i] = field.getType().isPrimitive();
+        }
+      }
+      catch(IllegalAccessException e) {
+        throw new HibernateException(e);
+      }
+    }
+
+    Object map(Object[] tuple)
+    {
+      try {
+        if(positional) {
+          return (Object)constructor.invokeExact(tuple);
+        }
+        Object bean = (Object)constructor.invokeExact();
+        for(int i = 0; i < setters.length; ++i) {
+          if(tuple[i] != null || !primitives[i]) {
+            setters[i].invokeExact(bean, tuple[i]);
+          }
+        }
+        return bean;
+      }
+      catch(RuntimeException | Error e) {
+        throw new HibernateException(String.format("Fail to map tuple to |%s| using aliases |%s|.", type.getName(), Arrays.toString(aliases)), e);
+      }
+      catch(Throwable t) {
+        throw new HibernateException(t);
+      }
+    }
+
+    private static Constructor<?> defaultConstructor(Class<?> type)
+    {
+      try {
+        return type.getDeclaredConstructor();
+      }
+      catch(NoSuchMethodException e) {
+        return null;
+      }
+    }
+
+    private static Constructor<?> positionalConstructor(Class<?> type, int parametersCount)
+    {
+      Constructor<?> found = null;
+      for(Constructor<?> constructor : type.getDeclaredConstructors()) {
+        if(constructor.getParameterCount() == parametersCount) {
+          if(found != null) {
+            throw new HibernateException(String.format("Ambiguous constructors with |%d| parameters on |%s|.", parametersCount, type.getName()));
+          }
+          found = constructor;
+        }
+      }
+      if(found == null) {
+        throw new HibernateException(String.format("Missing default constructor or constructor with |%d| parameters on |%s|.", parametersCount, type.getName()));
+      }
+      return found;
+    }
+
+    private static Method setter(Class<?> type, String alias)
+    {
+      String name = "set" + Character.toUpperCase(alias.charAt(0)) + alias.substring(1);
+      for(Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+        for(Method method : clazz.getDeclaredMethods()) {
+          if(method.getName().equals(name) && method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers())) {
+            return method;
+          }
+        }
+      }
+      return null;
+    }
+
+    private static Field field(Class<?> type, String alias)
+    {
+      for(Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+        try {
+          Field field = clazz.getDeclaredField(alias);
+          if(!Modifier.isStatic(field.getModifiers())) {
+            return field;
+          }
+        }
+        catch(NoSuchFieldException ignore) {}
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package com.jslib.transaction.hibernate;
+
+import org.hibernate.HibernateException;
+
+/**
+ * Delete entities by a large ids collection, in chunks. Every chunk is executed as a single <code>delete</code>
+ * statement with an <code>IN</code> clause not larger than configured chunk size. Bulk delete does not cascade and
+ * does not load deleted entities into session.
+ * <p>
+ * By default all chunks are executed sequentially, on current transaction session, and are committed or rolled back
+ * with the transaction. If commit per chunk is enabled, every chunk runs on a separate session, in its own database
+ * transaction, so that locks are held only for one chunk; a failure leaves already committed chunks in place. Chunks
+ * on separate sessions can run concurrently, with bounded parallelism.
+ * 
+ * <pre>
+ * long rows = sm.bulkDelete("Person", ids).chunkSize(500).commitPerChunk(true).parallelism(4).execute();
+ * </pre>
+ * 
+ * @author Iulian Rotaru
+ */
+public interface BulkDelete
+{
+  /**
+   * Set the maximum number of ids deleted by a single statement. Default value is <code>IN</code> clause maximum size,
+   * loaded from <code>hibernate.query.in_clause_max_size</code> property.
+   * 
+   * @param chunkSize chunk size.
+   * @return this pointer.
+   * @throws IllegalArgumentException if chunk size is not strict positive.
+   */
+  BulkDelete chunkSize(int chunkSize);
+
+  /**
+   * Execute every chunk on a separate session and database transaction, committed when chunk is complete. Default is
+   * false, that is, all chunks are executed on current transaction.
+   * 
+   * @param commitPerChunk commit per chunk flag.
+   * @return this pointer.
+   */
+  BulkDelete commitPerChunk(boolean commitPerChunk);
+
+  /**
+   * Set the maximum number of chunks executed concurrently. Parallelism greater than one implies commit per chunk
+   * since a session cannot be shared among threads. Default value is one.
+   * 
+   * @param parallelism maximum number of concurrent chunks.
+   * @return this pointer.
+   * @throws IllegalArgumentException if parallelism is not strict positive.
+   */
+  BulkDelete parallelism(int parallelism);
+
+  /**
+   * Register listener for bulk delete progress, invoked after every completed chunk. When parallelism is greater than
+   * one listener is invoked from worker threads, but never concurrently.
+   * 
+   * @param listener progress listener.
+   * @return this pointer.
+   * @throws IllegalArgumentException if listener is null.
+   */
+  BulkDelete progress(Listener listener);
+
+  /**
+   * Execute bulk delete. On failure, remaining chunks are not started and chunks already running are allowed to
+   * complete.
+   * 
+   * @return total number of deleted rows.
+   * @throws HibernateException if a chunk delete fails.
+   */
+  long execute();
+
+  /** Bulk delete progress listener. */
+  @FunctionalInterface
+  interface Listener
+  {
+    /**
+     * Chunk delete completed.
+     * 
+     * @param completedChunks number of completed chunks, including current one,
+     * @param chunksCount total number of chunks,
+     * @param deletedRows number of rows deleted by all completed chunks.
+     */
+    void onChunk(int completedChunks, int chunksCount, long deletedRows);
+  }
+}
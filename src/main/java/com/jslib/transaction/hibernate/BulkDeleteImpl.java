@@ -0,0 +1,254 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.util.Params;
+
+/**
+ * Implementation of {@link BulkDelete} interface. Ids are kept into a primitive array and bound by position with
+ * {@link Query#setLong(int, long)}, so that there is no ids collection of boxed values. Chunks are padded to
+ * <code>IN</code> clause padded size, see {@link InClause}, by repeating last id, so that a bulk delete uses at most two
+ * distinct statements.
+ * <p>
+ * Current implementation is not designed to be reused; create a new instance for every bulk delete.
+ * 
+ * @author Iulian Rotaru
+ */
+final class BulkDeleteImpl implements BulkDelete
+{
+  private static final Log log = LogFactory.getLog(BulkDeleteImpl.class);
+
+  /** Counter for worker threads name. */
+  private static final AtomicInteger threadIndex = new AtomicInteger();
+
+  /** Current transaction session. */
+  private final Session session;
+  /** Entity name as used by HQL. */
+  private final String entityName;
+  /** Ids of entities to delete. */
+  private final long[] ids;
+  /** Session factory IN clause settings. */
+  private final InClause inClause;
+
+  private int chunkSize;
+  private boolean commitPerChunk;
+  private int parallelism = 1;
+  private Listener listener;
+
+  /** Guard for completed chunks and deleted rows counters, also used to serialize listener notifications. */
+  private final Object lock = new Object();
+  private int completedChunks;
+  private long deletedRows;
+
+  /**
+   * Create bulk delete for entity ids.
+   * 
+   * @param session current transaction session,
+   * @param entityName entity name,
+   * @param ids ids of entities to delete.
+   */
+  public BulkDeleteImpl(Session session, String entityName, long[] ids)
+  {
+    this.session = session;
+    this.entityName = entityName;
+    this.ids = ids;
+    this.inClause = InClause.of(session.getSessionFactory());
+    this.chunkSize = inClause.getMaxSize();
+  }
+
+  @Override
+  public BulkDelete chunkSize(int chunkSize)
+  {
+    Params.strictPositive(chunkSize, "Chunk size");
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  @Override
+  public BulkDelete commitPerChunk(boolean commitPerChunk)
+  {
+    this.commitPerChunk = commitPerChunk;
+    return this;
+  }
+
+  @Override
+  public BulkDelete parallelism(int parallelism)
+  {
+    Params.strictPositive(parallelism, "Parallelism");
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  @Override
+  public BulkDelete progress(Listener listener)
+  {
+    Params.notNull(listener, "Listener");
+    this.listener = listener;
+    return this;
+  }
+
+  @Override
+  public long execute()
+  {
+    if(ids.length == 0) {
+      return 0;
+    }
+    int chunksCount = (ids.length + chunkSize - 1) / chunkSize;
+    // there are at most two distinct chunk sizes: full chunk and last, partial, chunk
+    String fullChunkHQL = hql(inClause.paddedSize(Math.min(chunkSize, ids.length)));
+    String lastChunkHQL = hql(inClause.paddedSize(ids.length - (chunksCount - 1) * chunkSize));
+    Chunks chunks = new Chunks(chunksCount, fullChunkHQL, lastChunkHQL);
+
+    if(parallelism == 1) {
+      for(int chunk = 0; chunk < chunksCount; ++chunk) {
+        if(commitPerChunk) {
+          executeOnNewSession(chunks, chunk);
+        }
+        else {
+          onChunk(chunksCount, executeChunk(session, chunks, chunk));
+        }
+      }
+      return deletedRows;
+    }
+
+    int threadsCount = Math.min(parallelism, chunksCount);
+    log.debug("Bulk delete |%d| |%s| entities in |%d| chunks on |%d| threads.", ids.length, entityName, chunksCount, threadsCount);
+    ExecutorService executor = Executors.newFixedThreadPool(threadsCount, runnable -> {
+      Thread thread = new Thread(runnable, "hibernate-bulk-delete-" + threadIndex.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      AtomicInteger nextChunk = new AtomicInteger();
+      List<Future<?>> workers = new ArrayList<>(threadsCount);
+      for(int i = 0; i < threadsCount; ++i) {
+        workers.add(executor.submit(() -> {
+          int chunk;
+          while(!chunks.failed && (chunk = nextChunk.getAndIncrement()) < chunksCount) {
+            try {
+              executeOnNewSession(chunks, chunk);
+            }
+            catch(RuntimeException e) {
+              chunks.failed = true;
+              throw e;
+            }
+          }
+        }));
+      }
+      for(Future<?> worker : workers) {
+        worker.get();
+      }
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new HibernateException("Interrupted bulk delete.", e);
+    }
+    catch(ExecutionException e) {
+      if(e.getCause() instanceof HibernateException) {
+        throw (HibernateException)e.getCause();
+      }
+      throw new HibernateException(e.getCause());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    return deletedRows;
+  }
+
+  /**
+   * Execute a chunk on a new session and database transaction, committed on success.
+   * 
+   * @param chunks chunks descriptor,
+   * @param chunk chunk index.
+   */
+  private void executeOnNewSession(Chunks chunks, int chunk)
+  {
+    SessionFactory sessionFactory = session.getSessionFactory();
+    Session chunkSession = sessionFactory.openSession();
+    try {
+      Transaction transaction = chunkSession.beginTransaction();
+      int rows;
+      try {
+        rows = executeChunk(chunkSession, chunks, chunk);
+        transaction.commit();
+      }
+      catch(RuntimeException e) {
+        transaction.rollback();
+        throw e;
+      }
+      onChunk(chunks.count, rows);
+    }
+    finally {
+      chunkSession.close();
+    }
+  }
+
+  private int executeChunk(Session session, Chunks chunks, int chunk)
+  {
+    int offset = chunk * chunkSize;
+    int size = Math.min(chunkSize, ids.length - offset);
+    Query query = session.createQuery(chunk < chunks.count - 1 ? chunks.fullChunkHQL : chunks.lastChunkHQL);
+    int paddedSize = inClause.paddedSize(size);
+    for(int i = 0; i < paddedSize; ++i) {
+      query.setLong(i, ids[offset + Math.min(i, size - 1)]);
+    }
+    return query.executeUpdate();
+  }
+
+  private void onChunk(int chunksCount, int rows)
+  {
+    synchronized(lock) {
+      ++completedChunks;
+      deletedRows += rows;
+      if(listener != null) {
+        listener.onChunk(completedChunks, chunksCount, deletedRows);
+      }
+    }
+  }
+
+  private String hql(int parametersCount)
+  {
+    StringBuilder hql = new StringBuilder("delete from ");
+    hql.append(entityName);
+    hql.append(" where id in(");
+    for(int i = 0; i < parametersCount; ++i) {
+      if(i > 0) {
+        hql.append(',');
+      }
+      hql.append('?');
+    }
+    hql.append(')');
+    return hql.toString();
+  }
+
+  /** Chunks count and statements, shared by worker threads. */
+  private static final class Chunks
+  {
+    final int count;
+    final String fullChunkHQL;
+    final String lastChunkHQL;
+    /** Set by first failed chunk so that remaining chunks are not started. */
+    volatile boolean failed;
+
+    Chunks(int count, String fullChunkHQL, String lastChunkHQL)
+    {
+      this.count = count;
+      this.fullChunkHQL = fullChunkHQL;
+      this.lastChunkHQL = lastChunkHQL;
+    }
+  }
+}
@@ -1,12 +1,24 @@
 package com.jslib.transaction.hibernate;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Settings;
+import org.hibernate.engine.SessionFactoryImplementor;
 
 import com.jslib.api.log.Log;
 import com.jslib.api.log.LogFactory;
 import com.jslib.api.transaction.TransactionException;
+import com.jslib.hibernate.cache.EmbeddedCacheProvider;
 import com.jslib.lang.BugError;
 import com.jslib.lang.Config;
 
@@ -15,6 +27,16 @@ import com.jslib.lang.Config;
  * stored on thread local variables and use it to retrieve currently executed Hibernate session, see
  * {@link #getSession()}.
  * <p>
+ * Transactions created for an explicit schema, other than configured default schema, are executed on a session factory
+ * dedicated to that schema, see {@link SessionFactoryRegistry}.
+ * <p>
+ * If read replicas are configured, read-only transactions on default schema are executed on a replica, see
+ * {@link ReplicaPool}. If there is no healthy replica, read-only transactions fall back to primary database.
+ * <p>
+ * A transaction is bound to the thread that created it. If working unit continues on another thread, transaction
+ * should be explicitly propagated, see {@link #bindTransaction(TransactionImpl)}. Thread local entry is removed when
+ * transaction is closed so that short lived threads do not retain stale entries.
+ * <p>
  * Session factory is configured from provided configuration object, see {@link Config} class for format description.
  * 
  * @author Iulian Rotaru
@@ -25,6 +47,11 @@ final class HibernateAdapter
 
   public static final String CONFIG_FILE = "hibernate.cfg.xml";
 
+  /** Asynchronous transactions pool size used when there is no pool size configured. */
+  private static final int DEFAULT_ASYNC_POOL_SIZE = 10;
+  /** Time, in seconds, destroy waits for running asynchronous transactions before closing session factories. */
+  private static final int ASYNC_SHUTDOWN_TIMEOUT = 30;
+
   /** Keep current on working transaction on thread local variable. */
   private final ThreadLocal<TransactionImpl> transactionsCache = new ThreadLocal<>();
 
@@ -34,6 +61,15 @@ final class HibernateAdapter
    */
   private final SessionFactory sessionFactory;
 
+  /** Default schema from Hibernate configuration, possible null. */
+  private final String defaultSchema;
+
+  /** Session factories for schemas other than default one. */
+  private final SessionFactoryRegistry tenants;
+
+  /** Read replicas used for read-only transactions on default schema. */
+  private final ReplicaPool replicas;
+
   /**
    * Hibernate transaction timeout. This value is global per database adapter, i.e. on application. Value expressed in
    * seconds. Default value is zero which means blocking connection. It is loaded from
@@ -41,18 +77,157 @@ final class HibernateAdapter
    */
   private int transactionTimeout;
 
+  /**
+   * Create lazy transactions that open Hibernate session on first use, see {@link TransactionImpl}. It is loaded from
+   * <code>hibernate.transaction.lazy</code> property; default value is false.
+   */
+  private final boolean lazyTransaction;
+
+  /**
+   * Number of threads used for asynchronous transactions. It is loaded from <code>hibernate.async.pool_size</code>
+   * property; if missing uses connection pool maximum size so that asynchronous transactions do not overcommit
+   * connections.
+   */
+  private final int asyncPoolSize;
+
+  /**
+   * Maximum number of asynchronous transactions waiting for a free thread. It is loaded from
+   * <code>hibernate.async.queue_size</code> property; default value is asynchronous pool size.
+   */
+  private final int asyncQueueSize;
+
+  /** Transaction life cycle listener, default to transaction metrics. */
+  private volatile TransactionListener transactionListener = new TransactionMetrics();
+
+  /** Executor for asynchronous transactions, lazily created on first use. */
+  private volatile ExecutorService asyncExecutor;
+
   public HibernateAdapter()
   {
-    log.trace("HibernateAdapter()");
+    this(CONFIG_FILE);
+  }
 
-    Configuration configuration = new Configuration();
-    configuration.configure(CONFIG_FILE);
+  /**
+   * Create adapter configured from given configuration resource. Default constructor uses {@link #CONFIG_FILE}; this
+   * constructor is for testing and benchmarks that need an alternative database.
+   * 
+   * @param configFile Hibernate configuration resource, loaded from class path.
+   */
+  HibernateAdapter(String configFile)
+  {
+    this(new Configuration().configure(configFile));
+  }
+
+  /**
+   * Create adapter for a Hibernate configuration created programmatically. Configuration should be complete, including
+   * mappings; it is used for all session factories created by this adapter.
+   * 
+   * @param configuration Hibernate configuration.
+   */
+  HibernateAdapter(Configuration configuration)
+  {
+    log.trace("HibernateAdapter(Configuration)");
 
     String timeout = configuration.getProperty("hibernate.transaction.timeout");
     this.transactionTimeout = timeout != null ? Integer.parseInt(timeout) : 0;
+    this.lazyTransaction = Boolean.parseBoolean(configuration.getProperty("hibernate.transaction.lazy"));
+
+    String asyncPoolSize = configuration.getProperty("hibernate.async.pool_size");
+    if(asyncPoolSize == null) {
+      asyncPoolSize = configuration.getProperty("hibernate.c3p0.max_size");
+    }
+    if(asyncPoolSize == null) {
+      asyncPoolSize = configuration.getProperty("hibernate.connection.pool_size");
+    }
+    this.asyncPoolSize = asyncPoolSize != null ? Integer.parseInt(asyncPoolSize) : DEFAULT_ASYNC_POOL_SIZE;
+    String asyncQueueSize = configuration.getProperty("hibernate.async.queue_size");
+    this.asyncQueueSize = asyncQueueSize != null ? Integer.parseInt(asyncQueueSize) : this.asyncPoolSize;
+
+    // all session factories built from this configuration, including tenant and replica ones, get query analysis cache
+    // and IN clause settings
+    configuration.setSessionFactoryObserver(new QueryAnalysisCache.Observer(configuration.getSessionFactoryObserver()));
+
+    // use embedded cache provider if caching is explicitly enabled but there is no cache provider configured
+    boolean cacheEnabled = Boolean.parseBoolean(configuration.getProperty("hibernate.cache.use_second_level_cache")) || Boolean.parseBoolean(configuration.getProperty("hibernate.cache.use_query_cache"));
+    if(cacheEnabled && configuration.getProperty("hibernate.cache.provider_class") == null && configuration.getProperty("hibernate.cache.region.factory_class") == null) {
+      log.debug("Use embedded cache provider.");
+      configuration.setProperty("hibernate.cache.provider_class", EmbeddedCacheProvider.class.getName());
+    }
+    NamedQueries.load(configuration);
 
     log.debug("Create Hibernate session factory.");
     sessionFactory = configuration.buildSessionFactory();
+
+    defaultSchema = configuration.getProperty("hibernate.default_schema");
+    tenants = new SessionFactoryRegistry(configuration, sessionFactory);
+    replicas = new ReplicaPool(configuration, sessionFactory);
+  }
+
+  /**
+   * Get properties overridden on session factories derived from primary session factory, that is, tenants and read
+   * replicas session factories. Derived session factories skip the costly startup work that primary session factory
+   * already did: JDBC metadata is not read, dialect and JDBC features being copied from primary session factory, named
+   * queries are not checked and schema export or validation, if configured, is not performed. The latter is critical
+   * for replicas: schema export would drop and create tables on every replica and schema validation would fail adapter
+   * creation if a replica is down.
+   * 
+   * @param primarySessionFactory primary session factory, already built.
+   * @return properties to override, with fully qualified names; null value removes property.
+   */
+  static Map<String, String> derivedProperties(SessionFactory primarySessionFactory)
+  {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("hibernate.query.startup_check", "false");
+    properties.put("hibernate.hbm2ddl.auto", null);
+    if(primarySessionFactory instanceof SessionFactoryImplementor) {
+      SessionFactoryImplementor primary = (SessionFactoryImplementor)primarySessionFactory;
+      Settings settings = primary.getSettings();
+      if(primary.getDialect() != null && settings != null) {
+        properties.put("hibernate.temp.use_jdbc_metadata_defaults", "false");
+        properties.put("hibernate.dialect", primary.getDialect().getClass().getName());
+        properties.put("hibernate.jdbc.use_scrollable_resultset", Boolean.toString(settings.isScrollableResultSetsEnabled()));
+        properties.put("hibernate.jdbc.use_get_generated_keys", Boolean.toString(settings.isGetGeneratedKeysEnabled()));
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Build a session factory from shared Hibernate configuration, with some properties overridden. Configuration
+   * properties are temporarily altered and restored after session factory creation, while holding configuration lock.
+   * This way mapping metadata is parsed only once and shared by all session factories.
+   * 
+   * @param configuration shared Hibernate configuration,
+   * @param properties properties to override, with fully qualified names; null value removes property.
+   * @return newly created session factory.
+   */
+  static SessionFactory buildSessionFactory(Configuration configuration, Map<String, String> properties)
+  {
+    synchronized(configuration) {
+      Map<String, String> savedProperties = new HashMap<>();
+      for(Map.Entry<String, String> property : properties.entrySet()) {
+        savedProperties.put(property.getKey(), configuration.getProperty(property.getKey()));
+        if(property.getValue() != null) {
+          configuration.setProperty(property.getKey(), property.getValue());
+        }
+        else {
+          configuration.getProperties().remove(property.getKey());
+        }
+      }
+      try {
+        return configuration.buildSessionFactory();
+      }
+      finally {
+        for(Map.Entry<String, String> property : savedProperties.entrySet()) {
+          if(property.getValue() != null) {
+            configuration.setProperty(property.getKey(), property.getValue());
+          }
+          else {
+            configuration.getProperties().remove(property.getKey());
+          }
+        }
+      }
+    }
   }
 
   public SessionFactory getSessionFactory()
@@ -64,35 +239,212 @@ final class HibernateAdapter
   }
 
   /**
-   * Create a database handler. Create a new {@link TransactionImpl} and store it on current thread so that it can be
-   * retrieved by application code. This method is invoked by {@link TransactionManagerImpl} when start a new
-   * transaction. Note that created handler is valid only on current transaction boundaries.
+   * Create a database handler for requested schema. This method is invoked by {@link TransactionManagerImpl} when start
+   * a new transaction. If schema is null or equal to configured default schema, transaction is executed on default
+   * session factory; otherwise uses the session factory dedicated to that schema.
+   * <p>
+   * If there is already a transaction on current thread this method just increments its nesting level. A nested
+   * transaction always runs on the outer transaction schema; it is considered a bug to request a nested transaction for
+   * a different, not null, schema.
    * 
+   * @param schema database schema, null for default schema,
    * @param readOnly if this flag is true create a read-only transaction, supporting only database select operations.
    * @return newly created database handler.
+   * @throws TransactionException if nested transaction schema does not match outer transaction.
    */
-  public TransactionImpl createTransaction(boolean readOnly)
+  public TransactionImpl createTransaction(String schema, boolean readOnly)
   {
-    TransactionImpl transaction = transactionsCache.get();
+    return createTransaction(schema, readOnly, false);
+  }
+
+  /**
+   * Create a stateless database handler for requested schema. Stateless transaction resource manager is a Hibernate
+   * stateless session. Rules for schema and nested transactions are the same as for
+   * {@link #createTransaction(String, boolean)}; in addition, it is considered a bug to mix stateless and regular
+   * transactions when nesting.
+   * 
+   * @param schema database schema, null for default schema.
+   * @return newly created database handler.
+   * @throws TransactionException if nested transaction schema or kind does not match outer transaction.
+   */
+  public TransactionImpl createStatelessTransaction(String schema)
+  {
+    return createTransaction(schema, false, true);
+  }
+
+  private TransactionImpl createTransaction(String schema, boolean readOnly, boolean stateless)
+  {
+    if(schema != null && schema.equals(defaultSchema)) {
+      schema = null;
+    }
+
+    TransactionImpl transaction = getTransaction();
     if(transaction != null) {
+      if(schema != null && !schema.equals(transaction.getSchema())) {
+        throw new TransactionException(String.format("Nested transaction on schema |%s| inside transaction on schema |%s|.", schema, transaction.getSchema()));
+      }
+      if(stateless != transaction.isStateless()) {
+        throw new TransactionException("Nested transaction mixes stateless and regular sessions.");
+      }
       transaction.incrementTransactionNestingLevel();
     }
+    else if(readOnly && schema == null && !replicas.isEmpty()) {
+      transaction = createReplicaTransaction();
+      transactionsCache.set(transaction);
+    }
     else {
-      transaction = new TransactionImpl(this, transactionTimeout, readOnly);
+      SessionFactory sessionFactory = schema != null ? tenants.acquire(schema) : getSessionFactory();
+      try {
+        transaction = new TransactionImpl(this, sessionFactory, schema, transactionTimeout, readOnly, stateless, lazyTransaction);
+      }
+      catch(RuntimeException e) {
+        if(schema != null) {
+          tenants.release(schema);
+        }
+        throw e;
+      }
       transactionsCache.set(transaction);
     }
     return transaction;
   }
 
-  public void destroyTransaction()
+  /**
+   * Create read-only transaction on a healthy read replica, with primary database as fallback. If there is no healthy
+   * replica create transaction on primary database. Transaction acquires replica connection when opens session, on
+   * creation or on first use if lazy, and falls back to primary database if connection acquisition fails, see
+   * {@link #onConnectionFailure(SessionFactory)}.
+   * 
+   * @return newly created read-only transaction.
+   */
+  private TransactionImpl createReplicaTransaction()
+  {
+    SessionFactory sessionFactory = replicas.acquire();
+    if(sessionFactory == null) {
+      return new TransactionImpl(this, getSessionFactory(), null, transactionTimeout, true, false, lazyTransaction);
+    }
+    // replica is released on connection failure, before fall back, or on transaction close, see #destroyTransaction
+    return new TransactionImpl(this, sessionFactory, getSessionFactory(), null, transactionTimeout, true, false, lazyTransaction);
+  }
+
+  /**
+   * Release and eject read replica after connection acquisition failure. Invoked by transaction before falling back to
+   * primary database.
+   * 
+   * @param sessionFactory read replica session factory.
+   */
+  void onConnectionFailure(SessionFactory sessionFactory)
+  {
+    log.warn("Fail to acquire read replica connection. Fall back to primary database.");
+    replicas.release(sessionFactory);
+    replicas.eject(sessionFactory);
+  }
+
+  /**
+   * Remove transaction from current thread and release its schema or read replica, if any. Invoked by transaction on
+   * close.
+   * 
+   * @param transaction closed transaction.
+   */
+  public void destroyTransaction(TransactionImpl transaction)
+  {
+    if(transactionsCache.get() == transaction) {
+      transactionsCache.remove();
+    }
+    if(transaction.getSchema() != null) {
+      tenants.release(transaction.getSchema());
+    }
+    else if(transaction.isReadOnly()) {
+      replicas.release(transaction.getSessionFactory());
+    }
+  }
+
+  /**
+   * Get transaction bound to current thread. If bound transaction was closed from another thread, remove it from
+   * current thread and return null.
+   * 
+   * @return current thread transaction, possible null.
+   */
+  public TransactionImpl getTransaction()
+  {
+    TransactionImpl transaction = transactionsCache.get();
+    if(transaction != null && transaction.isClosed()) {
+      transactionsCache.remove();
+      return null;
+    }
+    return transaction;
+  }
+
+  /**
+   * Bind transaction to current thread, replacing current thread transaction, if any. Used to propagate a transaction
+   * to another thread, for example when working unit continues on an executor thread. Returned binding restores
+   * previous transaction on close and should be closed on the same thread.
+   * <p>
+   * Hibernate session is not thread safe; it is caller responsibility to ensure transaction is not used concurrently
+   * from multiple threads.
+   * 
+   * @param transaction transaction to bind to current thread.
+   * @return transaction binding.
+   */
+  public TransactionBinding bindTransaction(TransactionImpl transaction)
   {
-    transactionsCache.set(null);
+    TransactionBinding binding = new TransactionBinding(this, transactionsCache.get());
+    transactionsCache.set(transaction);
+    return binding;
+  }
+
+  /**
+   * Restore current thread transaction replaced by a binding. Invoked by {@link TransactionBinding#close()}.
+   * 
+   * @param transaction previous transaction, possible null.
+   */
+  void restoreTransaction(TransactionImpl transaction)
+  {
+    if(transaction != null) {
+      transactionsCache.set(transaction);
+    }
+    else {
+      transactionsCache.remove();
+    }
+  }
+
+  public TransactionListener getTransactionListener()
+  {
+    return transactionListener;
+  }
+
+  public void setTransactionListener(TransactionListener transactionListener)
+  {
+    this.transactionListener = transactionListener;
+  }
+
+  /**
+   * Get executor for asynchronous transactions, creating it on first use. Executor has a fixed number of threads and a
+   * bounded queue, see {@link #asyncPoolSize} and {@link #asyncQueueSize}. When queue is full executor rejects new tasks
+   * with {@link java.util.concurrent.RejectedExecutionException}; the same after {@link #destroy()}, when executor is
+   * shut down.
+   * 
+   * @return asynchronous transactions executor.
+   */
+  public ExecutorService getAsyncExecutor()
+  {
+    ExecutorService executor = asyncExecutor;
+    if(executor == null) {
+      synchronized(this) {
+        executor = asyncExecutor;
+        if(executor == null) {
+          log.debug("Create asynchronous transactions executor with |%d| threads.", asyncPoolSize);
+          executor = new ThreadPoolExecutor(asyncPoolSize, asyncPoolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(asyncQueueSize), new AsyncThreadFactory());
+          asyncExecutor = executor;
+        }
+      }
+    }
+    return executor;
   }
 
   @SuppressWarnings("unchecked")
   public <T> T getSession()
   {
-    TransactionImpl transaction = transactionsCache.get();
+    TransactionImpl transaction = getTransaction();
     if(transaction == null) {
       throw new TransactionException("Missing transaction. Probably attempt to use Hibernate session outside a transaction boundaries.");
     }
@@ -101,11 +453,42 @@ final class HibernateAdapter
 
   public void destroy()
   {
+    // executor is created if not already, so that asynchronous transactions submitted after destroy are rejected
+    ExecutorService executor = getAsyncExecutor();
+    executor.shutdown();
+    try {
+      // running and queued asynchronous transactions still need session factories
+      if(!executor.awaitTermination(ASYNC_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+        log.warn("Timeout waiting for asynchronous transactions. Force executor shutdown.");
+        executor.shutdownNow();
+      }
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      executor.shutdownNow();
+    }
+
     log.debug("Close Hibernate session factory and releases caches and database connections.");
     // access session factory through getter to have validity check
     SessionFactory sessionFactory = getSessionFactory();
     if(sessionFactory != null) {
       sessionFactory.close();
     }
+    tenants.destroy();
+    replicas.destroy();
+  }
+
+  /** Factory for asynchronous transactions daemon threads. */
+  private static final class AsyncThreadFactory implements ThreadFactory
+  {
+    private final AtomicInteger index = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable)
+    {
+      Thread thread = new Thread(runnable, "hibernate-async-" + index.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
   }
 }
@@ -1,9 +1,12 @@
 package com.jslib.transaction.hibernate;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
+import org.hibernate.CacheMode;
 import org.hibernate.HibernateException;
 import org.hibernate.NonUniqueObjectException;
 
@@ -65,6 +68,65 @@ public interface HqlQuery
    */
   HqlQuery limit(int offset, int rowsCount);
 
+  /**
+   * Set JDBC fetch size used by {@link #stream()}, that is, the number of rows retrieved from database in a single round
+   * trip. It is also the number of rows after which stream clears Hibernate session. If not set, stream uses a fetch
+   * size of 1000. Note that MySQL driver streams results only if fetch size is {@link Integer#MIN_VALUE}.
+   * 
+   * @param fetchSize JDBC fetch size.
+   * @return this pointer.
+   */
+  HqlQuery fetchSize(int fetchSize);
+
+  /**
+   * Keyset pagination: select rows with sort key greater than last seen value, ordered ascending by sort key. Unlike
+   * {@link #limit(int, int)} offset, that scans and discards skipped rows, this method adds a seek predicate to query
+   * and cost per page does not depend on page depth. Use together with {@link #limit(int)} for page size:
+   * 
+   * <pre>
+   * List&lt;Person&gt; page = sm.HQL(&quot;from Person p&quot;).after(&quot;p.id&quot;, lastId).limit(100).list();
+   * </pre>
+   * 
+   * Sort key property should be unique, usually primary key. Query should not have <code>order by</code> or
+   * <code>group by</code> clauses; order by sort key is added by this method. Last value is bound to a named
+   * parameter, therefore it applies to Hibernate query methods, not to direct JDBC access methods.
+   * 
+   * @param sortKey sort key property, as used by query, e.g. with alias prefix,
+   * @param lastValue last seen sort key value, null for first page.
+   * @return this pointer.
+   * @throws IllegalArgumentException if sort key is null or empty.
+   */
+  HqlQuery after(String sortKey, Object lastValue);
+
+  /**
+   * Enable query results cache. Results are stored into default query cache region, unless a region is selected
+   * with {@link #cacheRegion(String)}. Query cache should be enabled into Hibernate configuration, see
+   * <code>hibernate.cache.use_query_cache</code> property; otherwise this hint is ignored.
+   * 
+   * @return this pointer.
+   */
+  HqlQuery cacheable();
+
+  /**
+   * Enable query results cache and store results into named cache region. Region name is used as it is, without
+   * <code>hibernate.cache.region_prefix</code>.
+   * 
+   * @param regionName query cache region name.
+   * @return this pointer.
+   * @throws IllegalArgumentException if region name is null or empty.
+   */
+  HqlQuery cacheRegion(String regionName);
+
+  /**
+   * Set the way this query interacts with second level and query caches, e.g. {@link CacheMode#REFRESH} to force
+   * results reload and cache update.
+   * 
+   * @param cacheMode cache mode.
+   * @return this pointer.
+   * @throws IllegalArgumentException if cache mode is null.
+   */
+  HqlQuery cacheMode(CacheMode cacheMode);
+
   /**
    * Load fields declared as lazy into mapping definition. This method uses internally
    * {@link org.hibernate.Hibernate#initialize(Object)}.
@@ -132,9 +194,11 @@ public interface HqlQuery
    * List&lt;Person&gt; persons = sm.HQL(&quot;select column1 as name, column2 as age from ... &quot;).list(Person.class);
    * </pre>
    * 
-   * Implementation uses Transformers.aliasToBean(type) to bind a built-in result transformer. It is caller
-   * responsibility to ensure type compatibility between selected columns and type fields. For example if database
-   * numeric value is LONG there will be exception when try to set <code>age</code> value.
+   * Implementation uses a result transformer that resolves type constructor and setters once per selected aliases set
+   * and caches them as method handles. If type has no default constructor, values are passed by position to the
+   * constructor with the same number of parameters, e.g. record canonical constructor. It is caller responsibility to
+   * ensure type compatibility between selected columns and type fields. For example if database numeric value is LONG
+   * there will be exception when try to set <code>age</code> value.
    * 
    * @param type requested entity type.
    * @param <T> list type.
@@ -142,6 +206,54 @@ public interface HqlQuery
    */
   <T> List<T> list(Class<T> type);
 
+  /**
+   * Execute database select and return results as a stream, with constant memory usage regardless results size. This
+   * method is designed for processing large results sets, e.g. export jobs. Internally uses forward only
+   * {@link org.hibernate.ScrollableResults} and flushes and clears Hibernate session periodically, see
+   * {@link #fetchSize(int)}; therefore returned entities are read-only and become detached shortly after being consumed.
+   * Lazy fields from {@link #load(String...)} are not initialized.
+   * <p>
+   * If query selects a single entity or property stream elements are entities, respective property values; otherwise
+   * stream elements are objects arrays. Returned stream keeps database results set open and should be closed:
+   * 
+   * <pre>
+   * try(Stream&lt;Person&gt; persons = sm.HQL(&quot;from Person&quot;).stream()) {
+   *   persons.forEach(person -&gt; export(person));
+   * }
+   * </pre>
+   * 
+   * @param <T> stream elements type.
+   * @return results stream, possible empty.
+   * @throws HibernateException for Hibernate related fails like bad query syntax or entity not defined.
+   */
+  <T> Stream<T> stream();
+
+  /**
+   * Walk query results page by page, using keyset pagination, see {@link #after(String, Object)}. Every page is
+   * fetched with a seek on last value of previous page, so that cost per page is constant and the whole table can be
+   * walked. Last value is read from last page item: identifier or property value, if items are entities, or item
+   * itself, if query selects a single scalar. Hibernate session is flushed and cleared before fetching next page so that
+   * session memory does not depend on results size; as a consequence, items from previous pages are detached and
+   * changes on them after the next page is fetched are not persisted. Session is flushed only if its flush mode is not
+   * manual and it has an active transaction, e.g. not in a read-only transaction; otherwise session is cleared only if
+   * it has no pending changes, so that they are not discarded. Sort key is an entity property, optionally prefixed by query alias; nested
+   * property paths, e.g. <code>p.team.id</code>, are not supported.
+   * 
+   * <pre>
+   * Iterator&lt;List&lt;Person&gt;&gt; pages = sm.HQL(&quot;from Person p where p.age&gt;?&quot;, 18).pages(&quot;p.id&quot;, 1000);
+   * while(pages.hasNext()) {
+   *   export(pages.next());
+   * }
+   * </pre>
+   * 
+   * @param sortKey sort key property, as used by query, e.g. with alias prefix,
+   * @param pageSize maximum number of items per page.
+   * @param <T> page items type.
+   * @return pages iterator.
+   * @throws IllegalArgumentException if sort key is null or empty, is a nested path or page size is not strict positive.
+   */
+  <T> Iterator<List<T>> pages(String sortKey, int pageSize);
+
   /**
    * Execute database select on two properties and returns them as key/values map, first property in query being the map
    * key. It is user code responsibility to ensure properties to map key/value type compatibility.
@@ -160,6 +272,71 @@ public interface HqlQuery
    */
   <K, V> Map<K, V> map();
 
+  /**
+   * Execute database select on two properties and returns them as primitive int to long map, first property being
+   * the key. Results set is read directly from JDBC, with no boxing and no intermediate rows; use this method for
+   * large lookup tables, e.g. id to count:
+   * 
+   * <pre>
+   * IntLongMap counts = sm.HQL(&quot;select p.id,count(t) from Person p join p.tickets t group by p.id&quot;).intToLongMap(1000);
+   * </pre>
+   * 
+   * Direct JDBC access supports only positioned parameters, bound with Hibernate types. SQL NULL key is rejected and rows
+   * with SQL NULL value are not stored.
+   * 
+   * @param expectedSize expected number of entries, used to pre-size map.
+   * @return primitive map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  IntLongMap intToLongMap(int expectedSize);
+
+  /**
+   * Primitive int to long map with default initial size, see {@link #intToLongMap(int)}.
+   * 
+   * @return primitive map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  IntLongMap intToLongMap();
+
+  /**
+   * Execute database select on two properties and returns them as primitive long to double map, first property
+   * being the key. See {@link #intToLongMap(int)} for constraints.
+   * 
+   * @param expectedSize expected number of entries, used to pre-size map.
+   * @return primitive map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  LongDoubleMap longToDoubleMap(int expectedSize);
+
+  /**
+   * Primitive long to double map with default initial size, see {@link #longToDoubleMap(int)}.
+   * 
+   * @return primitive map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  LongDoubleMap longToDoubleMap();
+
+  /**
+   * Execute database select on two properties and returns them as long to object map, first property being the key.
+   * Values are JDBC objects, as returned by {@link java.sql.ResultSet#getObject(int)}. See {@link #intToLongMap(int)}
+   * for constraints.
+   * 
+   * @param expectedSize expected number of entries, used to pre-size map,
+   * @param <V> map value type.
+   * @return primitive keys map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  <V> LongObjectMap<V> longToObjectMap(int expectedSize);
+
+  /**
+   * Long to object map with default initial size, see {@link #longToObjectMap(int)}.
+   * 
+   * @param <V> map value type.
+   * @return primitive keys map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  <V> LongObjectMap<V> longToObjectMap();
+
   /** Execute update designated by this HQL query. */
   void update();
 
@@ -1,22 +1,27 @@
 package com.jslib.transaction.hibernate;
 
-import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
 
+import org.hibernate.CacheMode;
+import org.hibernate.EntityMode;
+import org.hibernate.FlushMode;
 import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
-import org.hibernate.transform.Transformers;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
 
-import com.jslib.util.Classes;
 import com.jslib.util.Params;
-import com.jslib.util.Types;
 
 /**
  * Implementation of {@link HqlQuery} interface. Current implementation is not designed to be reused; create a new
@@ -40,6 +45,18 @@ final class HqlQueryImpl implements HqlQuery
   private int offset;
   /** Maximum allowed number of items into results set. */
   private int rowsCount;
+  /** JDBC fetch size used by {@link #stream()}, zero for default. */
+  private int fetchSize;
+  /** Sort key for keyset pagination, null if keyset pagination is not used. */
+  private String keysetSortKey;
+  /** Last seen sort key value, null for first page. */
+  private Object keysetValue;
+  /** Enable query results cache. */
+  private boolean cacheable;
+  /** Query cache region, null for default region. */
+  private String cacheRegion;
+  /** Cache mode, null for session cache mode. */
+  private CacheMode cacheMode;
   /**
    * Flag to force {@link #list()} or {@link #list(Class)} return empty result. It is set to true by
    * {@link #param(String, Collection, boolean)} when provided parameter value is empty.
@@ -97,6 +114,46 @@ final class HqlQueryImpl implements HqlQuery
     return this;
   }
 
+  @Override
+  public HqlQuery fetchSize(int fetchSize)
+  {
+    this.fetchSize = fetchSize;
+    return this;
+  }
+
+  @Override
+  public HqlQuery after(String sortKey, Object lastValue)
+  {
+    Params.notNullOrEmpty(sortKey, "Sort key");
+    this.keysetSortKey = sortKey;
+    this.keysetValue = lastValue;
+    return this;
+  }
+
+  @Override
+  public HqlQuery cacheable()
+  {
+    this.cacheable = true;
+    return this;
+  }
+
+  @Override
+  public HqlQuery cacheRegion(String regionName)
+  {
+    Params.notNullOrEmpty(regionName, "Cache region name");
+    this.cacheable = true;
+    this.cacheRegion = regionName;
+    return this;
+  }
+
+  @Override
+  public HqlQuery cacheMode(CacheMode cacheMode)
+  {
+    Params.notNull(cacheMode, "Cache mode");
+    this.cacheMode = cacheMode;
+    return this;
+  }
+
   @Override
   public HqlQuery load(String... lazyFields)
   {
@@ -121,15 +178,8 @@ final class HqlQueryImpl implements HqlQuery
       return list;
     }
 
-    // if there are lazy fields load them explicitly, for all results items
-
-    Class<T> type = (Class<T>)list.get(0).getClass();
-    for(String lazyField : lazyFields) {
-      Field f = Classes.getField(type, lazyField);
-      for(T t : list) {
-        Hibernate.initialize(Classes.getFieldValue(t, f));
-      }
-    }
+    // if there are lazy fields load them explicitly, in batch for all results items
+    LazyLoader.initialize(session, list, lazyFields);
     return list;
   }
 
@@ -149,15 +199,124 @@ final class HqlQueryImpl implements HqlQuery
       return list;
     }
 
-    // if there are lazy fields load them explicitly, for all results items
+    // if there are lazy fields load them explicitly, in batch for all results items
+    LazyLoader.initialize(session, list, lazyFields);
+    return list;
+  }
+
+  @Override
+  public <T> Stream<T> stream()
+  {
+    if(forceEmpty) {
+      return Stream.empty();
+    }
+    return ScrollStream.create(session, query(hql), fetchSize);
+  }
+
+  @Override
+  public <T> Iterator<List<T>> pages(String sortKey, int pageSize)
+  {
+    Params.notNullOrEmpty(sortKey, "Sort key");
+    Params.isTrue(sortKey.split("\\.").length <= 2, "Sort key is a nested property path.");
+    Params.strictPositive(pageSize, "Page size");
+    return new Iterator<List<T>>()
+    {
+      private List<T> page;
+      private Object lastValue;
+      private boolean lastPage;
+
+      @Override
+      public boolean hasNext()
+      {
+        if(page == null && !lastPage) {
+          if(lastValue != null) {
+            releasePage();
+          }
+          after(sortKey, lastValue);
+          limit(pageSize);
+          List<T> items = list();
+          lastPage = items.size() < pageSize;
+          if(!items.isEmpty()) {
+            page = items;
+            lastValue = sortKeyValue(items.get(items.size() - 1), sortKey);
+            if(lastValue == null && !lastPage) {
+              throw new HibernateException(String.format("Null sort key |%s| on keyset page last item.", sortKey));
+            }
+          }
+        }
+        return page != null;
+      }
 
-    for(String lazyField : lazyFields) {
-      Field f = Classes.getField(type, lazyField);
-      for(T t : list) {
-        Hibernate.initialize(Classes.getFieldValue(t, f));
+      @Override
+      public List<T> next()
+      {
+        if(!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        List<T> next = page;
+        page = null;
+        return next;
       }
+    };
+  }
+
+  /**
+   * Release previous page items from session before fetching next page. Pending changes are flushed before clearing
+   * session, otherwise they are discarded, but only if session flush mode is not manual and there is an active
+   * transaction; a read-only transaction has no Hibernate transaction and a flush would write changes in auto-commit
+   * mode. If changes cannot be flushed session is cleared only if not dirty, so that changes are not lost; previous pages
+   * items stay in session in that case.
+   */
+  private void releasePage()
+  {
+    org.hibernate.Transaction transaction = session.getTransaction();
+    if(!FlushMode.isManualFlushMode(session.getFlushMode()) && transaction != null && transaction.isActive()) {
+      session.flush();
+      session.clear();
+    }
+    else if(!session.isDirty()) {
+      session.clear();
     }
-    return list;
+  }
+
+  /**
+   * Get sort key value from a results item: property value, if item is an entity, or item itself if it is a scalar. Sort
+   * key is a property name, optionally prefixed by query alias; nested property paths are not supported.
+   * 
+   * @param item results item,
+   * @param sortKey sort key property, possible with alias prefix.
+   * @return sort key value.
+   * @throws HibernateException if item is an objects array or sort key is not an entity property.
+   */
+  private Object sortKeyValue(Object item, String sortKey)
+  {
+    if(item == null) {
+      return null;
+    }
+    if(item instanceof Object[]) {
+      throw new HibernateException("Keyset pages iterator does not support multiple columns results.");
+    }
+    ClassMetadata metadata = session.getSessionFactory().getClassMetadata(Hibernate.getClass(item));
+    if(metadata == null) {
+      return item;
+    }
+    String property = sortKey;
+    int separator = sortKey.indexOf('.');
+    if(separator != -1) {
+      // first path segment is query alias if it is not an entity property
+      String alias = sortKey.substring(0, separator);
+      if(alias.equals(metadata.getIdentifierPropertyName()) || Arrays.asList(metadata.getPropertyNames()).contains(alias)) {
+        throw new HibernateException(String.format("Not supported nested sort key |%s|.", sortKey));
+      }
+      property = sortKey.substring(separator + 1);
+    }
+    if(property.equals(metadata.getIdentifierPropertyName())) {
+      return metadata.getIdentifier(item, (SessionImplementor)session);
+    }
+    if(!Arrays.asList(metadata.getPropertyNames()).contains(property)) {
+      throw new HibernateException(String.format("Sort key |%s| is not a property of entity |%s|.", sortKey, metadata.getEntityName()));
+    }
+    return metadata.getPropertyValue(item, property, EntityMode.POJO);
   }
 
   @SuppressWarnings("unchecked")
@@ -181,6 +340,51 @@ final class HqlQueryImpl implements HqlQuery
     return map;
   }
 
+  @Override
+  public IntLongMap intToLongMap(int expectedSize)
+  {
+    if(forceEmpty) {
+      return new IntLongMap(expectedSize);
+    }
+    return jdbcQuery().intToLongMap(expectedSize);
+  }
+
+  @Override
+  public IntLongMap intToLongMap()
+  {
+    return intToLongMap(0);
+  }
+
+  @Override
+  public LongDoubleMap longToDoubleMap(int expectedSize)
+  {
+    if(forceEmpty) {
+      return new LongDoubleMap(expectedSize);
+    }
+    return jdbcQuery().longToDoubleMap(expectedSize);
+  }
+
+  @Override
+  public LongDoubleMap longToDoubleMap()
+  {
+    return longToDoubleMap(0);
+  }
+
+  @Override
+  public <V> LongObjectMap<V> longToObjectMap(int expectedSize)
+  {
+    if(forceEmpty) {
+      return new LongObjectMap<>(expectedSize);
+    }
+    return jdbcQuery().longToObjectMap(expectedSize);
+  }
+
+  @Override
+  public <V> LongObjectMap<V> longToObjectMap()
+  {
+    return longToObjectMap(0);
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <T> T object()
@@ -193,9 +397,7 @@ final class HqlQueryImpl implements HqlQuery
       return t;
     }
 
-    for(String lazyField : lazyFields) {
-      Hibernate.initialize(Classes.getFieldValue(t, lazyField));
-    }
+    LazyLoader.initialize(t, lazyFields);
     return t;
   }
 
@@ -211,6 +413,20 @@ final class HqlQueryImpl implements HqlQuery
     query(hql).executeUpdate();
   }
 
+  /**
+   * Create direct JDBC query, translated from this helper HQL query.
+   * 
+   * @return JDBC query.
+   * @throws HibernateException if this query has named parameters.
+   */
+  private JdbcQuery jdbcQuery()
+  {
+    if(!namedParameters.isEmpty()) {
+      throw new HibernateException("Direct JDBC access supports only positioned parameters.");
+    }
+    return JdbcQuery.hql(session, hql, positionedParameters).limit(offset, rowsCount).fetchSize(fetchSize);
+  }
+
   /**
    * Create Hibernate query object and initialize it from this helper properties.
    * 
@@ -219,29 +435,11 @@ final class HqlQueryImpl implements HqlQuery
    */
   private org.hibernate.Query query(String hql, Class<?>... type)
   {
-    org.hibernate.Query q = session.createQuery(hql);
-    for(int i = 0; i < positionedParameters.length; i++) {
-      q.setParameter(i, positionedParameters[i]);
-    }
-    for(Map.Entry<String, Object> entry : namedParameters.entrySet()) {
-      Object value = entry.getValue();
-      if(Types.isArray(value)) {
-        Object[] parameter = (Object[])value;
-        if(parameter.length == 0) {
-          throw new HibernateException(String.format("Invalid named parameter |%s|. Empty array.", entry.getKey()));
-        }
-        q.setParameterList(entry.getKey(), parameter);
-      }
-      else if(Types.isCollection(value)) {
-        Collection<?> parameter = (Collection<?>)value;
-        if(parameter.isEmpty()) {
-          throw new HibernateException(String.format("Invalid named parameter |%s|. Empty list.", entry.getKey()));
-        }
-        q.setParameterList(entry.getKey(), parameter);
-      }
-      else {
-        q.setParameter(entry.getKey(), value);
-      }
+    QueryAnalysisCache.QueryAnalysis analysis = QueryAnalysisCache.get(session, hql);
+    org.hibernate.Query q = session.createQuery(keysetSortKey != null ? analysis.keyset(keysetSortKey, keysetValue != null) : hql);
+    analysis.bind(q, positionedParameters, namedParameters);
+    if(keysetSortKey != null && keysetValue != null) {
+      q.setParameter(Keyset.PARAMETER, keysetValue);
     }
     if(offset > 0) {
       q.setFirstResult(offset);
@@ -249,9 +447,18 @@ final class HqlQueryImpl implements HqlQuery
     if(rowsCount > 0) {
       q.setMaxResults(rowsCount);
     }
+    if(cacheable) {
+      q.setCacheable(true);
+      if(cacheRegion != null) {
+        q.setCacheRegion(cacheRegion);
+      }
+    }
+    if(cacheMode != null) {
+      q.setCacheMode(cacheMode);
+    }
 
     if(type.length > 0) {
-      q.setResultTransformer(Transformers.aliasToBean(type[0]));
+      q.setResultTransformer(new BeanTransformer(type[0]));
     }
     return q;
   }
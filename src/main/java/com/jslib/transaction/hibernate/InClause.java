@@ -0,0 +1,171 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.hibernate.SessionFactory;
+
+/**
+ * Values list bound to a SQL <code>IN</code> clause. Hibernate expands a list parameter into one JDBC parameter per
+ * value so every list size produces a different SQL statement, defeating both JDBC prepared statements cache and
+ * database execution plans cache. With padding enabled list size is rounded up to the next power of two by repeating
+ * last value, so that a query has at most <code>log2(max_size)</code> distinct statements.
+ * <p>
+ * Databases limit the number of values into an <code>IN</code> clause or the number of statement parameters. Where
+ * splitting a statement does not change its semantic, e.g. delete by ids, values list is split into chunks not
+ * exceeding configured maximum size, see {@link #chunks(Collection)}.
+ * <p>
+ * Padding is enabled by <code>hibernate.query.in_clause_padding</code> property; default value is false. Maximum size
+ * is loaded from <code>hibernate.query.in_clause_max_size</code> property; default value is 1000, that is, Oracle limit.
+ * Both are session factory properties: there is an instance per session factory, created with session factory query
+ * analysis cache, see {@link #of(SessionFactory)}.
+ * 
+ * @author Iulian Rotaru
+ */
+final class InClause
+{
+  /** Enable values list padding to next power of two. */
+  public static final String PADDING_PROPERTY = "hibernate.query.in_clause_padding";
+  /** Maximum number of values on a single IN clause. */
+  public static final String MAX_SIZE_PROPERTY = "hibernate.query.in_clause_max_size";
+
+  private static final int DEFAULT_MAX_SIZE = 1000;
+
+  /** Settings used for session factories not created by Hibernate adapter: no padding and default maximum size. */
+  static final InClause DEFAULT = new InClause(false, DEFAULT_MAX_SIZE);
+
+  /**
+   * Get IN clause settings for session factory.
+   * 
+   * @param sessionFactory session factory, possible null.
+   * @return session factory IN clause settings or {@link #DEFAULT} if session factory was not created by Hibernate
+   *         adapter.
+   */
+  static InClause of(SessionFactory sessionFactory)
+  {
+    QueryAnalysisCache cache = sessionFactory != null ? QueryAnalysisCache.getInstance(sessionFactory) : null;
+    return cache != null ? cache.getInClause() : DEFAULT;
+  }
+
+  /**
+   * Load IN clause settings from session factory properties.
+   * 
+   * @param properties session factory properties.
+   * @return IN clause settings.
+   */
+  static InClause load(Properties properties)
+  {
+    boolean padding = Boolean.parseBoolean(properties.getProperty(PADDING_PROPERTY));
+    String maxSize = properties.getProperty(MAX_SIZE_PROPERTY);
+    return new InClause(padding, maxSize != null ? Integer.parseInt(maxSize) : DEFAULT_MAX_SIZE);
+  }
+
+  private final boolean padding;
+  private final int maxSize;
+
+  InClause(boolean padding, int maxSize)
+  {
+    this.padding = padding;
+    this.maxSize = maxSize;
+  }
+
+  boolean isPadding()
+  {
+    return padding;
+  }
+
+  int getMaxSize()
+  {
+    return maxSize;
+  }
+
+  /**
+   * Get padded size for a values list of given size. Returns given size if padding is disabled or if given size already
+   * reaches maximum size; if next power of two exceeds maximum size, padded size is maximum size.
+   * 
+   * @param size values list size, strict positive.
+   * @return padded size.
+   */
+  int paddedSize(int size)
+  {
+    if(!padding || size <= 1 || size >= maxSize) {
+      return size;
+    }
+    return Math.min(Integer.highestOneBit(size - 1) << 1, maxSize);
+  }
+
+  /**
+   * Pad values array, if padding is enabled. Returns given array if there is no padding.
+   * 
+   * @param values not empty values array.
+   * @return padded values array.
+   */
+  Object[] pad(Object[] values)
+  {
+    int paddedSize = paddedSize(values.length);
+    if(paddedSize == values.length) {
+      return values;
+    }
+    Object[] padded = Arrays.copyOf(values, paddedSize);
+    Arrays.fill(padded, values.length, paddedSize, values[values.length - 1]);
+    return padded;
+  }
+
+  /**
+   * Pad values collection, if padding is enabled. Returns given collection if there is no padding.
+   * 
+   * @param values not empty values collection.
+   * @return padded values collection.
+   */
+  Collection<?> pad(Collection<?> values)
+  {
+    int paddedSize = paddedSize(values.size());
+    if(paddedSize == values.size()) {
+      return values;
+    }
+    List<Object> padded = new ArrayList<>(paddedSize);
+    Object last = null;
+    for(Object value : values) {
+      padded.add(value);
+      last = value;
+    }
+    while(padded.size() < paddedSize) {
+      padded.add(last);
+    }
+    return padded;
+  }
+
+  /**
+   * Split values collection into chunks not exceeding maximum size. Chunks are padded, if padding is enabled.
+   * 
+   * @param values values collection.
+   * @param <T> values type.
+   * @return values chunks, possible a single one.
+   */
+  @SuppressWarnings("unchecked")
+  <T> List<Collection<T>> chunks(Collection<T> values)
+  {
+    int chunkSize = maxSize;
+    if(values.size() <= chunkSize) {
+      return Collections.singletonList((Collection<T>)pad(values));
+    }
+
+    List<Collection<T>> chunks = new ArrayList<>(values.size() / chunkSize + 1);
+    List<T> chunk = new ArrayList<>(chunkSize);
+    for(T value : values) {
+      chunk.add(value);
+      if(chunk.size() == chunkSize) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>(chunkSize);
+      }
+    }
+    if(!chunk.isEmpty()) {
+      chunks.add((Collection<T>)pad(chunk));
+    }
+    return chunks;
+  }
+}
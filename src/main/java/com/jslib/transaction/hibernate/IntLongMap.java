@@ -0,0 +1,148 @@
+package com.jslib.transaction.hibernate;
+
+/**
+ * Map of primitive int keys to primitive long values, designed for large query results where boxed keys, values and
+ * hash map nodes would dominate memory usage. Uses open addressing with linear probing on parallel keys and values
+ * arrays, see {@link PrimitiveMap}. Null keys and values are not supported, of course, since both are primitives.
+ * <p>
+ * This class is not thread safe.
+ * 
+ * @author Iulian Rotaru
+ */
+public final class IntLongMap extends PrimitiveMap
+{
+  /** Keys table, with zero marking free slots. Zero key is stored outside table. */
+  private int[] keys;
+  private long[] values;
+  private long zeroKeyValue;
+
+  /** Create empty map with default capacity. */
+  public IntLongMap()
+  {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Create empty map with capacity large enough to store expected number of entries without resizing.
+   * 
+   * @param expectedSize expected number of entries.
+   */
+  public IntLongMap(int expectedSize)
+  {
+    super(expectedSize);
+    keys = new int[capacity()];
+    values = new long[capacity()];
+  }
+
+  /**
+   * Store value for key, replacing existing value, if any.
+   * 
+   * @param key entry key,
+   * @param value entry value.
+   */
+  public void put(int key, long value)
+  {
+    if(key == 0) {
+      hasZeroKey = true;
+      zeroKeyValue = value;
+      return;
+    }
+    int slot = find(key);
+    if(slot >= 0) {
+      values[slot] = value;
+      return;
+    }
+    slot = -1 - slot;
+    keys[slot] = key;
+    values[slot] = value;
+    added();
+  }
+
+  /**
+   * Get value for key or zero if key is missing. Use {@link #containsKey(int)} or {@link #get(int, long)} to
+   * distinguish a zero value from a missing key.
+   * 
+   * @param key entry key.
+   * @return key value or zero.
+   */
+  public long get(int key)
+  {
+    return get(key, 0);
+  }
+
+  /**
+   * Get value for key or default value if key is missing.
+   * 
+   * @param key entry key,
+   * @param defaultValue value returned for missing key.
+   * @return key value or default value.
+   */
+  public long get(int key, long defaultValue)
+  {
+    if(key == 0) {
+      return hasZeroKey ? zeroKeyValue : defaultValue;
+    }
+    int slot = find(key);
+    return slot >= 0 ? values[slot] : defaultValue;
+  }
+
+  public boolean containsKey(int key)
+  {
+    if(key == 0) {
+      return hasZeroKey;
+    }
+    return find(key) >= 0;
+  }
+
+  /**
+   * Invoke consumer for every map entry, in no particular order.
+   * 
+   * @param consumer entries consumer.
+   */
+  public void forEach(EntryConsumer consumer)
+  {
+    if(hasZeroKey) {
+      consumer.accept(0, zeroKeyValue);
+    }
+    for(int i = 0; i < keys.length; ++i) {
+      if(keys[i] != 0) {
+        consumer.accept(keys[i], values[i]);
+      }
+    }
+  }
+
+  @Override
+  boolean isFree(int slot)
+  {
+    return keys[slot] == 0;
+  }
+
+  @Override
+  boolean isKey(int slot, long key)
+  {
+    return keys[slot] == key;
+  }
+
+  @Override
+  void resize(int capacity)
+  {
+    int[] oldKeys = keys;
+    long[] oldValues = values;
+    keys = new int[capacity];
+    values = new long[capacity];
+    for(int i = 0; i < oldKeys.length; ++i) {
+      if(oldKeys[i] != 0) {
+        int slot = freeSlot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  /** Map entries consumer. */
+  @FunctionalInterface
+  public interface EntryConsumer
+  {
+    void accept(int key, long value);
+  }
+}
@@ -0,0 +1,366 @@
+package com.jslib.transaction.hibernate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.engine.QueryParameters;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.engine.query.HQLQueryPlan;
+import org.hibernate.engine.query.ParameterMetadata;
+import org.hibernate.type.Type;
+
+/**
+ * Query executed directly on Hibernate session JDBC connection, bypassing Hibernate results hydration. Used by query
+ * helpers methods that read results set columns into primitive containers or through row mappers, with no boxing and
+ * no intermediate objects array per row.
+ * <p>
+ * HQL queries are translated to SQL using Hibernate query plan cache, with session enabled filters applied. Only
+ * positioned parameters are supported. Parameters are bound with Hibernate types, the same way Hibernate query does:
+ * type expected by HQL query, if any, otherwise type resolved from value class, so that custom user types and entities
+ * are bound as by Hibernate; values with no Hibernate type are bound with {@link PreparedStatement#setObject(int, Object)}.
+ * Since Hibernate does not see the query, session is flushed before execution, unless session flush mode is manual.
+ * 
+ * @author Iulian Rotaru
+ */
+final class JdbcQuery
+{
+  /** Initial capacity for primitive column arrays. */
+  private static final int INITIAL_COLUMN_SIZE = 64;
+
+  private final Session session;
+  private final String sql;
+  private final Object[] parameters;
+  /** HQL query parameters metadata, null for SQL query. */
+  private final ParameterMetadata parameterMetadata;
+
+  private int offset;
+  private int rowsCount;
+  private int fetchSize;
+
+  /**
+   * Create JDBC query for SQL statement.
+   * 
+   * @param session Hibernate session,
+   * @param sql SQL statement,
+   * @param parameters positioned parameters.
+   */
+  public JdbcQuery(Session session, String sql, Object[] parameters)
+  {
+    this(session, sql, parameters, null);
+  }
+
+  private JdbcQuery(Session session, String sql, Object[] parameters, ParameterMetadata parameterMetadata)
+  {
+    this.session = session;
+    this.sql = sql;
+    this.parameters = parameters;
+    this.parameterMetadata = parameterMetadata;
+  }
+
+  /**
+   * Create JDBC query for HQL statement, translated to SQL.
+   * 
+   * @param session Hibernate session,
+   * @param hql HQL statement,
+   * @param parameters positioned parameters.
+   * @return JDBC query.
+   * @throws HibernateException if HQL statement is polymorphic, that is, translates to multiple SQL statements.
+   */
+  public static JdbcQuery hql(Session session, String hql, Object[] parameters)
+  {
+    SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor)session.getSessionFactory();
+    // plan depends on enabled filters; translated SQL has filter parameters placeholders, bound on execution
+    HQLQueryPlan plan = sessionFactory.getQueryPlanCache().getHQLQueryPlan(hql, false, ((SessionImplementor)session).getLoadQueryInfluencers().getEnabledFilters());
+    String[] sqlStrings = plan.getSqlStrings();
+    if(sqlStrings.length != 1) {
+      throw new HibernateException(String.format("Polymorphic query |%s| not supported by direct JDBC access.", hql));
+    }
+    return new JdbcQuery(session, sqlStrings[0], parameters, plan.getParameterMetadata());
+  }
+
+  public JdbcQuery limit(int offset, int rowsCount)
+  {
+    this.offset = offset;
+    this.rowsCount = rowsCount;
+    return this;
+  }
+
+  public JdbcQuery fetchSize(int fetchSize)
+  {
+    this.fetchSize = fetchSize;
+    return this;
+  }
+
+  /**
+   * Execute query and invoke row handler for every results set row. Offset rows are skipped and handler is not invoked
+   * for them.
+   * 
+   * @param handler row handler.
+   * @throws HibernateException if query execution fails.
+   */
+  public void execute(RowHandler handler)
+  {
+    if(!FlushMode.isManualFlushMode(session.getFlushMode())) {
+      session.flush();
+    }
+
+    SessionImplementor sessionImplementor = (SessionImplementor)session;
+    QueryParameters queryParameters = new QueryParameters(parameterTypes(sessionImplementor.getFactory()), parameters);
+    if(parameterMetadata != null) {
+      queryParameters.processFilters(sql, sessionImplementor);
+    }
+    else {
+      // native SQL is not filtered; process filters with no filters just copies SQL and parameters
+      queryParameters.processFilters(sql, Collections.emptyMap(), sessionImplementor.getFactory());
+    }
+    String filteredSQL = queryParameters.getFilteredSQL();
+    Type[] types = queryParameters.getFilteredPositionalParameterTypes();
+    Object[] values = queryParameters.getFilteredPositionalParameterValues();
+
+    session.doWork(connection -> {
+      try(PreparedStatement statement = connection.prepareStatement(filteredSQL)) {
+        int index = 1;
+        for(int i = 0; i < values.length; ++i) {
+          if(types[i] != null) {
+            types[i].nullSafeSet(statement, values[i], index, sessionImplementor);
+            index += types[i].getColumnSpan(sessionImplementor.getFactory());
+          }
+          else if(values[i] != null) {
+            statement.setObject(index++, values[i]);
+          }
+          else {
+            statement.setNull(index++, Types.NULL);
+          }
+        }
+        if(rowsCount > 0) {
+          statement.setMaxRows(offset + rowsCount);
+        }
+        if(fetchSize != 0) {
+          statement.setFetchSize(fetchSize);
+        }
+        try(ResultSet resultSet = statement.executeQuery()) {
+          for(int i = 0; i < offset; ++i) {
+            if(!resultSet.next()) {
+              return;
+            }
+          }
+          while(resultSet.next()) {
+            handler.handle(resultSet);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Resolve Hibernate type for every positioned parameter: type expected by HQL query, if any, otherwise type resolved
+   * from parameter value class, see {@link QueryAnalysisCache#resolveValueType(SessionFactoryImplementor, Object)}.
+   * 
+   * @param sessionFactory session factory.
+   * @return parameters types, with null for parameters bound without Hibernate type.
+   */
+  private Type[] parameterTypes(SessionFactoryImplementor sessionFactory)
+  {
+    Type[] types = new Type[parameters.length];
+    for(int i = 0; i < parameters.length; ++i) {
+      if(parameterMetadata != null && i < parameterMetadata.getOrdinalParameterCount()) {
+        types[i] = parameterMetadata.getOrdinalParameterExpectedType(i + 1);
+      }
+      if(types[i] == null && parameters[i] != null) {
+        types[i] = QueryAnalysisCache.resolveValueType(sessionFactory, parameters[i]);
+      }
+    }
+    return types;
+  }
+
+  /**
+   * Execute query and map every row to an object.
+   * 
+   * @param mapper row mapper.
+   * @param <T> mapped object type.
+   * @return list of mapped objects, possible empty.
+   */
+  public <T> List<T> list(RowMapper<T> mapper)
+  {
+    List<T> list = new ArrayList<>();
+    execute(resultSet -> list.add(mapper.map(resultSet)));
+    return list;
+  }
+
+  /**
+   * Execute query and read first column as int values. SQL NULL is read as zero.
+   * 
+   * @return first column values.
+   */
+  public int[] intColumn()
+  {
+    IntColumn column = new IntColumn();
+    execute(column);
+    return Arrays.copyOf(column.values, column.size);
+  }
+
+  /**
+   * Execute query and read first column as long values. SQL NULL is read as zero.
+   * 
+   * @return first column values.
+   */
+  public long[] longColumn()
+  {
+    LongColumn column = new LongColumn();
+    execute(column);
+    return Arrays.copyOf(column.values, column.size);
+  }
+
+  /**
+   * Execute query and read first column as double values. SQL NULL is read as zero.
+   * 
+   * @return first column values.
+   */
+  public double[] doubleColumn()
+  {
+    DoubleColumn column = new DoubleColumn();
+    execute(column);
+    return Arrays.copyOf(column.values, column.size);
+  }
+
+  /**
+   * Execute query and read first two columns into primitive int to long map. Rows with SQL NULL value are not stored,
+   * so that {@link IntLongMap#get(int, long)} returns default value for them.
+   * 
+   * @param expectedSize expected number of entries.
+   * @return primitive map.
+   * @throws HibernateException if a key is SQL NULL.
+   */
+  public IntLongMap intToLongMap(int expectedSize)
+  {
+    IntLongMap map = new IntLongMap(expectedSize);
+    execute(resultSet -> {
+      int key = intKey(resultSet);
+      long value = resultSet.getLong(2);
+      if(!resultSet.wasNull()) {
+        map.put(key, value);
+      }
+    });
+    return map;
+  }
+
+  /**
+   * Execute query and read first two columns into primitive long to double map. Rows with SQL NULL value are not stored,
+   * so that {@link LongDoubleMap#get(long, double)} returns default value for them.
+   * 
+   * @param expectedSize expected number of entries.
+   * @return primitive map.
+   * @throws HibernateException if a key is SQL NULL.
+   */
+  public LongDoubleMap longToDoubleMap(int expectedSize)
+  {
+    LongDoubleMap map = new LongDoubleMap(expectedSize);
+    execute(resultSet -> {
+      long key = longKey(resultSet);
+      double value = resultSet.getDouble(2);
+      if(!resultSet.wasNull()) {
+        map.put(key, value);
+      }
+    });
+    return map;
+  }
+
+  /**
+   * Execute query and read first two columns into primitive long to object map. SQL NULL value is stored as null.
+   * 
+   * @param expectedSize expected number of entries,
+   * @param <V> values type.
+   * @return primitive keys map.
+   * @throws HibernateException if a key is SQL NULL.
+   */
+  @SuppressWarnings("unchecked")
+  public <V> LongObjectMap<V> longToObjectMap(int expectedSize)
+  {
+    LongObjectMap<V> map = new LongObjectMap<>(expectedSize);
+    execute(resultSet -> map.put(longKey(resultSet), (V)resultSet.getObject(2)));
+    return map;
+  }
+
+  private static int intKey(ResultSet resultSet) throws SQLException
+  {
+    int key = resultSet.getInt(1);
+    if(resultSet.wasNull()) {
+      throw new HibernateException("Null key not supported by primitive map.");
+    }
+    return key;
+  }
+
+  private static long longKey(ResultSet resultSet) throws SQLException
+  {
+    long key = resultSet.getLong(1);
+    if(resultSet.wasNull()) {
+      throw new HibernateException("Null key not supported by primitive map.");
+    }
+    return key;
+  }
+
+  /** Results set row handler, invoked with results set positioned on current row. */
+  @FunctionalInterface
+  interface RowHandler
+  {
+    void handle(ResultSet resultSet) throws SQLException;
+  }
+
+  /** Growable int array filled from first column. */
+  private static final class IntColumn implements RowHandler
+  {
+    int[] values = new int[INITIAL_COLUMN_SIZE];
+    int size;
+
+    @Override
+    public void handle(ResultSet resultSet) throws SQLException
+    {
+      if(size == values.length) {
+        values = Arrays.copyOf(values, size << 1);
+      }
+      values[size++] = resultSet.getInt(1);
+    }
+  }
+
+  /** Growable long array filled from first column. */
+  private static final class LongColumn implements RowHandler
+  {
+    long[] values = new long[INITIAL_COLUMN_SIZE];
+    int size;
+
+    @Override
+    public void handle(ResultSet resultSet) throws SQLException
+    {
+      if(size == values.length) {
+        values = Arrays.copyOf(values, size << 1);
+      }
+      values[size++] = resultSet.getLong(1);
+    }
+  }
+
+  /** Growable double array filled from first column. */
+  private static final class DoubleColumn implements RowHandler
+  {
+    double[] values = new double[INITIAL_COLUMN_SIZE];
+    int size;
+
+    @Override
+    public void handle(ResultSet resultSet) throws SQLException
+    {
+      if(size == values.length) {
+        values = Arrays.copyOf(values, size << 1);
+      }
+      values[size++] = resultSet.getDouble(1);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hibernate.HibernateException;
+
+/**
+ * Query rewriting for keyset, also known as seek, pagination. Instead of skipping offset rows, that is linearly slower on
+ * deep pages, keyset pagination selects rows with sort key greater than last seen value, using an index seek:
+ * 
+ * <pre>
+ * from Person p where p.age &gt; ?
+ * from Person p where (p.age &gt; ?) and p.id &gt; :keysetValue order by p.id
+ * </pre>
+ * 
+ * Sort key is a single property or column, that should be unique, e.g. primary key; otherwise rows with the same sort
+ * key value on page boundary are skipped. Rows are ordered ascending by sort key, therefore query should not have its
+ * own <code>order by</code> clause; also, since seek predicate is appended to query, query should not have
+ * <code>group by</code> clause. If query has a <code>where</code> clause, first <code>where</code> keyword should
+ * belong to main query, not to a sub-query.
+ * 
+ * @author Iulian Rotaru
+ */
+final class Keyset
+{
+  /** Named parameter for last seen sort key value. */
+  public static final String PARAMETER = "keysetValue";
+
+  private static final Pattern WHERE = Pattern.compile("\\bwhere\\b", Pattern.CASE_INSENSITIVE);
+  private static final Pattern UNSUPPORTED = Pattern.compile("\\b(order|group)\\s+by\\b", Pattern.CASE_INSENSITIVE);
+
+  /** Prevent default constructor synthesis. */
+  private Keyset()
+  {
+  }
+
+  /**
+   * Rewrite query for keyset pagination. Seek predicate is added only if there is a last seen value, that is, not for
+   * the first page; order by sort key is always added.
+   * 
+   * @param query HQL or SQL query,
+   * @param sortKey sort key property or column, as used by query, e.g. with alias prefix,
+   * @param seek add seek predicate for last seen value.
+   * @return rewritten query.
+   * @throws HibernateException if query has <code>order by</code> or <code>group by</code> clause.
+   */
+  public static String rewrite(String query, String sortKey, boolean seek)
+  {
+    if(UNSUPPORTED.matcher(query).find()) {
+      throw new HibernateException(String.format("Keyset pagination on query |%s| with order by or group by clause.", query));
+    }
+
+    StringBuilder builder = new StringBuilder(query.length() + 2 * sortKey.length() + 40);
+    if(seek) {
+      Matcher where = WHERE.matcher(query);
+      if(where.find()) {
+        builder.append(query, 0, where.end());
+        builder.append(" (");
+        builder.append(query.substring(where.end()).trim());
+        builder.append(") and ");
+      }
+      else {
+        builder.append(query);
+        builder.append(" where ");
+      }
+      builder.append(sortKey);
+      builder.append(" > :");
+      builder.append(PARAMETER);
+    }
+    else {
+      builder.append(query);
+    }
+    builder.append(" order by ");
+    builder.append(sortKey);
+    return builder.toString();
+  }
+}
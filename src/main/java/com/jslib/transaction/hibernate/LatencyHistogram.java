@@ -0,0 +1,136 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with logarithmic buckets, in the spirit of HDR histograms. Every power of two range is
+ * split into 8 linear sub-buckets, so recorded values are kept with a relative error below 12.5% on the whole long
+ * range, using a fixed size array of counters. Recording a value does not allocate and does not block.
+ * <p>
+ * Values are not unit aware; transaction metrics record nanoseconds.
+ * 
+ * @author Iulian Rotaru
+ */
+public final class LatencyHistogram
+{
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_COUNT);
+  private final LongAdder totalCount = new LongAdder();
+  private final LongAdder totalSum = new LongAdder();
+  private final AtomicLong maxValue = new AtomicLong();
+
+  /**
+   * Record a value. Negative values are recorded as zero.
+   * 
+   * @param value value to record.
+   */
+  public void record(long value)
+  {
+    if(value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(bucketIndex(value));
+    totalCount.increment();
+    totalSum.add(value);
+    long max = maxValue.get();
+    while(value > max && !maxValue.compareAndSet(max, value)) {
+      max = maxValue.get();
+    }
+  }
+
+  /**
+   * Get the number of recorded values.
+   * 
+   * @return recorded values count.
+   */
+  public long getCount()
+  {
+    return totalCount.sum();
+  }
+
+  /**
+   * Get the maximum recorded value.
+   * 
+   * @return maximum value, zero if no value recorded.
+   */
+  public long getMax()
+  {
+    return maxValue.get();
+  }
+
+  /**
+   * Get the arithmetic mean of recorded values.
+   * 
+   * @return mean value, zero if no value recorded.
+   */
+  public double getMean()
+  {
+    long count = totalCount.sum();
+    return count != 0 ? (double)totalSum.sum() / count : 0;
+  }
+
+  /**
+   * Get value at requested percentile. Returned value is the upper bound of the bucket containing the percentile, but
+   * not greater than maximum recorded value. Since recording is not blocked while computing percentile, result is
+   * approximate when there are concurrent writers.
+   * 
+   * @param percentile percentile, in range [0..100].
+   * @return value at percentile, zero if no value recorded.
+   */
+  public long getPercentile(double percentile)
+  {
+    long count = 0;
+    for(int i = 0; i < BUCKETS_COUNT; ++i) {
+      count += counts.get(i);
+    }
+    if(count == 0) {
+      return 0;
+    }
+
+    long threshold = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+    long accumulated = 0;
+    for(int i = 0; i < BUCKETS_COUNT; ++i) {
+      accumulated += counts.get(i);
+      if(accumulated >= threshold) {
+        return Math.min(bucketUpperBound(i), maxValue.get());
+      }
+    }
+    return maxValue.get();
+  }
+
+  /** Reset all counters. Not atomic with respect to concurrent recording. */
+  public void reset()
+  {
+    for(int i = 0; i < BUCKETS_COUNT; ++i) {
+      counts.set(i, 0);
+    }
+    totalCount.reset();
+    totalSum.reset();
+    maxValue.set(0);
+  }
+
+  private static int bucketIndex(long value)
+  {
+    if(value < SUB_BUCKETS) {
+      return (int)value;
+    }
+    int msb = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int)(value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (msb - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  private static long bucketUpperBound(int index)
+  {
+    if(index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lowerBound = (long)(SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+}
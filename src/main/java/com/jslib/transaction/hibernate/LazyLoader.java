@@ -0,0 +1,234 @@
+package com.jslib.transaction.hibernate;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.collection.PersistentCollection;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+
+/**
+ * Batch initialization for lazy fields of a list of entities, used by {@link HqlQuery#load(String...)} and
+ * {@link SessionManager#get(Class, Serializable, String...)}. Instead of initializing every lazy field of every entity,
+ * which triggers one select per entity and field, loader collects uninitialized values for a lazy field across all
+ * entities and initializes them with a single <code>IN</code> query per field:
+ * <ul>
+ * <li>entity proxies are loaded with <code>from Entity e where e.id in (:ids)</code>; proxies are then resolved from
+ * session persistence context, without database access,
+ * <li>collections are loaded by join fetch on their owners,
+ * <code>select o from Owner o left join fetch o.field where o.id in (:ids)</code>.
+ * </ul>
+ * Ids lists are split in chunks not exceeding <code>IN</code> clause maximum size, see {@link InClause}. Lazy values
+ * that are neither proxies nor persistent collections are initialized one by one, as before. Also initialized one by one
+ * are lazy values of entities with no identifier property, e.g. composite identifier, that cannot be selected with an
+ * <code>IN</code> clause, and lazy fields of a single entity, for which a batch query is no better than
+ * {@link Hibernate#initialize(Object)}.
+ * <p>
+ * Entities given as proxies are unproxied before reading their fields, so that lazy fields are read from the actual
+ * entity instance, of the actual entity class.
+ * <p>
+ * Fields are read with variable handles, resolved once per entity class and field name and cached.
+ * 
+ * @author Iulian Rotaru
+ */
+final class LazyLoader
+{
+  /** Field accessors cache, per entity class and field name. */
+  private static final ClassValue<Map<String, VarHandle>> accessors = new ClassValue<Map<String, VarHandle>>()
+  {
+    @Override
+    protected Map<String, VarHandle> computeValue(Class<?> type)
+    {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  /** Prevent default constructor synthesis. */
+  private LazyLoader()
+  {
+  }
+
+  /**
+   * Initialize lazy fields of a single entity, one by one, with {@link Hibernate#initialize(Object)}.
+   * 
+   * @param entity entity instance or proxy,
+   * @param lazyFields names of lazy fields to initialize.
+   * @throws HibernateException if lazy field is not declared by entity class or initialization fails.
+   */
+  public static void initialize(Object entity, String... lazyFields)
+  {
+    Object instance = unproxy(entity);
+    for(String lazyField : lazyFields) {
+      Hibernate.initialize(accessor(instance.getClass(), lazyField).get(instance));
+    }
+  }
+
+  /**
+   * Initialize lazy fields for all given entities. Entities should be attached to given session. If there is a single
+   * entity, this method delegates {@link #initialize(Object, String...)}.
+   * 
+   * @param session Hibernate session,
+   * @param entities entities list, possible proxies, of the same entity or of entities from the same hierarchy,
+   * @param lazyFields names of lazy fields to initialize.
+   * @throws HibernateException if lazy field is not declared by entities class or initialization fails.
+   */
+  public static void initialize(Session session, List<?> entities, String... lazyFields)
+  {
+    if(entities.isEmpty()) {
+      return;
+    }
+    if(entities.size() == 1) {
+      initialize(entities.get(0), lazyFields);
+      return;
+    }
+
+    List<Object> instances = new ArrayList<>(entities.size());
+    for(Object entity : entities) {
+      instances.add(unproxy(entity));
+    }
+
+    for(String lazyField : lazyFields) {
+      // entity name to uninitialized proxies with the same entity name
+      Map<String, List<HibernateProxy>> proxies = new LinkedHashMap<>();
+      // owner entity name to owners with uninitialized collection
+      Map<String, List<Object>> owners = new LinkedHashMap<>();
+      for(Object instance : instances) {
+        // accessors are cached per class, entities can be instances of subclasses
+        Object value = accessor(instance.getClass(), lazyField).get(instance);
+        if(value == null || Hibernate.isInitialized(value)) {
+          continue;
+        }
+        if(value instanceof HibernateProxy) {
+          LazyInitializer initializer = ((HibernateProxy)value).getHibernateLazyInitializer();
+          proxies.computeIfAbsent(initializer.getEntityName(), key -> new ArrayList<>()).add((HibernateProxy)value);
+        }
+        else if(value instanceof PersistentCollection) {
+          owners.computeIfAbsent(session.getEntityName(instance), key -> new ArrayList<>()).add(instance);
+        }
+        else {
+          Hibernate.initialize(value);
+        }
+      }
+
+      for(Map.Entry<String, List<HibernateProxy>> entry : proxies.entrySet()) {
+        loadProxies(session, entry.getKey(), entry.getValue());
+      }
+      for(Map.Entry<String, List<Object>> entry : owners.entrySet()) {
+        loadCollections(session, entry.getKey(), lazyField, entry.getValue());
+      }
+    }
+  }
+
+  private static void loadProxies(Session session, String entityName, List<HibernateProxy> proxies)
+  {
+    String identifierName = identifierName(session, entityName);
+    if(identifierName == null) {
+      // composite identifier cannot be selected by IN clause
+      for(HibernateProxy proxy : proxies) {
+        Hibernate.initialize(proxy);
+      }
+      return;
+    }
+
+    List<Serializable> ids = new ArrayList<>(proxies.size());
+    for(HibernateProxy proxy : proxies) {
+      ids.add(proxy.getHibernateLazyInitializer().getIdentifier());
+    }
+    String hql = String.format("from %s e where e.%s in (:ids)", entityName, identifierName);
+    for(Collection<Serializable> chunk : InClause.of(session.getSessionFactory()).chunks(ids)) {
+      Query query = session.createQuery(hql);
+      query.setParameterList("ids", chunk);
+      query.list();
+    }
+    // entities are now in persistence context and proxies initialization does not hit database
+    for(HibernateProxy proxy : proxies) {
+      Hibernate.initialize(proxy);
+    }
+  }
+
+  private static void loadCollections(Session session, String ownerEntityName, String field, List<Object> owners)
+  {
+    String identifierName = identifierName(session, ownerEntityName);
+    if(identifierName == null) {
+      // composite identifier cannot be selected by IN clause
+      for(Object owner : owners) {
+        Hibernate.initialize(accessor(owner.getClass(), field).get(owner));
+      }
+      return;
+    }
+
+    List<Serializable> ids = new ArrayList<>(owners.size());
+    for(Object owner : owners) {
+      ids.add(session.getIdentifier(owner));
+    }
+    String hql = String.format("select o from %s o left join fetch o.%s where o.%s in (:ids)", ownerEntityName, field, identifierName);
+    for(Collection<Serializable> chunk : InClause.of(session.getSessionFactory()).chunks(ids)) {
+      Query query = session.createQuery(hql);
+      query.setParameterList("ids", chunk);
+      query.list();
+    }
+  }
+
+  /**
+   * Get identifier property name for entity.
+   * 
+   * @param session Hibernate session,
+   * @param entityName entity name.
+   * @return identifier property name or null if entity has composite identifier.
+   */
+  private static String identifierName(Session session, String entityName)
+  {
+    return session.getSessionFactory().getClassMetadata(entityName).getIdentifierPropertyName();
+  }
+
+  /**
+   * Get actual entity instance for a proxy, initializing it if necessary. Returns given object if not a proxy.
+   * 
+   * @param entity entity instance or proxy.
+   * @return entity instance.
+   */
+  private static Object unproxy(Object entity)
+  {
+    if(entity instanceof HibernateProxy) {
+      return ((HibernateProxy)entity).getHibernateLazyInitializer().getImplementation();
+    }
+    return entity;
+  }
+
+  /**
+   * Get cached accessor for entity field, searching class hierarchy.
+   * 
+   * @param type entity class,
+   * @param fieldName field name.
+   * @return field accessor.
+   * @throws HibernateException if field is not declared by entity class or its superclasses.
+   */
+  private static VarHandle accessor(Class<?> type, String fieldName)
+  {
+    return accessors.get(type).computeIfAbsent(fieldName, name -> {
+      for(Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+        try {
+          Field field = clazz.getDeclaredField(name);
+          return MethodHandles.privateLookupIn(clazz, MethodHandles.lookup()).unreflectVarHandle(field);
+        }
+        catch(NoSuchFieldException ignore) {}
+        catch(IllegalAccessException e) {
+          throw new HibernateException(e);
+        }
+      }
+      throw new HibernateException(String.format("Missing lazy field |%s| on |%s|.", name, type.getName()));
+    });
+  }
+}
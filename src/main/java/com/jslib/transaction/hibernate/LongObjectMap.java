@@ -0,0 +1,151 @@
+package com.jslib.transaction.hibernate;
+
+/**
+ * Map of primitive long keys to object values, designed for large query results where boxed keys, values and
+ * hash map nodes would dominate memory usage. Uses open addressing with linear probing on parallel keys and values
+ * arrays, see {@link PrimitiveMap}. Null keys are not supported, since keys are primitives; null values are allowed.
+ * <p>
+ * This class is not thread safe.
+ * 
+ * @author Iulian Rotaru
+ * @param <V> values type.
+ */
+public final class LongObjectMap<V> extends PrimitiveMap
+{
+  /** Keys table, with zero marking free slots. Zero key is stored outside table. */
+  private long[] keys;
+  private Object[] values;
+  private V zeroKeyValue;
+
+  /** Create empty map with default capacity. */
+  public LongObjectMap()
+  {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Create empty map with capacity large enough to store expected number of entries without resizing.
+   * 
+   * @param expectedSize expected number of entries.
+   */
+  public LongObjectMap(int expectedSize)
+  {
+    super(expectedSize);
+    keys = new long[capacity()];
+    values = new Object[capacity()];
+  }
+
+  /**
+   * Store value for key, replacing existing value, if any.
+   * 
+   * @param key entry key,
+   * @param value entry value.
+   */
+  public void put(long key, V value)
+  {
+    if(key == 0) {
+      hasZeroKey = true;
+      zeroKeyValue = value;
+      return;
+    }
+    int slot = find(key);
+    if(slot >= 0) {
+      values[slot] = value;
+      return;
+    }
+    slot = -1 - slot;
+    keys[slot] = key;
+    values[slot] = value;
+    added();
+  }
+
+  /**
+   * Get value for key or null if key is missing. Use {@link #containsKey(long)} to distinguish a null value from a
+   * missing key.
+   * 
+   * @param key entry key.
+   * @return key value or null.
+   */
+  public V get(long key)
+  {
+    return get(key, null);
+  }
+
+  /**
+   * Get value for key or default value if key is missing.
+   * 
+   * @param key entry key,
+   * @param defaultValue value returned for missing key.
+   * @return key value or default value.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key, V defaultValue)
+  {
+    if(key == 0) {
+      return hasZeroKey ? zeroKeyValue : defaultValue;
+    }
+    int slot = find(key);
+    return slot >= 0 ? (V)values[slot] : defaultValue;
+  }
+
+  public boolean containsKey(long key)
+  {
+    if(key == 0) {
+      return hasZeroKey;
+    }
+    return find(key) >= 0;
+  }
+
+  /**
+   * Invoke consumer for every map entry, in no particular order.
+   * 
+   * @param consumer entries consumer.
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(EntryConsumer<V> consumer)
+  {
+    if(hasZeroKey) {
+      consumer.accept(0, zeroKeyValue);
+    }
+    for(int i = 0; i < keys.length; ++i) {
+      if(keys[i] != 0) {
+        consumer.accept(keys[i], (V)values[i]);
+      }
+    }
+  }
+
+  @Override
+  boolean isFree(int slot)
+  {
+    return keys[slot] == 0;
+  }
+
+  @Override
+  boolean isKey(int slot, long key)
+  {
+    return keys[slot] == key;
+  }
+
+  @Override
+  void resize(int capacity)
+  {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new long[capacity];
+    values = new Object[capacity];
+    for(int i = 0; i < oldKeys.length; ++i) {
+      if(oldKeys[i] != 0) {
+        int slot = freeSlot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  /** Map entries consumer. */
+  @FunctionalInterface
+  public interface EntryConsumer<V>
+  {
+    void accept(long key, V value);
+  }
+}
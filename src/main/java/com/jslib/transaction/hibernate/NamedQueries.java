@@ -0,0 +1,132 @@
+package com.jslib.transaction.hibernate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.NamedQueryDefinition;
+import org.hibernate.engine.NamedSQLQueryDefinition;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.query.sql.NativeSQLQueryReturn;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.lang.BugError;
+
+/**
+ * Registry of named queries, declared once and invoked by name, see {@link SessionManager#namedHQL(String, Object...)}
+ * and {@link SessionManager#namedSQL(String, Object...)}. Registry is backed by Hibernate named queries so that queries
+ * declared into mapping files, with <code>query</code> and <code>sql-query</code> elements, are also available.
+ * <p>
+ * Beside mapping files, named queries can be declared into class path properties files, with query name as key and
+ * query string as value. Resource names are loaded from Hibernate configuration properties {@link #HQL_PROPERTY} and
+ * {@link #SQL_PROPERTY}. Named queries from properties files are added to Hibernate configuration before building the
+ * session factory, so Hibernate validates and compiles them at startup; with default
+ * <code>hibernate.query.startup_check</code> enabled, session factory creation fails on invalid queries.
+ * 
+ * @author Iulian Rotaru
+ */
+final class NamedQueries
+{
+  private static final Log log = LogFactory.getLog(NamedQueries.class);
+
+  /** Class path resource with named HQL queries. */
+  public static final String HQL_PROPERTY = "hibernate.query.named_hql";
+  /** Class path resource with named SQL queries. */
+  public static final String SQL_PROPERTY = "hibernate.query.named_sql";
+
+  /** Prevent default constructor synthesis. */
+  private NamedQueries()
+  {
+  }
+
+  /**
+   * Add to Hibernate configuration named queries declared into properties files. A query name should be unique across
+   * both mapping files and properties files.
+   * 
+   * @param configuration Hibernate configuration, not yet used to build session factory.
+   * @throws BugError if properties file is missing or query name is already declared.
+   */
+  @SuppressWarnings("unchecked")
+  public static void load(Configuration configuration)
+  {
+    Properties hql = loadProperties(configuration.getProperty(HQL_PROPERTY));
+    for(String name : hql.stringPropertyNames()) {
+      log.debug("Register named HQL query |%s|.", name);
+      checkUnique(configuration, name);
+      configuration.getNamedQueries().put(name, new NamedQueryDefinition(hql.getProperty(name), false, null, null, null, null, null, false, null, Collections.emptyMap()));
+    }
+
+    Properties sql = loadProperties(configuration.getProperty(SQL_PROPERTY));
+    Map<String, NamedSQLQueryDefinition> namedSQLQueries = configuration.getNamedSQLQueries();
+    for(String name : sql.stringPropertyNames()) {
+      log.debug("Register named SQL query |%s|.", name);
+      checkUnique(configuration, name);
+      namedSQLQueries.put(name, new NamedSQLQueryDefinition(sql.getProperty(name), new NativeSQLQueryReturn[0], Collections.<String> emptyList(), false, null, null, null, null, null, false, null, Collections.emptyMap(), false));
+    }
+  }
+
+  /**
+   * Get query string for named HQL query.
+   * 
+   * @param sessionFactory session factory the query is executed on,
+   * @param name query name.
+   * @return HQL query string.
+   * @throws BugError if named query is not declared.
+   */
+  public static String getHQL(SessionFactory sessionFactory, String name)
+  {
+    NamedQueryDefinition definition = ((SessionFactoryImplementor)sessionFactory).getNamedQuery(name);
+    if(definition == null) {
+      throw new BugError("Missing named HQL query |%s|.", name);
+    }
+    return definition.getQueryString();
+  }
+
+  /**
+   * Get query string for named SQL query. Only query string is used; result set mappings declared into mapping files
+   * are ignored and results are mapped by {@link SqlQuery} methods.
+   * 
+   * @param sessionFactory session factory the query is executed on,
+   * @param name query name.
+   * @return SQL query string.
+   * @throws BugError if named query is not declared.
+   */
+  public static String getSQL(SessionFactory sessionFactory, String name)
+  {
+    NamedSQLQueryDefinition definition = ((SessionFactoryImplementor)sessionFactory).getNamedSQLQuery(name);
+    if(definition == null) {
+      throw new BugError("Missing named SQL query |%s|.", name);
+    }
+    return definition.getQueryString();
+  }
+
+  private static void checkUnique(Configuration configuration, String name)
+  {
+    if(configuration.getNamedQueries().containsKey(name) || configuration.getNamedSQLQueries().containsKey(name)) {
+      throw new BugError("Duplicated named query |%s|.", name);
+    }
+  }
+
+  private static Properties loadProperties(String resource)
+  {
+    Properties properties = new Properties();
+    if(resource == null) {
+      return properties;
+    }
+    try(InputStream stream = NamedQueries.class.getClassLoader().getResourceAsStream(resource)) {
+      if(stream == null) {
+        throw new BugError("Missing named queries resource |%s|.", resource);
+      }
+      properties.load(stream);
+    }
+    catch(IOException e) {
+      throw new BugError(e);
+    }
+    return properties;
+  }
+}
@@ -0,0 +1,138 @@
+package com.jslib.transaction.hibernate;
+
+/**
+ * Open addressing hash table shared by primitive keys maps, see {@link IntLongMap}, {@link LongDoubleMap} and
+ * {@link LongObjectMap}. Uses linear probing; table size is a power of two and is kept at most half full. Subclasses
+ * store keys into a primitive array, with zero marking free slots, and values into a parallel array; zero key is
+ * stored by subclasses outside table. This class implements probing and growth policy and is not aware of keys and
+ * values arrays; int keys are probed as long values.
+ * <p>
+ * This class is not thread safe.
+ * 
+ * @author Iulian Rotaru
+ */
+abstract class PrimitiveMap
+{
+  static final int DEFAULT_EXPECTED_SIZE = 16;
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  /** Table capacity minus one, used to wrap slot index. */
+  private int mask;
+  /** Number of used slots into table, zero key not included. */
+  private int assigned;
+  /** Zero key is present. Its value is stored by subclass. */
+  boolean hasZeroKey;
+
+  /**
+   * Initialize table capacity large enough to store expected number of entries without resizing. Subclass constructor
+   * should allocate keys and values arrays of {@link #capacity()} size.
+   * 
+   * @param expectedSize expected number of entries.
+   */
+  PrimitiveMap(int expectedSize)
+  {
+    long capacity = 8;
+    while(capacity < 2L * expectedSize && capacity < MAX_CAPACITY) {
+      capacity <<= 1;
+    }
+    mask = (int)capacity - 1;
+  }
+
+  /**
+   * Test if table slot is free.
+   * 
+   * @param slot table slot.
+   * @return true if slot is free.
+   */
+  abstract boolean isFree(int slot);
+
+  /**
+   * Test if table slot holds given key.
+   * 
+   * @param slot table slot,
+   * @param key not zero key.
+   * @return true if slot key is the given key.
+   */
+  abstract boolean isKey(int slot, long key);
+
+  /**
+   * Replace keys and values arrays with empty arrays of given capacity and move existing entries into them, on slots
+   * returned by {@link #freeSlot(long)}.
+   * 
+   * @param capacity new table capacity.
+   */
+  abstract void resize(int capacity);
+
+  /**
+   * Find table slot for key.
+   * 
+   * @param key not zero key.
+   * @return key slot or, if key is missing, <code>-1 - slot</code> where slot is the free slot to store key into.
+   */
+  final int find(long key)
+  {
+    int slot = hash(key) & mask;
+    while(!isFree(slot)) {
+      if(isKey(slot, key)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1 - slot;
+  }
+
+  /**
+   * Find free slot for a key known to be missing, used when moving entries on resize.
+   * 
+   * @param key not zero key.
+   * @return free slot.
+   */
+  final int freeSlot(long key)
+  {
+    int slot = hash(key) & mask;
+    while(!isFree(slot)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /** Account for a key stored into a free slot and grow table if more than half full. */
+  final void added()
+  {
+    if(++assigned <= (mask + 1) >>> 1) {
+      return;
+    }
+    int capacity = mask + 1;
+    if(capacity == MAX_CAPACITY) {
+      throw new IllegalStateException("Map capacity exceeded.");
+    }
+    mask = (capacity << 1) - 1;
+    resize(capacity << 1);
+  }
+
+  /**
+   * Get table capacity, that is, keys and values arrays size.
+   * 
+   * @return table capacity.
+   */
+  final int capacity()
+  {
+    return mask + 1;
+  }
+
+  public int size()
+  {
+    return hasZeroKey ? assigned + 1 : assigned;
+  }
+
+  public boolean isEmpty()
+  {
+    return size() == 0;
+  }
+
+  private static int hash(long key)
+  {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int)(hash ^ (hash >>> 32));
+  }
+}
@@ -0,0 +1,462 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.query.ParameterMetadata;
+import org.hibernate.impl.AbstractQueryImpl;
+import org.hibernate.proxy.HibernateProxyHelper;
+import org.hibernate.type.SerializableType;
+import org.hibernate.type.Type;
+
+/**
+ * Session factory cache of query analysis, keyed by query string. Hibernate already caches parsed HQL and native SQL
+ * plans, see Hibernate <code>query.plan_cache_max_strong_references</code> property; this cache keeps the analysis
+ * performed by {@link HqlQuery} and {@link SqlQuery} implementations on top of Hibernate query:
+ * <ul>
+ * <li>Hibernate type of every parameter, resolved once per parameter and value class; Hibernate resolves parameter type
+ * on every binding, that for values without a basic type, e.g. enumerations, means a class loader lookup and a mapping
+ * exception,
+ * <li>binding kind of every named parameter, that is, single value, array or collection,
+ * <li>query strings rewritten for keyset pagination, see {@link Keyset}.
+ * </ul>
+ * <p>
+ * There is a cache instance per session factory, created and destroyed with session factory by {@link Observer}
+ * installed by Hibernate adapter on its configuration. Cache lookup is lock free. Cache is bounded: when size exceeds
+ * capacity, a single thread evicts least recently used queries, an eighth of capacity below limit so that eviction is
+ * not performed on every miss. Capacity is loaded from session factory <code>hibernate.query.analysis_cache_size</code>
+ * property; default value is 1024. Cache hits and misses are counted for monitoring.
+ * <p>
+ * Cache also keeps session factory {@link InClause} settings, used to pad list parameters.
+ *
+ * @author Iulian Rotaru
+ */
+public final class QueryAnalysisCache
+{
+  /** Maximum number of cached queries, loaded from this property. Default value is 1024. */
+  public static final String CAPACITY_PROPERTY = "hibernate.query.analysis_cache_size";
+
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  /** Cache instances per session factory, registered by {@link Observer}. */
+  private static final Map<SessionFactory, QueryAnalysisCache> caches = new ConcurrentHashMap<>();
+
+  /**
+   * Get cache instance for session factory.
+   *
+   * @param sessionFactory session factory.
+   * @return session factory cache or null if session factory was not created by Hibernate adapter.
+   */
+  public static QueryAnalysisCache getInstance(SessionFactory sessionFactory)
+  {
+    return caches.get(sessionFactory);
+  }
+
+  /**
+   * Get analysis for given query string executed on session, creating it on cache miss. If session factory has no
+   * cache returns a not cached analysis that binds parameters directly.
+   *
+   * @param session Hibernate session,
+   * @param query HQL or SQL query string.
+   * @return query analysis.
+   */
+  static QueryAnalysis get(Session session, String query)
+  {
+    SessionFactory sessionFactory = session.getSessionFactory();
+    QueryAnalysisCache cache = sessionFactory != null ? caches.get(sessionFactory) : null;
+    return cache != null ? cache.get(query) : new QueryAnalysis(null, InClause.DEFAULT, query);
+  }
+
+  private final SessionFactoryImplementor sessionFactory;
+  private final InClause inClause;
+  private final int capacity;
+  private final Map<String, QueryAnalysis> analyses = new ConcurrentHashMap<>();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+
+  private QueryAnalysisCache(SessionFactoryImplementor sessionFactory, InClause inClause, int capacity)
+  {
+    this.sessionFactory = sessionFactory;
+    this.inClause = inClause;
+    this.capacity = capacity;
+  }
+
+  QueryAnalysis get(String query)
+  {
+    QueryAnalysis analysis = analyses.get(query);
+    if(analysis != null) {
+      hitCount.increment();
+      analysis.lastAccess = System.nanoTime();
+      return analysis;
+    }
+
+    missCount.increment();
+    analysis = analyses.computeIfAbsent(query, key -> new QueryAnalysis(sessionFactory, inClause, key));
+    analysis.lastAccess = System.nanoTime();
+    if(analyses.size() > capacity) {
+      evict();
+    }
+    return analysis;
+  }
+
+  /**
+   * Evict least recently used queries so that cache size drops an eighth of capacity below limit. If eviction is
+   * already in progress on another thread this method does nothing; cache may temporarily exceed its capacity.
+   */
+  private void evict()
+  {
+    if(!evicting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      long[] accessTimes = new long[analyses.size()];
+      int size = 0;
+      for(QueryAnalysis analysis : analyses.values()) {
+        if(size == accessTimes.length) {
+          break;
+        }
+        accessTimes[size++] = analysis.lastAccess;
+      }
+      int evictCount = size - capacity + capacity / 8;
+      if(evictCount <= 0) {
+        return;
+      }
+      Arrays.sort(accessTimes, 0, size);
+      long threshold = accessTimes[Math.min(evictCount, size) - 1];
+      analyses.values().removeIf(analysis -> analysis.lastAccess <= threshold);
+    }
+    finally {
+      evicting.set(false);
+    }
+  }
+
+  InClause getInClause()
+  {
+    return inClause;
+  }
+
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  public long getHitCount()
+  {
+    return hitCount.sum();
+  }
+
+  public long getMissCount()
+  {
+    return missCount.sum();
+  }
+
+  public int getSize()
+  {
+    return analyses.size();
+  }
+
+  /** Remove all cached queries and reset statistics. */
+  public void clear()
+  {
+    analyses.clear();
+    hitCount.reset();
+    missCount.reset();
+  }
+
+  /**
+   * Session factory observer that creates query analysis cache when session factory is created and removes it when
+   * session factory is closed. Chains an existing configuration observer, if any.
+   *
+   * @author Iulian Rotaru
+   */
+  public static final class Observer implements SessionFactoryObserver
+  {
+    private static final long serialVersionUID = 5829143470188732915L;
+
+    private final SessionFactoryObserver chained;
+
+    public Observer(SessionFactoryObserver chained)
+    {
+      this.chained = chained;
+    }
+
+    @Override
+    public void sessionFactoryCreated(SessionFactory sessionFactory)
+    {
+      SessionFactoryImplementor factory = (SessionFactoryImplementor)sessionFactory;
+      Properties properties = factory.getProperties();
+      String capacity = properties.getProperty(CAPACITY_PROPERTY);
+      caches.put(sessionFactory, new QueryAnalysisCache(factory, InClause.load(properties), capacity != null ? Integer.parseInt(capacity) : DEFAULT_CAPACITY));
+      if(chained != null) {
+        chained.sessionFactoryCreated(sessionFactory);
+      }
+    }
+
+    @Override
+    public void sessionFactoryClosed(SessionFactory sessionFactory)
+    {
+      caches.remove(sessionFactory);
+      if(chained != null) {
+        chained.sessionFactoryClosed(sessionFactory);
+      }
+    }
+  }
+
+  /** Binding kind for a named parameter. */
+  enum ParameterKind
+  {
+    /** Single value bound with {@link Query#setParameter(String, Object)}. */
+    VALUE,
+    /** Objects array bound with {@link Query#setParameterList(String, Object[])}. */
+    ARRAY,
+    /** Collection bound with {@link Query#setParameterList(String, Collection)}. */
+    COLLECTION;
+
+    static ParameterKind of(Object value)
+    {
+      if(value instanceof Object[]) {
+        return ARRAY;
+      }
+      if(value instanceof Collection) {
+        return COLLECTION;
+      }
+      return VALUE;
+    }
+  }
+
+  /**
+   * Parameter binding, that is, binding kind and Hibernate type resolved for a value class. For arrays and collections
+   * value class is the class of the first item. Type is null if it cannot be resolved without Hibernate query, in which
+   * case parameter is bound without type and Hibernate resolves it.
+   */
+  private static final class Binding
+  {
+    final ParameterKind kind;
+    final Class<?> valueClass;
+    final Type type;
+
+    Binding(ParameterKind kind, Class<?> valueClass, Type type)
+    {
+      this.kind = kind;
+      this.valueClass = valueClass;
+      this.type = type;
+    }
+  }
+
+  /** Analysis for a query string. Thread safe since the same instance is shared by all queries with the same string. */
+  static final class QueryAnalysis
+  {
+    /** Owning session factory or null if analysis is not cached, in which case types are not resolved. */
+    private final SessionFactoryImplementor sessionFactory;
+    /** Session factory IN clause settings, used to pad list parameters. */
+    private final InClause inClause;
+    private final String query;
+
+    /** Last access time, in nanoseconds, used for least recently used eviction. */
+    volatile long lastAccess;
+
+    private final Map<String, Binding> namedBindings = new ConcurrentHashMap<>();
+    /** Positioned parameters bindings, replaced on update. */
+    private volatile Binding[] positionedBindings = new Binding[0];
+
+    private final Map<String, String> keysetFirstQueries = new ConcurrentHashMap<>();
+    private final Map<String, String> keysetSeekQueries = new ConcurrentHashMap<>();
+
+    QueryAnalysis(SessionFactoryImplementor sessionFactory, InClause inClause, String query)
+    {
+      this.sessionFactory = sessionFactory;
+      this.inClause = inClause;
+      this.query = query;
+    }
+
+    /**
+     * Get query rewritten for keyset pagination, see {@link Keyset#rewrite(String, String, boolean)}.
+     *
+     * @param sortKey sort key property or column,
+     * @param seek add seek predicate for last seen value.
+     * @return rewritten query.
+     */
+    String keyset(String sortKey, boolean seek)
+    {
+      if(sessionFactory == null) {
+        return Keyset.rewrite(query, sortKey, seek);
+      }
+      Map<String, String> queries = seek ? keysetSeekQueries : keysetFirstQueries;
+      return queries.computeIfAbsent(sortKey, key -> Keyset.rewrite(query, key, seek));
+    }
+
+    /**
+     * Bind positioned and named parameters to Hibernate query, using cached bindings. If parameter value does not match
+     * cached binding, e.g. a query is sometimes executed with an array and sometimes with a single value, binding is
+     * updated.
+     *
+     * @param query Hibernate query created for analysis query string,
+     * @param positionedParameters positioned parameters,
+     * @param namedParameters named parameters.
+     * @throws HibernateException if an array or collection parameter is empty.
+     */
+    void bind(Query query, Object[] positionedParameters, Map<String, Object> namedParameters)
+    {
+      for(int i = 0; i < positionedParameters.length; i++) {
+        Object value = positionedParameters[i];
+        if(value == null || sessionFactory == null) {
+          query.setParameter(i, value);
+          continue;
+        }
+        Binding[] bindings = positionedBindings;
+        Binding binding = i < bindings.length ? bindings[i] : null;
+        if(binding == null || binding.valueClass != value.getClass()) {
+          binding = new Binding(ParameterKind.VALUE, value.getClass(), resolveType(query, i, null, value));
+          bindings = Arrays.copyOf(bindings, Math.max(bindings.length, positionedParameters.length));
+          bindings[i] = binding;
+          positionedBindings = bindings;
+        }
+        if(binding.type != null) {
+          query.setParameter(i, value, binding.type);
+        }
+        else {
+          query.setParameter(i, value);
+        }
+      }
+
+      for(Map.Entry<String, Object> entry : namedParameters.entrySet()) {
+        bind(query, entry.getKey(), entry.getValue());
+      }
+    }
+
+    private void bind(Query query, String name, Object value)
+    {
+      ParameterKind kind = ParameterKind.of(value);
+      Object item = value;
+      switch(kind) {
+      case ARRAY:
+        Object[] array = (Object[])value;
+        if(array.length == 0) {
+          throw new HibernateException(String.format("Invalid named parameter |%s|. Empty array.", name));
+        }
+        item = array[0];
+        break;
+
+      case COLLECTION:
+        Collection<?> collection = (Collection<?>)value;
+        if(collection.isEmpty()) {
+          throw new HibernateException(String.format("Invalid named parameter |%s|. Empty list.", name));
+        }
+        item = collection.iterator().next();
+        break;
+
+      default:
+        break;
+      }
+
+      Type type = null;
+      if(item != null && sessionFactory != null) {
+        Binding binding = namedBindings.get(name);
+        if(binding == null || binding.kind != kind || binding.valueClass != item.getClass()) {
+          binding = new Binding(kind, item.getClass(), resolveType(query, -1, name, item));
+          namedBindings.put(name, binding);
+        }
+        type = binding.type;
+      }
+
+      switch(kind) {
+      case ARRAY:
+        Object[] array = inClause.pad((Object[])value);
+        if(type != null) {
+          query.setParameterList(name, array, type);
+        }
+        else {
+          query.setParameterList(name, array);
+        }
+        break;
+
+      case COLLECTION:
+        Collection<?> collection = inClause.pad((Collection<?>)value);
+        if(type != null) {
+          query.setParameterList(name, collection, type);
+        }
+        else {
+          query.setParameterList(name, collection);
+        }
+        break;
+
+      default:
+        if(type != null) {
+          query.setParameter(name, value, type);
+        }
+        else {
+          query.setParameter(name, value);
+        }
+      }
+    }
+
+    /**
+     * Resolve Hibernate type for parameter value the same way Hibernate query does: use type expected by query, if
+     * any, then basic type for value class and finally entity type. Returns null if type cannot be resolved, leaving
+     * Hibernate to report the error.
+     *
+     * @param query Hibernate query,
+     * @param position parameter position, used if name is null,
+     * @param name parameter name, possible null,
+     * @param value not null parameter value or first list item.
+     * @return parameter type, possible null.
+     */
+    private Type resolveType(Query query, int position, String name, Object value)
+    {
+      if(query instanceof AbstractQueryImpl) {
+        try {
+          ParameterMetadata metadata = ((AbstractQueryImpl)query).getParameterMetadata();
+          Type type = name != null ? metadata.getNamedParameterExpectedType(name) : metadata.getOrdinalParameterExpectedType(position + 1);
+          if(type != null) {
+            return type;
+          }
+        }
+        catch(HibernateException e) {
+          // parameter not declared by query; let Hibernate report it on binding
+          return null;
+        }
+      }
+      return resolveValueType(sessionFactory, value);
+    }
+  }
+
+  /**
+   * Resolve Hibernate type for parameter value class when query does not declare expected type: basic type for value
+   * class then entity type and finally serializable type, if value is serializable. Also used for direct JDBC access,
+   * see {@link JdbcQuery}.
+   *
+   * @param sessionFactory session factory,
+   * @param value not null parameter value.
+   * @return parameter type or null if value class has no Hibernate type.
+   */
+  static Type resolveValueType(SessionFactoryImplementor sessionFactory, Object value)
+  {
+    Class<?> clazz = HibernateProxyHelper.getClassWithoutInitializingProxy(value);
+    Type type = sessionFactory.getTypeHelper().heuristicType(clazz.getName());
+    boolean serializable = type instanceof SerializableType;
+    if(type != null && !serializable) {
+      return type;
+    }
+    try {
+      sessionFactory.getEntityPersister(clazz.getName());
+    }
+    catch(MappingException e) {
+      return serializable ? type : null;
+    }
+    return sessionFactory.getTypeHelper().entity(clazz);
+  }
+}
@@ -0,0 +1,250 @@
+package com.jslib.transaction.hibernate;
+
+import java.sql.Connection;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.engine.SessionFactoryImplementor;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+
+/**
+ * Pool of session factories connected to read replicas of the primary database. Replicas are declared into Hibernate
+ * configuration as comma separated list of JDBC URLs, see {@link #URLS_PROPERTY}; all other connection properties,
+ * including credentials and mappings, are shared with primary database. Replica session factories do not perform
+ * schema export or validation and do not read JDBC metadata, see {@link HibernateAdapter#derivedProperties(SessionFactory)}.
+ * Also, replica session factories have second level and query caches disabled since writes on primary database would
+ * never invalidate them.
+ * <p>
+ * Replica selection uses either round robin or least outstanding sessions balancing, see {@link #BALANCING_PROPERTY}.
+ * Replica health is checked periodically by background threads, one per replica, that borrow a connection from replica
+ * pool and validate it; selection only reads current health state and never blocks on database. A replica is not
+ * selected until its first successful check. An unhealthy replica, or a replica ejected by caller because connection
+ * acquisition failed, see {@link #eject(SessionFactory)}, is removed from selection until next successful check. If no
+ * replica is healthy {@link #acquire()} returns null and caller should fall back to primary database.
+ *
+ * @author Iulian Rotaru
+ */
+final class ReplicaPool
+{
+  private static final Log log = LogFactory.getLog(ReplicaPool.class);
+
+  /** Comma separated list of read replicas JDBC URLs. If missing, there are no replicas configured. */
+  public static final String URLS_PROPERTY = "hibernate.replicas.urls";
+  /** Balancing strategy, <code>round_robin</code> or <code>least_sessions</code>. Default is round robin. */
+  public static final String BALANCING_PROPERTY = "hibernate.replicas.balancing";
+  /** Interval, in seconds, between two health checks on the same replica. Default value is 10 seconds. */
+  public static final String CHECK_INTERVAL_PROPERTY = "hibernate.replicas.check_interval";
+
+  private static final int DEFAULT_CHECK_INTERVAL = 10;
+  /** Timeout, in seconds, for connection validation on health check. */
+  private static final int VALIDATION_TIMEOUT = 2;
+
+  private final Replica[] replicas;
+
+  /** Use least outstanding sessions balancing if true, otherwise round robin. */
+  private final boolean leastSessions;
+
+  /** Health checks scheduler, null if there are no replicas configured. */
+  private final ScheduledExecutorService scheduler;
+
+  /** Round robin counter. */
+  private final AtomicInteger counter = new AtomicInteger();
+
+  /**
+   * Create session factories for read replicas declared by Hibernate configuration and start their health checks.
+   *
+   * @param configuration Hibernate configuration,
+   * @param primarySessionFactory session factory already built from configuration, used as template.
+   */
+  public ReplicaPool(Configuration configuration, SessionFactory primarySessionFactory)
+  {
+    String urls = configuration.getProperty(URLS_PROPERTY);
+    String[] replicaURLs = urls != null && !urls.trim().isEmpty() ? urls.split(",") : new String[0];
+
+    String balancing = configuration.getProperty(BALANCING_PROPERTY);
+    this.leastSessions = "least_sessions".equals(balancing);
+
+    String checkInterval = configuration.getProperty(CHECK_INTERVAL_PROPERTY);
+    long checkIntervalSeconds = checkInterval != null ? Integer.parseInt(checkInterval) : DEFAULT_CHECK_INTERVAL;
+
+    this.replicas = new Replica[replicaURLs.length];
+    for(int i = 0; i < replicaURLs.length; ++i) {
+      String url = replicaURLs[i].trim();
+      log.debug("Create session factory for read replica |%s|.", url);
+      Map<String, String> properties = HibernateAdapter.derivedProperties(primarySessionFactory);
+      properties.put("hibernate.connection.url", url);
+      // replica caches are not invalidated by primary writes
+      properties.put("hibernate.cache.use_second_level_cache", "false");
+      properties.put("hibernate.cache.use_query_cache", "false");
+      replicas[i] = new Replica(url, HibernateAdapter.buildSessionFactory(configuration, properties));
+    }
+
+    if(replicas.length == 0) {
+      this.scheduler = null;
+      return;
+    }
+    // a thread per replica so that a replica blocking on connection acquisition does not delay other replicas checks
+    AtomicInteger threadIndex = new AtomicInteger();
+    this.scheduler = Executors.newScheduledThreadPool(replicas.length, runnable -> {
+      Thread thread = new Thread(runnable, "hibernate-replica-check-" + threadIndex.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    for(Replica replica : replicas) {
+      scheduler.scheduleWithFixedDelay(() -> replica.setHealthy(check(replica)), 0, checkIntervalSeconds, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Test if this pool has at least one replica configured.
+   *
+   * @return true if there are replicas configured.
+   */
+  public boolean isEmpty()
+  {
+    return replicas.length == 0;
+  }
+
+  /**
+   * Select a healthy replica and increment its outstanding sessions count. Every not null returned session factory
+   * should be returned to pool with {@link #release(SessionFactory)}.
+   *
+   * @return replica session factory or null if there is no healthy replica.
+   */
+  public SessionFactory acquire()
+  {
+    Replica replica = leastSessions ? selectLeastSessions() : selectRoundRobin();
+    if(replica == null) {
+      return null;
+    }
+    replica.outstandingSessions.incrementAndGet();
+    return replica.sessionFactory;
+  }
+
+  /**
+   * Decrement outstanding sessions count for replica owning given session factory. Does nothing if session factory is
+   * not a replica, e.g. it is primary database used as fall back.
+   *
+   * @param sessionFactory session factory returned by {@link #acquire()}.
+   */
+  public void release(SessionFactory sessionFactory)
+  {
+    for(Replica replica : replicas) {
+      if(replica.sessionFactory == sessionFactory) {
+        replica.outstandingSessions.decrementAndGet();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Eject replica owning given session factory from selection until its next successful health check. Invoked when
+   * acquiring a connection from replica fails.
+   *
+   * @param sessionFactory replica session factory.
+   */
+  public void eject(SessionFactory sessionFactory)
+  {
+    for(Replica replica : replicas) {
+      if(replica.sessionFactory == sessionFactory) {
+        replica.setHealthy(false);
+        return;
+      }
+    }
+  }
+
+  /** Stop health checks and close all replicas session factories. */
+  public void destroy()
+  {
+    if(scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    for(Replica replica : replicas) {
+      log.debug("Close session factory for read replica |%s|.", replica.url);
+      replica.sessionFactory.close();
+    }
+  }
+
+  private Replica selectRoundRobin()
+  {
+    int start = counter.getAndIncrement() & Integer.MAX_VALUE;
+    for(int i = 0; i < replicas.length; ++i) {
+      Replica replica = replicas[(start + i) % replicas.length];
+      if(replica.healthy) {
+        return replica;
+      }
+    }
+    return null;
+  }
+
+  private Replica selectLeastSessions()
+  {
+    Replica selected = null;
+    for(Replica replica : replicas) {
+      if(replica.healthy && (selected == null || replica.outstandingSessions.get() < selected.outstandingSessions.get())) {
+        selected = replica;
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Check replica health by borrowing a connection from replica pool and validating it. Executed on health check
+   * thread.
+   *
+   * @param replica replica to check.
+   * @return true if replica is healthy.
+   */
+  private static boolean check(Replica replica)
+  {
+    ConnectionProvider provider = ((SessionFactoryImplementor)replica.sessionFactory).getConnectionProvider();
+    Connection connection = null;
+    try {
+      connection = provider.getConnection();
+      return connection.isValid(VALIDATION_TIMEOUT);
+    }
+    catch(Exception e) {
+      return false;
+    }
+    finally {
+      if(connection != null) {
+        try {
+          provider.closeConnection(connection);
+        }
+        catch(Exception ignore) {}
+      }
+    }
+  }
+
+  /** Read replica session factory and its runtime state. */
+  private static final class Replica
+  {
+    final String url;
+    final SessionFactory sessionFactory;
+    final AtomicInteger outstandingSessions = new AtomicInteger();
+    /** Replica health, updated by health check thread. Initially false until first successful check. */
+    volatile boolean healthy;
+
+    Replica(String url, SessionFactory sessionFactory)
+    {
+      this.url = url;
+      this.sessionFactory = sessionFactory;
+    }
+
+    void setHealthy(boolean healthy)
+    {
+      if(this.healthy != healthy) {
+        log.info(healthy ? "Read replica |%s| is healthy." : "Eject unhealthy read replica |%s|.", url);
+      }
+      this.healthy = healthy;
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.jslib.transaction.hibernate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps current row of a JDBC results set to an object, used by SQL query direct JDBC access. Row mapper reads columns
+ * with typed results set getters, by column index, so that primitive columns are not boxed unless the mapped object
+ * stores them boxed. A row mapper is typically a lambda expression created once, for a given results shape, and stored
+ * into a static field:
+ * 
+ * <pre>
+ * static final RowMapper&lt;Score&gt; SCORE = resultSet -&gt; new Score(resultSet.getLong(1), resultSet.getDouble(2));
+ * ...
+ * List&lt;Score&gt; scores = sm.SQL(&quot;SELECT person_id,score FROM score WHERE day=?&quot;, day).list(SCORE);
+ * </pre>
+ * 
+ * @author Iulian Rotaru
+ * @param <T> mapped object type.
+ */
+@FunctionalInterface
+public interface RowMapper<T>
+{
+  /**
+   * Map results set current row. Implementation should not move results set cursor.
+   * 
+   * @param resultSet results set positioned on current row.
+   * @return mapped object, possible null.
+   * @throws SQLException if reading from results set fails.
+   */
+  T map(ResultSet resultSet) throws SQLException;
+}
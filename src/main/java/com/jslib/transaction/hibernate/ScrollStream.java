@@ -0,0 +1,107 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+/**
+ * Stream of query results backed by forward only scrollable results. Rows are fetched from database in chunks of
+ * configured fetch size and Hibernate session first level cache is cleared every fetch size rows so that memory usage
+ * does not depend on results size. As a consequence, entities returned by stream are detached from session shortly
+ * after being consumed and changes on them are not persisted.
+ * <p>
+ * Session is flushed before query execution, since native SQL queries have no query spaces to trigger Hibernate auto
+ * flush, and before every clear, so that changes made while consuming the stream are not discarded. If session flush
+ * mode is manual, session is not flushed and a session with unflushed changes is not cleared; stream fails instead.
+ * <p>
+ * Stream holds an open JDBC result set and should be closed, preferably using try-with-resources.
+ *
+ * @author Iulian Rotaru
+ */
+final class ScrollStream
+{
+  /** Default fetch size and session clear interval used when query has no fetch size configured. */
+  public static final int DEFAULT_FETCH_SIZE = 1000;
+
+  /**
+   * Create stream for query results. If query returns a single column or entity per row stream elements are row values;
+   * otherwise stream elements are rows, that is, objects array.
+   *
+   * @param session Hibernate session the query was created on, null if query was created on a stateless session,
+   * @param query Hibernate query,
+   * @param fetchSize JDBC fetch size, zero for default; if strict positive it is also used as session clear interval.
+   * @param <T> stream elements type.
+   * @return results stream.
+   */
+  public static <T> Stream<T> create(Session session, Query query, int fetchSize)
+  {
+    if(session != null) {
+      flush(session);
+    }
+    query.setReadOnly(true);
+    query.setFetchSize(fetchSize != 0 ? fetchSize : DEFAULT_FETCH_SIZE);
+    ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+    int clearInterval = fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE;
+    return StreamSupport.stream(new ResultsSpliterator<T>(session, results, clearInterval), false).onClose(results::close);
+  }
+
+  /**
+   * Flush session, unless flush mode is manual, in which case ensure session has no unflushed changes.
+   *
+   * @param session Hibernate session.
+   * @throws HibernateException if session flush mode is manual and session has unflushed changes.
+   */
+  private static void flush(Session session)
+  {
+    if(!FlushMode.isManualFlushMode(session.getFlushMode())) {
+      session.flush();
+    }
+    else if(session.isDirty()) {
+      throw new HibernateException("Results stream on session with manual flush mode and unflushed changes.");
+    }
+  }
+
+  /** Spliterator on scrollable results, flushing and clearing session every clear interval rows. */
+  private static final class ResultsSpliterator<T> extends Spliterators.AbstractSpliterator<T>
+  {
+    private final Session session;
+    private final ScrollableResults results;
+    private final int clearInterval;
+    private int rowsCount;
+
+    ResultsSpliterator(Session session, ScrollableResults results, int clearInterval)
+    {
+      super(Long.MAX_VALUE, Spliterator.ORDERED);
+      this.session = session;
+      this.results = results;
+      this.clearInterval = clearInterval;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action)
+    {
+      // clear before fetching next row so that current row entity is not detached while in use
+      if(session != null && rowsCount > 0 && rowsCount % clearInterval == 0) {
+        flush(session);
+        session.clear();
+      }
+      if(!results.next()) {
+        return false;
+      }
+      ++rowsCount;
+      Object[] row = results.get();
+      action.accept((T)(row.length == 1 ? row[0] : row));
+      return true;
+    }
+  }
+}
@@ -0,0 +1,300 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.api.transaction.TransactionException;
+
+/**
+ * Schema keyed registry of Hibernate session factories, used to serve multiple tenants from the same process. All
+ * session factories are built from the same Hibernate configuration so that mapping metadata is parsed only once; the
+ * only difference is the default schema, which is set to tenant schema.
+ * <p>
+ * Hibernate has no means to share entity persisters between session factories, but tenant session factories skip the
+ * costly startup work that primary session factory already did: JDBC metadata is not read, dialect and JDBC features
+ * being copied from primary session factory, named queries are not checked and schema export or validation, if
+ * configured, is not performed.
+ * <p>
+ * Session factories are built lazily, on first transaction for a given schema, outside registry lookup so that a slow
+ * build does not block transactions on other tenants; concurrent transactions on the same new schema wait for the same
+ * build. Note that Hibernate configuration is not thread safe and builds for different schemas are serialized on it.
+ * When registry size exceeds configured capacity, least recently used tenants with no active transaction are evicted
+ * and their session factories closed. Tenants with active transactions are never evicted so registry size can
+ * temporarily exceed its capacity.
+ * <p>
+ * If a connection pool budget is configured, it is split evenly among tenants: every tenant session factory uses a c3p0
+ * pool with maximum size <code>budget / capacity</code>, but at least one connection, and no minimum size, so that idle
+ * tenants do not keep connections. Since registry size can exceed capacity, budget is also enforced on transactions: all
+ * tenants together have at most budget transactions open and a new transaction waits for one to close, up to a timeout,
+ * see {@link #POOL_TIMEOUT_PROPERTY}.
+ *
+ * @author Iulian Rotaru
+ */
+final class SessionFactoryRegistry
+{
+  private static final Log log = LogFactory.getLog(SessionFactoryRegistry.class);
+
+  /** Maximum number of tenants kept by registry, loaded from this property. Default value is 100. */
+  public static final String MAX_SIZE_PROPERTY = "hibernate.tenants.max_size";
+  /** Total number of connections shared by all tenants, loaded from this property. Default is no budget. */
+  public static final String POOL_BUDGET_PROPERTY = "hibernate.tenants.pool_budget";
+  /** Time, in seconds, a new tenant transaction waits when pool budget is exhausted. Default value is 30 seconds. */
+  public static final String POOL_TIMEOUT_PROPERTY = "hibernate.tenants.pool_timeout";
+
+  private static final int DEFAULT_MAX_SIZE = 100;
+  private static final int DEFAULT_POOL_TIMEOUT = 30;
+
+  /** Hibernate configuration shared by all tenants session factories. */
+  private final Configuration configuration;
+
+  /** Properties overridden on every tenant session factory build, excluding default schema. */
+  private final Map<String, String> tenantProperties = new HashMap<>();
+
+  /** Maximum number of tenants with idle session factory kept by this registry. */
+  private final int capacity;
+
+  /** Open transactions permits for all tenants, or null if there is no pool budget configured. */
+  private final Semaphore budget;
+
+  /** Pool budget timeout, seconds. */
+  private final int poolTimeout;
+
+  private final Map<String, Tenant> tenants = new ConcurrentHashMap<>();
+
+  /** Guard against concurrent eviction. */
+  private final AtomicBoolean evicting = new AtomicBoolean();
+
+  /**
+   * Create registry for tenants sharing Hibernate configuration with primary session factory.
+   *
+   * @param configuration Hibernate configuration,
+   * @param primarySessionFactory session factory already built from configuration, used as template.
+   */
+  public SessionFactoryRegistry(Configuration configuration, SessionFactory primarySessionFactory)
+  {
+    this.configuration = configuration;
+
+    String maxSize = configuration.getProperty(MAX_SIZE_PROPERTY);
+    this.capacity = maxSize != null ? Integer.parseInt(maxSize) : DEFAULT_MAX_SIZE;
+
+    String poolBudget = configuration.getProperty(POOL_BUDGET_PROPERTY);
+    this.budget = poolBudget != null ? new Semaphore(Integer.parseInt(poolBudget), true) : null;
+    String poolTimeout = configuration.getProperty(POOL_TIMEOUT_PROPERTY);
+    this.poolTimeout = poolTimeout != null ? Integer.parseInt(poolTimeout) : DEFAULT_POOL_TIMEOUT;
+    if(poolBudget != null) {
+      tenantProperties.put("hibernate.c3p0.max_size", Integer.toString(Math.max(1, Integer.parseInt(poolBudget) / capacity)));
+      tenantProperties.put("hibernate.c3p0.min_size", "0");
+    }
+
+    // null value removes property for tenant build
+    tenantProperties.putAll(HibernateAdapter.derivedProperties(primarySessionFactory));
+  }
+
+  /**
+   * Get session factory for requested schema, building it if not already present, and mark tenant as active. Every
+   * successful acquire should be paired with a {@link #release(String)}.
+   *
+   * @param schema tenant database schema.
+   * @return tenant session factory.
+   * @throws TransactionException if pool budget is exhausted and no transaction closes before timeout.
+   */
+  public SessionFactory acquire(String schema)
+  {
+    acquireBudget(schema);
+    try {
+      return acquireSessionFactory(schema);
+    }
+    catch(RuntimeException e) {
+      releaseBudget();
+      throw e;
+    }
+  }
+
+  private SessionFactory acquireSessionFactory(String schema)
+  {
+    for(;;) {
+      Tenant tenant = tenants.get(schema);
+      boolean created = false;
+      if(tenant == null) {
+        Tenant newTenant = new Tenant();
+        tenant = tenants.putIfAbsent(schema, newTenant);
+        if(tenant == null) {
+          tenant = newTenant;
+          created = true;
+        }
+      }
+      if(!tenant.retain()) {
+        // tenant concurrently evicted; retry with a new one
+        continue;
+      }
+
+      if(created) {
+        try {
+          tenant.sessionFactory.complete(buildSessionFactory(schema));
+        }
+        catch(RuntimeException e) {
+          tenant.sessionFactory.completeExceptionally(e);
+          tenants.remove(schema, tenant);
+          throw e;
+        }
+        evictIdleTenants();
+      }
+
+      try {
+        return tenant.sessionFactory.join();
+      }
+      catch(CompletionException e) {
+        tenant.activeTransactions.decrementAndGet();
+        throw (RuntimeException)e.getCause();
+      }
+    }
+  }
+
+  /**
+   * Mark a tenant transaction as completed. Tenant becomes eligible for eviction when there are no more active
+   * transactions on it.
+   *
+   * @param schema tenant database schema.
+   */
+  public void release(String schema)
+  {
+    Tenant tenant = tenants.get(schema);
+    if(tenant != null && tenant.activeTransactions.get() > 0) {
+      tenant.lastAccess = System.nanoTime();
+      tenant.activeTransactions.decrementAndGet();
+      releaseBudget();
+    }
+    evictIdleTenants();
+  }
+
+  /** Close all tenants session factories. */
+  public void destroy()
+  {
+    for(Map.Entry<String, Tenant> entry : tenants.entrySet()) {
+      SessionFactory sessionFactory = entry.getValue().sessionFactory.getNow(null);
+      if(sessionFactory != null) {
+        log.debug("Close session factory for schema |%s|.", entry.getKey());
+        sessionFactory.close();
+      }
+    }
+    tenants.clear();
+  }
+
+  private void acquireBudget(String schema)
+  {
+    if(budget == null) {
+      return;
+    }
+    try {
+      if(!budget.tryAcquire(poolTimeout, TimeUnit.SECONDS)) {
+        throw new TransactionException(String.format("Tenants pool budget exhausted. Timeout on transaction for schema |%s|.", schema));
+      }
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TransactionException(String.format("Interrupted while waiting for pool budget on schema |%s|.", schema));
+    }
+  }
+
+  private void releaseBudget()
+  {
+    if(budget != null) {
+      budget.release();
+    }
+  }
+
+  /**
+   * Evict least recently used tenants with no active transactions while registry size exceeds capacity. If eviction is
+   * already in progress on another thread this method does nothing.
+   */
+  private void evictIdleTenants()
+  {
+    if(tenants.size() <= capacity || !evicting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      List<Map.Entry<String, Tenant>> entries = new ArrayList<>(tenants.entrySet());
+      entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+      for(Map.Entry<String, Tenant> entry : entries) {
+        if(tenants.size() <= capacity) {
+          break;
+        }
+        Tenant tenant = entry.getValue();
+        if(tenant.evict()) {
+          log.debug("Evict idle session factory for schema |%s|.", entry.getKey());
+          tenants.remove(entry.getKey(), tenant);
+          // an idle tenant is always built, there is no active transaction waiting for it
+          SessionFactory sessionFactory = tenant.sessionFactory.getNow(null);
+          if(sessionFactory != null) {
+            sessionFactory.close();
+          }
+        }
+      }
+    }
+    finally {
+      evicting.set(false);
+    }
+  }
+
+  private SessionFactory buildSessionFactory(String schema)
+  {
+    log.debug("Create session factory for schema |%s|.", schema);
+    Map<String, String> properties = new HashMap<>(tenantProperties);
+    properties.put("hibernate.default_schema", schema);
+    return HibernateAdapter.buildSessionFactory(configuration, properties);
+  }
+
+  /** Registry entry for a tenant. */
+  private static final class Tenant
+  {
+    /** Tenant session factory, completed by the thread that created this tenant. */
+    final CompletableFuture<SessionFactory> sessionFactory = new CompletableFuture<>();
+    /** Number of not closed transactions on this tenant, or -1 if tenant was evicted. */
+    final AtomicInteger activeTransactions = new AtomicInteger();
+    /** Timestamp of last transaction release, nanoseconds, for least recently used eviction. */
+    volatile long lastAccess = System.nanoTime();
+
+    /**
+     * Increment active transactions, unless tenant was evicted.
+     *
+     * @return true if tenant was retained, false if it was evicted.
+     */
+    boolean retain()
+    {
+      for(;;) {
+        int count = activeTransactions.get();
+        if(count < 0) {
+          return false;
+        }
+        if(activeTransactions.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Mark tenant as evicted if it has no active transactions.
+     *
+     * @return true if tenant was marked evicted.
+     */
+    boolean evict()
+    {
+      return activeTransactions.compareAndSet(0, -1);
+    }
+  }
+}
@@ -5,6 +5,8 @@ import java.util.Collection;
 
 import org.hibernate.Session;
 
+import com.jslib.lang.BugError;
+
 /**
  * Hibernate session manager present a simplified alternative for Hibernate session interface. It is used to save, query
  * and delete objects and collections to/from persistence layer. Direct object and collection handling is performed by
@@ -39,6 +41,34 @@ public interface SessionManager
    */
   <T> void save(Collection<T> collection);
 
+  /**
+   * Save or update large collection of objects in batches. Hibernate session is flushed and cleared every
+   * <code>batchSize</code> objects and after the last one, so that session first level cache does not grow with
+   * collection size. Note that clearing session detaches all entities loaded in current transaction, not only the saved
+   * ones.
+   * <p>
+   * To actually send statements to database in JDBC batches, Hibernate configuration should enable
+   * <code>jdbc.batch_size</code>, preferably to the same value as <code>batchSize</code>, and
+   * <code>order_inserts</code> / <code>order_updates</code>. Also be aware that Hibernate disables inserts batching for
+   * entities with identity generated ID.
+   * 
+   * @param collection collection of objects to persist,
+   * @param batchSize number of objects after which session is flushed and cleared.
+   * @param <T> collection type.
+   * @throws IllegalArgumentException if batch size is not strict positive.
+   */
+  <T> void save(Collection<T> collection, int batchSize);
+
+  /**
+   * Insert collection of new objects using a stateless session sharing current transaction connection. This is the
+   * fastest way to insert large collections since there is no first level cache, dirty checking or cascade; every
+   * object is inserted immediately. Objects should be new; this method does not update existing ones.
+   * 
+   * @param collection collection of new objects to insert.
+   * @param <T> collection type.
+   */
+  <T> void insert(Collection<T> collection);
+
   /**
    * Query to retrieve object by ID. Expected type should be properly mapped and supports lazy fields. By default fields
    * declared as lazy into mapping are not loaded from database and are left null into returned instance. Anyway, this
@@ -93,7 +123,8 @@ public interface SessionManager
   /**
    * Delete collection of objects mapped to requested entity, in a single database query. Note that this method does not
    * repeatedly invoke {@link #delete(String, Object)} on collection id values; it executes delete in a single database
-   * statement using <code>IN</code> clause.
+   * statement using <code>IN</code> clause. If ids collection exceeds configured <code>IN</code> clause maximum size,
+   * see <code>hibernate.query.in_clause_max_size</code> property, delete is split into multiple statements.
    * <p>
    * This method works only if entity ID property is named <code>id</code>. This method behavior is not specified if
    * entity uses alternative names.
@@ -103,6 +134,26 @@ public interface SessionManager
    */
   void delete(String entityName, Collection<Integer> ids);
 
+  /**
+   * Create bulk delete for a large number of entities, executed in chunks, optionally committed per chunk and
+   * concurrently. As {@link #delete(String, Collection)} this method works only if entity ID property is named
+   * <code>id</code>.
+   * 
+   * @param entityName Hibernate entity name,
+   * @param ids id values.
+   * @return bulk delete instance, to be configured and executed.
+   */
+  BulkDelete bulkDelete(String entityName, long... ids);
+
+  /**
+   * Convenient variant of {@link #bulkDelete(String, long...)} for ids collection.
+   * 
+   * @param entityName Hibernate entity name,
+   * @param ids collection of id values.
+   * @return bulk delete instance, to be configured and executed.
+   */
+  BulkDelete bulkDelete(String entityName, Collection<? extends Number> ids);
+
   boolean exists(String existsClause, Object... parameters);
 
   /**
@@ -123,6 +174,29 @@ public interface SessionManager
    */
   SqlQuery SQL(String sql, Object... parameters);
 
+  /**
+   * Create a HQL query instance for a named query. Named queries are declared into mapping files or into properties
+   * files and are validated by Hibernate when session factory is created, so that a broken query fails at application
+   * start, not on first use.
+   * 
+   * @param name named query name,
+   * @param parameters variable number of parameters mapped by position.
+   * @return HQL query instance.
+   * @throws BugError if there is no HQL query with requested name.
+   */
+  HqlQuery namedHQL(String name, Object... parameters);
+
+  /**
+   * Create a SQL query instance for a named native query. Only named query string is used; results are mapped by
+   * returned SQL query instance, as for {@link #SQL(String, Object...)}.
+   * 
+   * @param name named query name,
+   * @param parameters variable number of parameters mapped by position.
+   * @return SQL query instance.
+   * @throws BugError if there is no SQL query with requested name.
+   */
+  SqlQuery namedSQL(String name, Object... parameters);
+
   /**
    * Access to <em>low level</em> ;-) Hibernate session.
    * 
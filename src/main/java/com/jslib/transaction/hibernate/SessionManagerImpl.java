@@ -3,15 +3,15 @@ package com.jslib.transaction.hibernate;
 import java.io.Serializable;
 import java.util.Collection;
 
-import org.hibernate.Hibernate;
 import org.hibernate.Query;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 
 import com.jslib.api.log.Log;
 import com.jslib.api.log.LogFactory;
 import com.jslib.api.transaction.TransactionContext;
 import com.jslib.lang.BugError;
-import com.jslib.util.Classes;
+import com.jslib.util.Params;
 import com.jslib.util.Strings;
 
 import jakarta.inject.Inject;
@@ -56,6 +56,38 @@ public final class SessionManagerImpl implements SessionManager {
 		}
 	}
 
+	@Override
+	public <T> void save(Collection<T> collection, int batchSize) {
+		Params.strictPositive(batchSize, "Batch size");
+		Session session = getSession();
+		int count = 0;
+		for (T t : collection) {
+			session.saveOrUpdate(t);
+			if (++count % batchSize == 0) {
+				session.flush();
+				session.clear();
+			}
+		}
+		if (count % batchSize != 0) {
+			session.flush();
+			session.clear();
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public <T> void insert(Collection<T> collection) {
+		Session session = getSession();
+		StatelessSession statelessSession = session.getSessionFactory().openStatelessSession(session.connection());
+		try {
+			for (T t : collection) {
+				statelessSession.insert(t);
+			}
+		} finally {
+			statelessSession.close();
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T> T get(Class<T> type, Serializable id, String... lazyFields) {
@@ -64,8 +96,8 @@ public final class SessionManagerImpl implements SessionManager {
 			return null;
 		}
 
-		for (String lazyField : lazyFields) {
-			Hibernate.initialize(Classes.getFieldValue(t, lazyField));
+		if (lazyFields.length > 0) {
+			LazyLoader.initialize(t, lazyFields);
 		}
 		return t;
 	}
@@ -98,9 +130,30 @@ public final class SessionManagerImpl implements SessionManager {
 		StringBuilder hql = new StringBuilder("delete from ");
 		hql.append(entityName);
 		hql.append(" where id in(:ids)");
-		Query q = getSession().createQuery(hql.toString());
-		q.setParameterList("ids", ids);
-		q.executeUpdate();
+		Session session = getSession();
+		// large ids list is split into multiple statements to stay below database IN clause limit
+		for (Collection<Integer> chunk : InClause.of(session.getSessionFactory()).chunks(ids)) {
+			Query q = session.createQuery(hql.toString());
+			q.setParameterList("ids", chunk);
+			q.executeUpdate();
+		}
+	}
+
+	@Override
+	public BulkDelete bulkDelete(String entityName, long... ids) {
+		Params.notNull(ids, "Ids");
+		return new BulkDeleteImpl(getSession(), entityName, ids);
+	}
+
+	@Override
+	public BulkDelete bulkDelete(String entityName, Collection<? extends Number> ids) {
+		Params.notNull(ids, "Ids");
+		long[] values = new long[ids.size()];
+		int index = 0;
+		for (Number id : ids) {
+			values[index++] = id.longValue();
+		}
+		return new BulkDeleteImpl(getSession(), entityName, values);
 	}
 
 	@Override
@@ -120,6 +173,18 @@ public final class SessionManagerImpl implements SessionManager {
 		return new SqlQueryImpl(getSession(), sql, parameters);
 	}
 
+	@Override
+	public HqlQuery namedHQL(String name, Object... parameters) {
+		Session session = getSession();
+		return new HqlQueryImpl(session, NamedQueries.getHQL(session.getSessionFactory(), name), parameters);
+	}
+
+	@Override
+	public SqlQuery namedSQL(String name, Object... parameters) {
+		Session session = getSession();
+		return new SqlQueryImpl(session, NamedQueries.getSQL(session.getSessionFactory(), name), parameters);
+	}
+
 	@Override
 	public Session getSession() {
 		Session session = context.getResourceManager();
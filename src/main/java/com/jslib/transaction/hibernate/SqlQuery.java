@@ -2,9 +2,12 @@ package com.jslib.transaction.hibernate;
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
+import org.hibernate.CacheMode;
 import org.hibernate.HibernateException;
 import org.hibernate.NonUniqueObjectException;
+import org.hibernate.NonUniqueResultException;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
 import org.hibernate.type.StandardBasicTypes;
@@ -49,6 +52,66 @@ public interface SqlQuery
    */
   SqlQuery limit(int offset, int rowsCount);
 
+  /**
+   * Set JDBC fetch size used by {@link #stream(Class)} and {@link #stream(String, Class)}, that is, the number of rows
+   * retrieved from database in a single round trip. It is also the number of rows after which stream clears Hibernate
+   * session. If not set, stream uses a fetch size of 1000. Note that MySQL driver streams results only if fetch size
+   * is {@link Integer#MIN_VALUE}.
+   * 
+   * @param fetchSize JDBC fetch size.
+   * @return this pointer.
+   */
+  SqlQuery fetchSize(int fetchSize);
+
+  /**
+   * Keyset pagination: select rows with sort key greater than last seen value, ordered ascending by sort key. Unlike
+   * {@link #limit(int, int)} offset, that scans and discards skipped rows, this method adds a seek predicate to query
+   * and cost per page does not depend on page depth. Use together with {@link #limit(int)} for page size:
+   * 
+   * <pre>
+   * List&lt;Person&gt; page = sm.SQL(&quot;SELECT * FROM person&quot;).after(&quot;id&quot;, lastId).limit(100).list(Person.class);
+   * </pre>
+   * 
+   * Sort key column should be unique, usually primary key. Query should not have <code>order by</code> or
+   * <code>group by</code> clauses; order by sort key is added by this method. Last value is bound to a named
+   * parameter, therefore it applies to Hibernate query methods, not to direct JDBC access methods.
+   * 
+   * @param sortKey sort key column, as used by query, e.g. with alias prefix,
+   * @param lastValue last seen sort key value, null for first page.
+   * @return this pointer.
+   * @throws IllegalArgumentException if sort key is null or empty.
+   */
+  SqlQuery after(String sortKey, Object lastValue);
+
+  /**
+   * Enable query results cache. Results are stored into default query cache region, unless a region is selected
+   * with {@link #cacheRegion(String)}. Query cache should be enabled into Hibernate configuration, see
+   * <code>hibernate.cache.use_query_cache</code> property; otherwise this hint is ignored.
+   * 
+   * @return this pointer.
+   */
+  SqlQuery cacheable();
+
+  /**
+   * Enable query results cache and store results into named cache region. Region name is used as it is, without
+   * <code>hibernate.cache.region_prefix</code>.
+   * 
+   * @param regionName query cache region name.
+   * @return this pointer.
+   * @throws IllegalArgumentException if region name is null or empty.
+   */
+  SqlQuery cacheRegion(String regionName);
+
+  /**
+   * Set the way this query interacts with second level and query caches, e.g. {@link CacheMode#REFRESH} to force
+   * results reload and cache update.
+   * 
+   * @param cacheMode cache mode.
+   * @return this pointer.
+   * @throws IllegalArgumentException if cache mode is null.
+   */
+  SqlQuery cacheMode(CacheMode cacheMode);
+
   /**
    * Execute scalar query. Execute this query select and convert result to given scalar value type. Results set must
    * have at most one record with a single column; if more Hibernate runtime exception is thrown.
@@ -149,6 +212,38 @@ public interface SqlQuery
    */
   <T> List<T> list(Class<T> entity);
 
+  /**
+   * Execute database select and return scalar values as a stream, with constant memory usage regardless results size.
+   * See {@link #list(String, Class)} for scalar value binding and {@link #stream(Class)} for stream usage.
+   * 
+   * @param alias result column name or alias,
+   * @param type scalar value type to bind.
+   * @param <T> stream elements type.
+   * @return stream of scalar values, possible empty.
+   * @throws HibernateException for Hibernate related fails like bad query syntax.
+   */
+  <T> Stream<T> stream(String alias, Class<T> type);
+
+  /**
+   * Execute database select and return entities as a stream, with constant memory usage regardless results size. This
+   * method is designed for processing large results sets, e.g. export jobs. Internally uses forward only
+   * {@link org.hibernate.ScrollableResults} and flushes and clears Hibernate session periodically, see
+   * {@link #fetchSize(int)}; therefore returned entities are read-only and become detached shortly after being consumed.
+   * Returned stream keeps database results set open and should be closed:
+   * 
+   * <pre>
+   * try(Stream&lt;Person&gt; persons = sm.SQL(&quot;SELECT * FROM person&quot;).stream(Person.class)) {
+   *   persons.forEach(person -&gt; export(person));
+   * }
+   * </pre>
+   * 
+   * @param entity entity to retrieve.
+   * @param <T> stream elements type.
+   * @return stream of entities, possible empty.
+   * @throws HibernateException for Hibernate related fails like bad query syntax.
+   */
+  <T> Stream<T> stream(Class<T> entity);
+
   /**
    * Execute database select on two columns and returns them as key/values map, first column in query being the map key.
    * It is user code responsibility to ensure columns to map key/value type compatibility.
@@ -167,6 +262,130 @@ public interface SqlQuery
    */
   <K, V> Map<K, V> map();
 
+  /**
+   * Execute database select directly on JDBC connection and map every row with given row mapper. This is a fast path
+   * that bypasses Hibernate scalars binding and results processing; row mapper reads columns with typed getters, by
+   * index, see {@link RowMapper}.
+   * <p>
+   * Direct JDBC access supports only positioned parameters, bound with Hibernate types resolved from values classes.
+   * Limit and offset are applied on JDBC results set.
+   * 
+   * @param mapper row mapper, created once per results shape.
+   * @param <T> mapped object type.
+   * @return list of mapped objects, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  <T> List<T> list(RowMapper<T> mapper);
+
+  /**
+   * Execute database select directly on JDBC connection and map single row with given row mapper. See
+   * {@link #list(RowMapper)} for direct JDBC access constraints.
+   * 
+   * @param mapper row mapper, created once per results shape.
+   * @param <T> mapped object type.
+   * @return mapped object or null if query returns no row.
+   * @throws NonUniqueResultException if query returns more than one row.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  <T> T object(RowMapper<T> mapper);
+
+  /**
+   * Execute database select directly on JDBC connection and return first column as primitive int array, e.g. for
+   * scalar heavy reporting queries. SQL NULL is read as zero. See {@link #list(RowMapper)} for direct JDBC access
+   * constraints.
+   * 
+   * <pre>
+   * int[] ages = sm.SQL(&quot;SELECT age FROM person WHERE city=?&quot;, city).intArray();
+   * </pre>
+   * 
+   * @return first column values, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  int[] intArray();
+
+  /**
+   * Execute database select directly on JDBC connection and return first column as primitive long array. See
+   * {@link #intArray()}.
+   * 
+   * @return first column values, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  long[] longArray();
+
+  /**
+   * Execute database select directly on JDBC connection and return first column as primitive double array. See
+   * {@link #intArray()}.
+   * 
+   * @return first column values, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  double[] doubleArray();
+
+  /**
+   * Execute database select on two columns and returns them as primitive int to long map, first column being
+   * the key. Results set is read directly from JDBC, with no boxing and no intermediate rows; use this method for
+   * large lookup tables, e.g. id to count:
+   * 
+   * <pre>
+   * IntLongMap counts = sm.SQL(&quot;SELECT person_id,COUNT(*) FROM ticket GROUP BY person_id&quot;).intToLongMap(1000);
+   * </pre>
+   * 
+   * Direct JDBC access supports only positioned parameters, bound with Hibernate types. SQL NULL key is rejected and rows
+   * with SQL NULL value are not stored.
+   * 
+   * @param expectedSize expected number of entries, used to pre-size map.
+   * @return primitive map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  IntLongMap intToLongMap(int expectedSize);
+
+  /**
+   * Primitive int to long map with default initial size, see {@link #intToLongMap(int)}.
+   * 
+   * @return primitive map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  IntLongMap intToLongMap();
+
+  /**
+   * Execute database select on two columns and returns them as primitive long to double map, first column
+   * being the key. See {@link #intToLongMap(int)} for constraints.
+   * 
+   * @param expectedSize expected number of entries, used to pre-size map.
+   * @return primitive map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  LongDoubleMap longToDoubleMap(int expectedSize);
+
+  /**
+   * Primitive long to double map with default initial size, see {@link #longToDoubleMap(int)}.
+   * 
+   * @return primitive map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  LongDoubleMap longToDoubleMap();
+
+  /**
+   * Execute database select on two columns and returns them as long to object map, first column being the key.
+   * Values are JDBC objects, as returned by {@link java.sql.ResultSet#getObject(int)}. See {@link #intToLongMap(int)}
+   * for constraints.
+   * 
+   * @param expectedSize expected number of entries, used to pre-size map,
+   * @param <V> map value type.
+   * @return primitive keys map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  <V> LongObjectMap<V> longToObjectMap(int expectedSize);
+
+  /**
+   * Long to object map with default initial size, see {@link #longToObjectMap(int)}.
+   * 
+   * @param <V> map value type.
+   * @return primitive keys map, possible empty.
+   * @throws HibernateException if query fails or if there are named parameters.
+   */
+  <V> LongObjectMap<V> longToObjectMap();
+
   /** Execute update designated by this SQL query. */
   void update();
 
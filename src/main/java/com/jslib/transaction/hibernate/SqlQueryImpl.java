@@ -2,13 +2,15 @@ package com.jslib.transaction.hibernate;
 
 import java.sql.Time;
 import java.sql.Timestamp;
-import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
+import org.hibernate.CacheMode;
 import org.hibernate.HibernateException;
+import org.hibernate.NonUniqueResultException;
 import org.hibernate.SQLQuery;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
@@ -17,7 +19,6 @@ import org.hibernate.type.StandardBasicTypes;
 import org.hibernate.type.Type;
 
 import com.jslib.util.Params;
-import com.jslib.util.Types;
 
 /**
  * Implementation of {@link SqlQuery} interface.
@@ -37,6 +38,18 @@ final class SqlQueryImpl implements SqlQuery {
 	private int offset;
 	/** Maximum allowed number of items into results set. */
 	private int rowsCount;
+	/** JDBC fetch size used by stream methods, zero for default. */
+	private int fetchSize;
+	/** Sort key column for keyset pagination, null if keyset pagination is not used. */
+	private String keysetSortKey;
+	/** Last seen sort key value, null for first page. */
+	private Object keysetValue;
+	/** Enable query results cache. */
+	private boolean cacheable;
+	/** Query cache region, null for default region. */
+	private String cacheRegion;
+	/** Cache mode, null for session cache mode. */
+	private CacheMode cacheMode;
 	/** Map of Java type associated with returned column name. */
 	private Map<String, Type> scalars = new HashMap<String, Type>();
 
@@ -79,6 +92,41 @@ final class SqlQueryImpl implements SqlQuery {
 		return this;
 	}
 
+	@Override
+	public SqlQuery fetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+		return this;
+	}
+
+	@Override
+	public SqlQuery after(String sortKey, Object lastValue) {
+		Params.notNullOrEmpty(sortKey, "Sort key");
+		this.keysetSortKey = sortKey;
+		this.keysetValue = lastValue;
+		return this;
+	}
+
+	@Override
+	public SqlQuery cacheable() {
+		this.cacheable = true;
+		return this;
+	}
+
+	@Override
+	public SqlQuery cacheRegion(String regionName) {
+		Params.notNullOrEmpty(regionName, "Cache region name");
+		this.cacheable = true;
+		this.cacheRegion = regionName;
+		return this;
+	}
+
+	@Override
+	public SqlQuery cacheMode(CacheMode cacheMode) {
+		Params.notNull(cacheMode, "Cache mode");
+		this.cacheMode = cacheMode;
+		return this;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T> T object(String alias, Class<T> type) {
@@ -119,6 +167,20 @@ final class SqlQueryImpl implements SqlQuery {
 		return query(entity).list();
 	}
 
+	@Override
+	public <T> Stream<T> stream(String alias, Class<T> type) {
+		Params.notNull(alias, "Column name");
+		Params.notNull(type, "Column Type");
+		scalar(alias, type);
+		return ScrollStream.create(session, query(), fetchSize);
+	}
+
+	@Override
+	public <T> Stream<T> stream(Class<T> entity) {
+		Params.notNull(entity, "Entity type");
+		return ScrollStream.create(session, query(entity), fetchSize);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public <K, V> Map<K, V> map() {
@@ -139,6 +201,67 @@ final class SqlQueryImpl implements SqlQuery {
 		return map;
 	}
 
+	@Override
+	public <T> List<T> list(RowMapper<T> mapper) {
+		Params.notNull(mapper, "Row mapper");
+		return jdbcQuery().list(mapper);
+	}
+
+	@Override
+	public <T> T object(RowMapper<T> mapper) {
+		Params.notNull(mapper, "Row mapper");
+		List<T> list = jdbcQuery().limit(offset, 2).list(mapper);
+		if (list.size() > 1) {
+			throw new NonUniqueResultException(list.size());
+		}
+		return list.isEmpty() ? null : list.get(0);
+	}
+
+	@Override
+	public int[] intArray() {
+		return jdbcQuery().intColumn();
+	}
+
+	@Override
+	public long[] longArray() {
+		return jdbcQuery().longColumn();
+	}
+
+	@Override
+	public double[] doubleArray() {
+		return jdbcQuery().doubleColumn();
+	}
+
+	@Override
+	public IntLongMap intToLongMap(int expectedSize) {
+		return jdbcQuery().intToLongMap(expectedSize);
+	}
+
+	@Override
+	public IntLongMap intToLongMap() {
+		return intToLongMap(0);
+	}
+
+	@Override
+	public LongDoubleMap longToDoubleMap(int expectedSize) {
+		return jdbcQuery().longToDoubleMap(expectedSize);
+	}
+
+	@Override
+	public LongDoubleMap longToDoubleMap() {
+		return longToDoubleMap(0);
+	}
+
+	@Override
+	public <V> LongObjectMap<V> longToObjectMap(int expectedSize) {
+		return jdbcQuery().longToObjectMap(expectedSize);
+	}
+
+	@Override
+	public <V> LongObjectMap<V> longToObjectMap() {
+		return longToObjectMap(0);
+	}
+
 	@Override
 	public void update() {
 		query().executeUpdate();
@@ -185,6 +308,19 @@ final class SqlQueryImpl implements SqlQuery {
 		scalars.put(alias, t);
 	}
 
+	/**
+	 * Create direct JDBC query for this helper SQL query.
+	 * 
+	 * @return JDBC query.
+	 * @throws HibernateException if this query has named parameters.
+	 */
+	private JdbcQuery jdbcQuery() {
+		if (!namedParameters.isEmpty()) {
+			throw new HibernateException("Direct JDBC access supports only positioned parameters.");
+		}
+		return new JdbcQuery(session, sql, positionedParameters).limit(offset, rowsCount).fetchSize(fetchSize);
+	}
+
 	/**
 	 * Create SQL query object and initialize it from this helper properties.
 	 * 
@@ -192,33 +328,17 @@ final class SqlQueryImpl implements SqlQuery {
 	 * @return newly create SQL object.
 	 */
 	private SQLQuery query(Class<?>... entity) {
-		SQLQuery q = session.createSQLQuery(sql);
+		QueryAnalysisCache.QueryAnalysis analysis = QueryAnalysisCache.get(session, sql);
+		SQLQuery q = session.createSQLQuery(keysetSortKey != null ? analysis.keyset(keysetSortKey, keysetValue != null) : sql);
 		if (entity.length == 1) {
 			q.addEntity(entity[0]);
 		}
 		for (Map.Entry<String, Type> scalar : scalars.entrySet()) {
 			q.addScalar(scalar.getKey(), scalar.getValue());
 		}
-		for (int i = 0; i < positionedParameters.length; i++) {
-			q.setParameter(i, positionedParameters[i]);
-		}
-		for (Map.Entry<String, Object> entry : namedParameters.entrySet()) {
-			Object value = entry.getValue();
-			if (Types.isArray(value)) {
-				Object[] parameter = (Object[]) value;
-				if (parameter.length == 0) {
-					throw new HibernateException(String.format("Invalid named parameter |%s|. Empty array.", entry.getKey()));
-				}
-				q.setParameterList(entry.getKey(), parameter);
-			} else if (Types.isCollection(value)) {
-				Collection<?> parameter = (Collection<?>) value;
-				if (parameter.isEmpty()) {
-					throw new HibernateException(String.format("Invalid named parameter |%s|. Empty list.", entry.getKey()));
-				}
-				q.setParameterList(entry.getKey(), parameter);
-			} else {
-				q.setParameter(entry.getKey(), value);
-			}
+		analysis.bind(q, positionedParameters, namedParameters);
+		if (keysetSortKey != null && keysetValue != null) {
+			q.setParameter(Keyset.PARAMETER, keysetValue);
 		}
 		if (offset > 0) {
 			q.setFirstResult(offset);
@@ -226,6 +346,15 @@ final class SqlQueryImpl implements SqlQuery {
 		if (rowsCount > 0) {
 			q.setMaxResults(rowsCount);
 		}
+		if (cacheable) {
+			q.setCacheable(true);
+			if (cacheRegion != null) {
+				q.setCacheRegion(cacheRegion);
+			}
+		}
+		if (cacheMode != null) {
+			q.setCacheMode(cacheMode);
+		}
 		return q;
 	}
 }
@@ -0,0 +1,86 @@
+package com.jslib.transaction.hibernate;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.stream.Stream;
+
+import org.hibernate.Query;
+import org.hibernate.StatelessSession;
+
+/**
+ * Session manager for stateless transactions, see {@link TransactionManagerImpl#createStatelessTransaction(String)}.
+ * Operations are executed immediately on database, without first level cache, dirty checking, cascade or lazy loading;
+ * this interface is designed for bulk operations like nightly imports, where entities are not read back.
+ * <p>
+ * All methods should be invoked inside a stateless transaction boundaries.
+ */
+public interface StatelessSessionManager
+{
+  /**
+   * Insert a new object.
+   * 
+   * @param object object to insert.
+   * @return generated ID.
+   */
+  Serializable insert(Object object);
+
+  /**
+   * Insert collection of new objects, one statement per object.
+   * 
+   * @param collection collection of new objects.
+   * @param <T> collection type.
+   */
+  <T> void insert(Collection<T> collection);
+
+  /**
+   * Update existing object.
+   * 
+   * @param object object to update.
+   */
+  void update(Object object);
+
+  /**
+   * Delete existing object.
+   * 
+   * @param object object to delete.
+   */
+  void delete(Object object);
+
+  /**
+   * Retrieve object by ID. Lazy fields are not supported by stateless sessions.
+   * 
+   * @param type expected object type,
+   * @param id desired object ID.
+   * @param <T> class type.
+   * @return object instance or null.
+   */
+  <T> T get(Class<T> type, Serializable id);
+
+  /**
+   * Create Hibernate query on stateless session, with positioned parameters already bound.
+   * 
+   * @param hql HQL statement with optional positioned parameters markup, that is question mark sign,
+   * @param parameters variable number of parameters mapped by position.
+   * @return Hibernate query.
+   */
+  Query query(String hql, Object... parameters);
+
+  /**
+   * Execute HQL select and return results as a stream, backed by forward only scrollable results. Since stateless
+   * session has no first level cache, memory usage does not depend on results size. Returned stream keeps database
+   * results set open and should be closed, preferably using try-with-resources.
+   * 
+   * @param hql HQL statement with optional positioned parameters markup, that is question mark sign,
+   * @param parameters variable number of parameters mapped by position.
+   * @param <T> stream elements type.
+   * @return results stream.
+   */
+  <T> Stream<T> scroll(String hql, Object... parameters);
+
+  /**
+   * Access underlying Hibernate stateless session.
+   * 
+   * @return Hibernate stateless session.
+   */
+  StatelessSession getSession();
+}
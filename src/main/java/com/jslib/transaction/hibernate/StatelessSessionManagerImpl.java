@@ -0,0 +1,94 @@
+package com.jslib.transaction.hibernate;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.stream.Stream;
+
+import org.hibernate.Query;
+import org.hibernate.StatelessSession;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.api.transaction.TransactionContext;
+import com.jslib.lang.BugError;
+
+import jakarta.inject.Inject;
+
+/**
+ * Implementation of {@link StatelessSessionManager} interface.
+ * 
+ * @author Iulian Rotaru
+ */
+public final class StatelessSessionManagerImpl implements StatelessSessionManager {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(StatelessSessionManagerImpl.class);
+
+	/** Transaction executed in current thread. Used to retrieve hibernate stateless session instance. */
+	private final TransactionContext context;
+
+	/**
+	 * Construct stateless session manager instance and inject transaction context dependency.
+	 * 
+	 * @param context transaction executed in current thread.
+	 */
+	@Inject
+	public StatelessSessionManagerImpl(TransactionContext context) {
+		log.trace("StatelessSessionManagerImpl(TransactionContext)");
+		this.context = context;
+	}
+
+	@Override
+	public Serializable insert(Object object) {
+		return getSession().insert(object);
+	}
+
+	@Override
+	public <T> void insert(Collection<T> collection) {
+		StatelessSession session = getSession();
+		for (T t : collection) {
+			session.insert(t);
+		}
+	}
+
+	@Override
+	public void update(Object object) {
+		getSession().update(object);
+	}
+
+	@Override
+	public void delete(Object object) {
+		getSession().delete(object);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> T get(Class<T> type, Serializable id) {
+		return (T) getSession().get(type, id);
+	}
+
+	@Override
+	public Query query(String hql, Object... parameters) {
+		Query query = getSession().createQuery(hql);
+		for (int i = 0; i < parameters.length; i++) {
+			query.setParameter(i, parameters[i]);
+		}
+		return query;
+	}
+
+	@Override
+	public <T> Stream<T> scroll(String hql, Object... parameters) {
+		return ScrollStream.create(null, query(hql, parameters), 0);
+	}
+
+	@Override
+	public StatelessSession getSession() {
+		Object session = context.getResourceManager();
+		if (session == null) {
+			throw new BugError("Attempt to get stateless session object outside a transaction.");
+		}
+		if (!(session instanceof StatelessSession)) {
+			throw new BugError("Attempt to use stateless session manager outside a stateless transaction.");
+		}
+		return (StatelessSession) session;
+	}
+}
@@ -0,0 +1,47 @@
+package com.jslib.transaction.hibernate;
+
+/**
+ * Transaction bound to a thread other than the one that created it. Created by
+ * {@link TransactionManagerImpl#bind(com.jslib.api.transaction.Transaction)}; on close restores the transaction that
+ * was bound to current thread before binding, if any. Binding should be closed on the same thread it was created.
+ * 
+ * @author Iulian Rotaru
+ */
+public final class TransactionBinding implements AutoCloseable
+{
+  /** Hibernate adapter owning transactions cache. */
+  private final HibernateAdapter adapter;
+
+  /** Transaction bound to current thread before this binding, possible null. */
+  private final TransactionImpl previousTransaction;
+
+  /** The thread this binding was created on. */
+  private final Thread thread;
+
+  private boolean closed;
+
+  TransactionBinding(HibernateAdapter adapter, TransactionImpl previousTransaction)
+  {
+    this.adapter = adapter;
+    this.previousTransaction = previousTransaction;
+    this.thread = Thread.currentThread();
+  }
+
+  /**
+   * Restore previous transaction on current thread. This method is idempotent.
+   * 
+   * @throws IllegalStateException if invoked from a different thread than the one that created this binding.
+   */
+  @Override
+  public void close()
+  {
+    if(closed) {
+      return;
+    }
+    if(Thread.currentThread() != thread) {
+      throw new IllegalStateException("Transaction binding closed from a different thread.");
+    }
+    closed = true;
+    adapter.restoreTransaction(previousTransaction);
+  }
+}
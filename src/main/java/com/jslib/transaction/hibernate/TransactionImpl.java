@@ -2,12 +2,26 @@ package com.jslib.transaction.hibernate;
 
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 
 import com.jslib.api.transaction.Transaction;
 import com.jslib.api.transaction.TransactionException;
 
 /**
  * Transaction implementation for Hibernate session.
+ * <p>
+ * A stateless transaction uses a Hibernate {@link StatelessSession} as resource manager instead of a regular session.
+ * It has no first level cache and no dirty checking and is designed for bulk operations.
+ * <p>
+ * In lazy mode, opening Hibernate session and beginning transaction are deferred until first
+ * {@link #getResourceManager()} call. This way JDBC connection is not acquired if working unit does not actually
+ * access the database; commit, rollback or close on an untouched transaction just release transaction from current
+ * thread.
+ * <p>
+ * Transaction is not thread safe but it can be handed over to another thread, see
+ * {@link TransactionManagerImpl#bind(Transaction)}; state changed after construction is volatile so that it is visible
+ * to the thread the transaction was bound to.
  * 
  * @author Iulian Rotaru
  * @version draft
@@ -17,58 +31,196 @@ final class TransactionImpl implements Transaction
   /** Hibernate session factory adapter. */
   private final HibernateAdapter adapter;
 
-  /** Hibernate session. */
-  private final Session session;
+  /** Database schema this transaction is executed on, null for default schema. */
+  private final String schema;
+
+  /** Session factory that created this transaction session. May change to fallback session factory on session open. */
+  private volatile SessionFactory sessionFactory;
+
+  /**
+   * Session factory used if acquiring connection from {@link #sessionFactory} fails, null if there is no fallback. Read
+   * replica transactions fall back to primary database.
+   */
+  private volatile SessionFactory fallbackSessionFactory;
+
+  /** Hibernate session, null if transaction is stateless or is lazy and session not yet opened. */
+  private volatile Session session;
+
+  /** Hibernate stateless session, null if transaction is not stateless or is lazy and session not yet opened. */
+  private volatile StatelessSession statelessSession;
+
+  /** Transaction timeout, seconds. Zero means no timeout. */
+  private final int transactionTimeout;
 
   /** Hibernate transaction. */
-  private org.hibernate.Transaction transaction;
+  private volatile org.hibernate.Transaction transaction;
 
   /**
-   * Nesting level count used to allow for nesting transactions. {@link HibernateAdapter#createTransaction(boolean)}
+   * Nesting level count used to allow for nesting transactions. {@link HibernateAdapter#createTransaction(String, boolean)}
    * increments this counter if a transaction is already present on current thread but avoid creating a new one. On
    * {@link #close()} decrement nesting level and perform the actual close only if nesting level is 0.
    */
-  private int nestingLevel;
+  private volatile int nestingLevel;
 
   /** A read only transaction does not explicitly begin or commit/rollback but rely on database (driver). */
   private final boolean readOnly;
 
+  /** Flag true if this transaction uses a stateless session. */
+  private final boolean stateless;
+
   /** Flag indicating that transaction was closes and is not longer legal to operate on it. */
-  private boolean closed = false;
+  private volatile boolean closed = false;
+
+  /** Transaction life cycle events listener, used for instrumentation. */
+  private final TransactionListener listener;
+
+  /** Transaction creation timestamp, nanoseconds, used as reference for durations reported to listener. */
+  private final long openTimestamp;
 
   /**
    * Create transaction instance.
    * 
    * @param adapter Hibernate adapter,
+   * @param sessionFactory session factory for transaction schema,
+   * @param schema database schema, null for default schema,
+   * @param transactionTimeout transaction timeout, seconds,
+   * @param readOnly flag true for read-only transactions,
+   * @param stateless flag true for transactions using a stateless session,
+   * @param lazy flag true to defer session opening until first use.
+   */
+  public TransactionImpl(HibernateAdapter adapter, SessionFactory sessionFactory, String schema, int transactionTimeout, boolean readOnly, boolean stateless, boolean lazy)
+  {
+    this(adapter, sessionFactory, null, schema, transactionTimeout, readOnly, stateless, lazy);
+  }
+
+  /**
+   * Create transaction instance with a fallback session factory. When opening session, that is, on construction or on
+   * first use if lazy, JDBC connection is acquired eagerly from session factory; if that fails, session factory is
+   * reported to adapter, see {@link HibernateAdapter#onConnectionFailure(SessionFactory)}, and session is opened on
+   * fallback session factory.
+   * 
+   * @param adapter Hibernate adapter,
+   * @param sessionFactory session factory for transaction schema,
+   * @param fallbackSessionFactory session factory used if connection acquisition fails, null if no fallback,
+   * @param schema database schema, null for default schema,
    * @param transactionTimeout transaction timeout, seconds,
-   * @param readOnly flag true for read-only transactions.
+   * @param readOnly flag true for read-only transactions,
+   * @param stateless flag true for transactions using a stateless session,
+   * @param lazy flag true to defer session opening until first use.
    */
-  public TransactionImpl(HibernateAdapter adapter, int transactionTimeout, boolean readOnly)
+  public TransactionImpl(HibernateAdapter adapter, SessionFactory sessionFactory, SessionFactory fallbackSessionFactory, String schema, int transactionTimeout, boolean readOnly, boolean stateless, boolean lazy)
   {
     this.adapter = adapter;
-    this.session = adapter.getSessionFactory().openSession();
+    this.schema = schema;
+    this.sessionFactory = sessionFactory;
+    this.fallbackSessionFactory = fallbackSessionFactory;
+    this.transactionTimeout = transactionTimeout;
     this.readOnly = readOnly;
+    this.stateless = stateless;
+    this.listener = adapter.getTransactionListener();
+    this.openTimestamp = System.nanoTime();
+    if(!lazy) {
+      begin();
+    }
+    listener.onOpen();
+  }
+
+  /**
+   * Open Hibernate session and begin transaction, if not read-only. If starting transaction fails ensure session is
+   * closed.
+   * 
+   * @throws TransactionException if Hibernate transaction begin fails.
+   */
+  private void begin()
+  {
+    long beginTimestamp = System.nanoTime();
+    if(stateless) {
+      StatelessSession statelessSession = sessionFactory.openStatelessSession();
+      try {
+        beginTransaction(statelessSession.getTransaction());
+      }
+      catch(HibernateException e) {
+        statelessSession.close();
+        throw new TransactionException(e);
+      }
+      this.statelessSession = statelessSession;
+      listener.onConnect(System.nanoTime() - beginTimestamp);
+      return;
+    }
+
+    Session session = openSession();
 
     // do not create transaction boundaries if session is read-only
     if(!readOnly) {
       try {
-        this.transaction = this.session.getTransaction();
-        if(transactionTimeout > 0) {
-          this.transaction.setTimeout(transactionTimeout);
-        }
-        this.transaction.begin();
+        beginTransaction(session.getTransaction());
       }
       catch(HibernateException e) {
         // ensure session is closed even if starting a new transaction fails
-        this.session.close();
+        session.close();
         throw new TransactionException(e);
       }
     }
+    this.session = session;
+    listener.onConnect(System.nanoTime() - beginTimestamp);
+  }
+
+  /**
+   * Open Hibernate session. If there is a fallback session factory acquire JDBC connection now, since Hibernate session
+   * acquires it only on first database access, and on failure open session on fallback session factory.
+   * 
+   * @return Hibernate session.
+   */
+  private Session openSession()
+  {
+    if(fallbackSessionFactory == null) {
+      return sessionFactory.openSession();
+    }
+
+    Session session = null;
+    try {
+      session = sessionFactory.openSession();
+      // empty work forces connection acquisition; connection is released back to pool if there is no transaction
+      session.doWork(connection -> {});
+      return session;
+    }
+    catch(HibernateException e) {
+      if(session != null) {
+        session.close();
+      }
+      adapter.onConnectionFailure(sessionFactory);
+      sessionFactory = fallbackSessionFactory;
+      fallbackSessionFactory = null;
+      return sessionFactory.openSession();
+    }
+  }
+
+  private void beginTransaction(org.hibernate.Transaction transaction)
+  {
+    this.transaction = transaction;
+    if(transactionTimeout > 0) {
+      transaction.setTimeout(transactionTimeout);
+    }
+    transaction.begin();
+  }
+
+  /**
+   * Test if Hibernate session was opened, that is, transaction is not lazy or was already used.
+   * 
+   * @return true if session was opened.
+   */
+  private boolean isSessionOpened()
+  {
+    return session != null || statelessSession != null;
   }
 
   @Override
   public void commit()
   {
+    // transaction is closed by a previous commit or rollback, even if failed
+    if(closed) {
+      return;
+    }
     if(nestingLevel > 0) {
       return;
     }
@@ -76,9 +228,14 @@ final class TransactionImpl implements Transaction
       throw new IllegalStateException("Read-only transaction does not allow commit.");
     }
     try {
-      transaction.commit();
+      // lazy transaction not touched by working unit has nothing to commit
+      if(isSessionOpened()) {
+        transaction.commit();
+      }
+      listener.onCommit(System.nanoTime() - openTimestamp);
     }
     catch(Exception e) {
+      listener.onFailure();
       throw new TransactionException(e);
     }
     finally {
@@ -89,6 +246,10 @@ final class TransactionImpl implements Transaction
   @Override
   public void rollback()
   {
+    // commit failure already closed transaction; its usual rollback from catch block must not mask commit exception
+    if(closed) {
+      return;
+    }
     if(nestingLevel > 0) {
       return;
     }
@@ -96,11 +257,13 @@ final class TransactionImpl implements Transaction
       throw new IllegalStateException("Read-only transaction does not allow rollback.");
     }
     try {
-      if(session.isOpen()) {
+      if(statelessSession != null || (session != null && session.isOpen())) {
         transaction.rollback();
       }
+      listener.onRollback(System.nanoTime() - openTimestamp);
     }
     catch(Exception e) {
+      listener.onFailure();
       throw new TransactionException(e);
     }
     finally {
@@ -120,13 +283,19 @@ final class TransactionImpl implements Transaction
     closed = true;
 
     try {
-      session.close();
+      if(session != null) {
+        session.close();
+      }
+      if(statelessSession != null) {
+        statelessSession.close();
+      }
     }
     catch(Exception e) {
       throw new TransactionException(e);
     }
     finally {
-      adapter.destroyTransaction();
+      listener.onClose(System.nanoTime() - openTimestamp);
+      adapter.destroyTransaction(this);
     }
     return true;
   }
@@ -138,17 +307,81 @@ final class TransactionImpl implements Transaction
     if(closed) {
       throw new IllegalStateException("Closed Hibernate session.");
     }
-    return (T)session;
+    if(!isSessionOpened()) {
+      begin();
+    }
+    return (T)(stateless ? statelessSession : session);
+  }
+
+  /**
+   * Get Hibernate adapter that created this transaction.
+   * 
+   * @return Hibernate adapter.
+   */
+  HibernateAdapter getAdapter()
+  {
+    return adapter;
+  }
+
+  /**
+   * Get database schema this transaction is executed on.
+   * 
+   * @return database schema, null for default schema.
+   */
+  public String getSchema()
+  {
+    return schema;
+  }
+
+  /**
+   * Get session factory that created this transaction session.
+   * 
+   * @return session factory.
+   */
+  public SessionFactory getSessionFactory()
+  {
+    return sessionFactory;
+  }
+
+  /**
+   * Test if this transaction is read-only.
+   * 
+   * @return true if this transaction is read-only.
+   */
+  public boolean isReadOnly()
+  {
+    return readOnly;
+  }
+
+  /**
+   * Test if this transaction uses a stateless session.
+   * 
+   * @return true if this transaction is stateless.
+   */
+  public boolean isStateless()
+  {
+    return stateless;
+  }
+
+  /**
+   * Test if this transaction was closed.
+   * 
+   * @return true if this transaction was closed.
+   */
+  public boolean isClosed()
+  {
+    return closed;
   }
 
   /**
-   * Increment transaction nesting level. Invoked from {@link HibernateAdapter#createTransaction(boolean)}.
+   * Increment transaction nesting level. Invoked from {@link HibernateAdapter#createTransaction(String, boolean)}.
    * 
    * @see #nestingLevel
    */
   public void incrementTransactionNestingLevel()
   {
     nestingLevel++;
+    listener.onNest(nestingLevel);
   }
 
   @Override
@@ -0,0 +1,58 @@
+package com.jslib.transaction.hibernate;
+
+/**
+ * Listener for transaction life cycle events, used for instrumentation. Durations are in nanoseconds and are measured
+ * from transaction creation, except connect duration, see {@link #onConnect(long)}. Listener methods are invoked on transaction thread, on the hot path, and should be fast
+ * and not allocate; default implementation is {@link TransactionMetrics}.
+ * <p>
+ * Nested transactions do not trigger open, commit, rollback and close events; they are reported only via
+ * {@link #onNest(int)}. A failed commit is reported as failure and not followed by a rollback event.
+ * 
+ * @author Iulian Rotaru
+ */
+public interface TransactionListener
+{
+  /** A new, not nested, transaction was created. */
+  void onOpen();
+
+  /**
+   * A nested transaction was created on top of an existing one.
+   * 
+   * @param nestingLevel nesting level after increment, 1 for first nested transaction.
+   */
+  void onNest(int nestingLevel);
+
+  /**
+   * Hibernate session was opened and transaction begun. For lazy transactions this happens on first use. Duration
+   * covers only session opening and transaction begin, not the time from transaction creation, so that lazy
+   * transactions do not report working unit time before first database access as connect latency. Note that for
+   * read-only transactions JDBC connection is acquired later, on first statement, and is not included in duration.
+   * 
+   * @param duration session opening and transaction begin duration.
+   */
+  void onConnect(long duration);
+
+  /**
+   * Transaction was successfully committed.
+   * 
+   * @param duration time from transaction creation to commit completion.
+   */
+  void onCommit(long duration);
+
+  /**
+   * Transaction was rolled back.
+   * 
+   * @param duration time from transaction creation to rollback completion.
+   */
+  void onRollback(long duration);
+
+  /** Transaction commit or rollback failed with exception. */
+  void onFailure();
+
+  /**
+   * Transaction was closed and its session released.
+   * 
+   * @param duration time from transaction creation to close.
+   */
+  void onClose(long duration);
+}
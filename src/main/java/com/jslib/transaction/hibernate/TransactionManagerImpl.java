@@ -1,6 +1,10 @@
 package com.jslib.transaction.hibernate;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.hibernate.Session;
+import org.hibernate.cfg.Configuration;
 
 import com.jslib.api.log.Log;
 import com.jslib.api.log.LogFactory;
@@ -8,6 +12,7 @@ import com.jslib.api.transaction.Transaction;
 import com.jslib.api.transaction.TransactionException;
 import com.jslib.api.transaction.TransactionManager;
 import com.jslib.api.transaction.WorkingUnit;
+import com.jslib.util.Params;
 
 /**
  * Implementation for {@link TransactionManager} interface.
@@ -27,6 +32,29 @@ public final class TransactionManagerImpl implements TransactionManager
     this.adapter = new HibernateAdapter();
   }
 
+  /**
+   * Create transaction manager for a Hibernate configuration created programmatically, instead of loaded from
+   * {@link HibernateAdapter#CONFIG_FILE}.
+   * 
+   * @param configuration complete Hibernate configuration, including mappings.
+   */
+  public TransactionManagerImpl(Configuration configuration)
+  {
+    log.trace("TransactionManagerImpl(Configuration)");
+    this.adapter = new HibernateAdapter(configuration);
+  }
+
+  /**
+   * Test constructor used to inject a Hibernate adapter configured for an alternative database.
+   * 
+   * @param adapter Hibernate adapter.
+   */
+  TransactionManagerImpl(HibernateAdapter adapter)
+  {
+    log.trace("TransactionManagerImpl(HibernateAdapter)");
+    this.adapter = adapter;
+  }
+
   /**
    * Retrieve internal Hibernate session, for testing.
    * 
@@ -37,16 +65,93 @@ public final class TransactionManagerImpl implements TransactionManager
     return adapter.getSession();
   }
 
+  /**
+   * Get transaction life cycle listener. If not explicitly set, listener is a {@link TransactionMetrics} instance
+   * collecting counters and latency histograms for all transactions created by this transaction manager.
+   * 
+   * @return transaction listener.
+   */
+  public TransactionListener getTransactionListener()
+  {
+    return adapter.getTransactionListener();
+  }
+
+  /**
+   * Replace transaction life cycle listener, e.g. with an adapter for application metrics registry. Only transactions
+   * created after this method call use the new listener.
+   * 
+   * @param transactionListener transaction listener.
+   * @throws IllegalArgumentException if transaction listener is null.
+   */
+  public void setTransactionListener(TransactionListener transactionListener)
+  {
+    Params.notNull(transactionListener, "Transaction listener");
+    adapter.setTransactionListener(transactionListener);
+  }
+
+  /**
+   * Get transaction bound to current thread.
+   * 
+   * @return current thread transaction or null if there is no transaction in progress.
+   */
+  public Transaction getTransaction()
+  {
+    return adapter.getTransaction();
+  }
+
+  /**
+   * Bind transaction to current thread so that working unit can continue on a different thread than the one that
+   * created the transaction. Returned binding restores previous thread transaction on close and is designed for
+   * try-with-resources usage:
+   * 
+   * <pre>
+   * Transaction transaction = transactionManager.getTransaction();
+   * executor.execute(() -&gt; {
+   *   try(TransactionBinding binding = transactionManager.bind(transaction)) {
+   *     // use session manager as usual
+   *   }
+   * });
+   * </pre>
+   * 
+   * Transaction is not thread safe and should not be used concurrently from multiple threads.
+   * 
+   * @param transaction transaction created by this transaction manager.
+   * @return transaction binding.
+   * @throws IllegalArgumentException if transaction was not created by this transaction manager.
+   */
+  public TransactionBinding bind(Transaction transaction)
+  {
+    if(!(transaction instanceof TransactionImpl)) {
+      throw new IllegalArgumentException("Not a Hibernate transaction.");
+    }
+    if(((TransactionImpl)transaction).getAdapter() != adapter) {
+      throw new IllegalArgumentException("Transaction not created by this transaction manager.");
+    }
+    return adapter.bindTransaction((TransactionImpl)transaction);
+  }
+
   @Override
   public Transaction createTransaction(String schema)
   {
-    return adapter.createTransaction(false);
+    return adapter.createTransaction(schema, false);
   }
 
   @Override
   public Transaction createReadOnlyTransaction(String schema)
   {
-    return adapter.createTransaction(true);
+    return adapter.createTransaction(schema, true);
+  }
+
+  /**
+   * Create a transaction using a Hibernate stateless session as resource manager, designed for bulk operations. Use
+   * {@link StatelessSessionManager} to operate on stateless transactions.
+   * 
+   * @param schema database schema, null for default schema.
+   * @return newly created stateless transaction.
+   */
+  public Transaction createStatelessTransaction(String schema)
+  {
+    return adapter.createStatelessTransaction(schema);
   }
 
   @SuppressWarnings("unchecked")
@@ -75,6 +180,61 @@ public final class TransactionManagerImpl implements TransactionManager
     return exec(null, workingUnit, args);
   }
 
+  /**
+   * Asynchronous variant of {@link #exec(String, WorkingUnit, Object...)}. Working unit is executed in its own
+   * transaction on a thread from a bounded executor sized against database connection pool; returned future is
+   * completed with working unit result or with the exception thrown by {@link #exec(String, WorkingUnit, Object...)}.
+   * <p>
+   * If executor queue is full, working unit is not executed and returned future is already completed exceptionally
+   * with {@link TransactionException}. This way caller is notified about database saturation without blocking. The same
+   * if this transaction manager was destroyed, but with a different exception message.
+   * 
+   * @param schema database schema, null for default schema,
+   * @param workingUnit working unit to execute,
+   * @param args working unit arguments.
+   * @param <S> session type.
+   * @param <T> working unit result type.
+   * @return future for working unit result.
+   */
+  public <S, T> CompletableFuture<T> execAsync(String schema, WorkingUnit<S, T> workingUnit, Object... args)
+  {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      adapter.getAsyncExecutor().execute(() -> {
+        try {
+          future.complete(exec(schema, workingUnit, args));
+        }
+        catch(Throwable t) {
+          future.completeExceptionally(t);
+        }
+      });
+    }
+    catch(RejectedExecutionException e) {
+      if(adapter.getAsyncExecutor().isShutdown()) {
+        future.completeExceptionally(new TransactionException("Transaction manager destroyed. Asynchronous transaction rejected."));
+      }
+      else {
+        future.completeExceptionally(new TransactionException("Asynchronous transactions executor saturated."));
+      }
+    }
+    return future;
+  }
+
+  /**
+   * Asynchronous variant of {@link #exec(WorkingUnit, Object...)}, executed on default schema. See
+   * {@link #execAsync(String, WorkingUnit, Object...)}.
+   * 
+   * @param workingUnit working unit to execute,
+   * @param args working unit arguments.
+   * @param <S> session type.
+   * @param <T> working unit result type.
+   * @return future for working unit result.
+   */
+  public <S, T> CompletableFuture<T> execAsync(WorkingUnit<S, T> workingUnit, Object... args)
+  {
+    return execAsync(null, workingUnit, args);
+  }
+
   @Override
   public void destroy()
   {
@@ -0,0 +1,152 @@
+package com.jslib.transaction.hibernate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default transaction listener collecting transaction metrics: commit, rollback and failure counters, active
+ * transactions gauge, maximum nesting level and latency histograms. All counters are lock free and recording does not
+ * allocate, so metrics can stay enabled in production. Latencies are recorded in nanoseconds.
+ * 
+ * @author Iulian Rotaru
+ */
+public final class TransactionMetrics implements TransactionListener
+{
+  private final LongAdder openedCount = new LongAdder();
+  private final LongAdder nestedCount = new LongAdder();
+  private final LongAdder committedCount = new LongAdder();
+  private final LongAdder rolledBackCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+
+  private final AtomicInteger activeCount = new AtomicInteger();
+  private final AtomicInteger maxActiveCount = new AtomicInteger();
+  private final AtomicInteger maxNestingLevel = new AtomicInteger();
+
+  /** Time spent opening session and beginning transaction, see {@link TransactionListener#onConnect(long)}. */
+  private final LatencyHistogram connectLatency = new LatencyHistogram();
+  /** Time from transaction creation to commit completion. */
+  private final LatencyHistogram commitLatency = new LatencyHistogram();
+  /** Time from transaction creation to rollback completion. */
+  private final LatencyHistogram rollbackLatency = new LatencyHistogram();
+  /** Time transaction was held open, from creation to close. */
+  private final LatencyHistogram openLatency = new LatencyHistogram();
+
+  @Override
+  public void onOpen()
+  {
+    openedCount.increment();
+    int active = activeCount.incrementAndGet();
+    int max = maxActiveCount.get();
+    while(active > max && !maxActiveCount.compareAndSet(max, active)) {
+      max = maxActiveCount.get();
+    }
+  }
+
+  @Override
+  public void onNest(int nestingLevel)
+  {
+    nestedCount.increment();
+    int max = maxNestingLevel.get();
+    while(nestingLevel > max && !maxNestingLevel.compareAndSet(max, nestingLevel)) {
+      max = maxNestingLevel.get();
+    }
+  }
+
+  @Override
+  public void onConnect(long duration)
+  {
+    connectLatency.record(duration);
+  }
+
+  @Override
+  public void onCommit(long duration)
+  {
+    committedCount.increment();
+    commitLatency.record(duration);
+  }
+
+  @Override
+  public void onRollback(long duration)
+  {
+    rolledBackCount.increment();
+    rollbackLatency.record(duration);
+  }
+
+  @Override
+  public void onFailure()
+  {
+    failedCount.increment();
+  }
+
+  @Override
+  public void onClose(long duration)
+  {
+    activeCount.decrementAndGet();
+    openLatency.record(duration);
+  }
+
+  public long getOpenedCount()
+  {
+    return openedCount.sum();
+  }
+
+  public long getNestedCount()
+  {
+    return nestedCount.sum();
+  }
+
+  public long getCommittedCount()
+  {
+    return committedCount.sum();
+  }
+
+  public long getRolledBackCount()
+  {
+    return rolledBackCount.sum();
+  }
+
+  public long getFailedCount()
+  {
+    return failedCount.sum();
+  }
+
+  /**
+   * Get the number of transactions currently open.
+   * 
+   * @return active transactions count.
+   */
+  public int getActiveCount()
+  {
+    return activeCount.get();
+  }
+
+  public int getMaxActiveCount()
+  {
+    return maxActiveCount.get();
+  }
+
+  public int getMaxNestingLevel()
+  {
+    return maxNestingLevel.get();
+  }
+
+  public LatencyHistogram getConnectLatency()
+  {
+    return connectLatency;
+  }
+
+  public LatencyHistogram getCommitLatency()
+  {
+    return commitLatency;
+  }
+
+  public LatencyHistogram getRollbackLatency()
+  {
+    return rollbackLatency;
+  }
+
+  public LatencyHistogram getOpenLatency()
+  {
+    return openLatency;
+  }
+}
@@ -0,0 +1,169 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.jslib.hibernate.hbm.CompactValue;
+import com.jslib.hibernate.hbm.CompactValueHbm;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CompactValueHbmTest
+{
+  @Mock
+  private ResultSet resultSet;
+  @Mock
+  private PreparedStatement statement;
+
+  private CompactValueHbm hbm;
+
+  @Before
+  public void beforeTest()
+  {
+    Properties parameters = new Properties();
+    parameters.setProperty(CompactValueHbm.VALUE_CLASS_PARAMETER, Address.class.getName());
+    hbm = new CompactValueHbm();
+    hbm.setParameterValues(parameters);
+  }
+
+  @Test
+  public void lazyDecode() throws Exception
+  {
+    Address address = new Address();
+    address.city = "Iasi";
+    address.zip = 700259;
+    CompactValue<Address> value = CompactValue.of(address);
+
+    hbm.nullSafeSet(statement, value, 1);
+    ArgumentCaptor<byte[]> bytesCaptor = ArgumentCaptor.forClass(byte[].class);
+    verify(statement).setBytes(eq(1), bytesCaptor.capture());
+
+    when(resultSet.getBytes("address")).thenReturn(bytesCaptor.getValue());
+    @SuppressWarnings("unchecked")
+    CompactValue<Address> loaded = (CompactValue<Address>)hbm.nullSafeGet(resultSet, new String[] { "address" }, null);
+
+    assertThat(loaded.isDecoded(), equalTo(false));
+    assertThat(hbm.equals(value, loaded), equalTo(true));
+    assertThat(loaded.isDecoded(), equalTo(false));
+
+    assertThat(loaded.get().city, equalTo("Iasi"));
+    assertThat(loaded.get().zip, equalTo(700259));
+    assertThat(loaded.get().street, nullValue());
+  }
+
+  @Test
+  public void dirtyCheck()
+  {
+    Address address = new Address();
+    address.city = "Iasi";
+    CompactValue<Address> original = CompactValue.of(address);
+
+    address.city = "Cluj";
+    CompactValue<Address> changed = CompactValue.of(address);
+
+    assertThat(hbm.equals(original, changed), equalTo(false));
+  }
+
+  @Test
+  public void longString() throws Exception
+  {
+    char[] chars = new char[100000];
+    Arrays.fill(chars, '\u0103');
+    Address address = new Address();
+    address.street = new String(chars);
+
+    CompactValue<Address> value = CompactValue.of(address);
+    assertThat(copy(value, Address.class).get().street, equalTo(address.street));
+  }
+
+  @Test(expected = HibernateException.class)
+  public void finalField()
+  {
+    Properties parameters = new Properties();
+    parameters.setProperty(CompactValueHbm.VALUE_CLASS_PARAMETER, FinalAddress.class.getName());
+    new CompactValueHbm().setParameterValues(parameters);
+  }
+
+  @Test(expected = HibernateException.class)
+  public void changedSchema() throws Exception
+  {
+    Address address = new Address();
+    address.city = "Iasi";
+    copy(CompactValue.of(address), RenamedAddress.class).get();
+  }
+
+  @Test(expected = HibernateException.class)
+  public void nestedSubclass() throws Exception
+  {
+    Properties parameters = new Properties();
+    parameters.setProperty(CompactValueHbm.VALUE_CLASS_PARAMETER, Customer.class.getName());
+    CompactValueHbm customerHbm = new CompactValueHbm();
+    customerHbm.setParameterValues(parameters);
+
+    Customer customer = new Customer();
+    customer.address = new GeoAddress();
+    customerHbm.nullSafeSet(statement, CompactValue.of(customer), 1);
+  }
+
+  /** Store value and load it back as given value class. */
+  @SuppressWarnings("unchecked")
+  private <T> CompactValue<T> copy(CompactValue<?> value, Class<T> valueClass) throws Exception
+  {
+    hbm.nullSafeSet(statement, value, 1);
+    ArgumentCaptor<byte[]> bytesCaptor = ArgumentCaptor.forClass(byte[].class);
+    verify(statement).setBytes(eq(1), bytesCaptor.capture());
+    when(resultSet.getBytes("value")).thenReturn(bytesCaptor.getValue());
+
+    Properties parameters = new Properties();
+    parameters.setProperty(CompactValueHbm.VALUE_CLASS_PARAMETER, valueClass.getName());
+    CompactValueHbm loader = new CompactValueHbm();
+    loader.setParameterValues(parameters);
+    return (CompactValue<T>)loader.nullSafeGet(resultSet, new String[] { "value" }, null);
+  }
+
+  private static class Address
+  {
+    String city;
+    String street;
+    int zip;
+  }
+
+  private static class RenamedAddress
+  {
+    String town;
+    String street;
+    int zip;
+  }
+
+  private static class Customer
+  {
+    Address address;
+  }
+
+  private static class GeoAddress extends Address
+  {
+    double latitude;
+  }
+
+  private static class FinalAddress
+  {
+    final String city = null;
+  }
+}
@@ -0,0 +1,81 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.jslib.hibernate.cache.EmbeddedCache;
+import com.jslib.hibernate.cache.EmbeddedCacheProvider;
+
+public class EmbeddedCacheTest
+{
+  @Test
+  public void hitAndMiss()
+  {
+    EmbeddedCache cache = new EmbeddedCache("test", 10, 0);
+    cache.put(1, "one");
+
+    assertThat(cache.get(1), equalTo("one"));
+    assertThat(cache.get(2), nullValue());
+    assertThat(cache.getHitCount(), equalTo(1L));
+    assertThat(cache.getMissCount(), equalTo(1L));
+  }
+
+  @Test
+  public void leastRecentlyUsedEviction()
+  {
+    EmbeddedCache cache = new EmbeddedCache("test", 2, 0);
+    cache.put(1, "one");
+    cache.put(2, "two");
+    cache.get(1);
+    cache.put(3, "three");
+
+    assertThat(cache.getElementCountInMemory(), equalTo(2L));
+    assertThat(cache.get(2), nullValue());
+    assertThat(cache.get(1), equalTo("one"));
+    assertThat(cache.getEvictionCount(), equalTo(1L));
+  }
+
+  @Test
+  public void expiredEntry() throws InterruptedException
+  {
+    EmbeddedCache cache = new EmbeddedCache("test", 10, 1);
+    cache.put(1, "one");
+    Thread.sleep(5);
+
+    assertThat(cache.get(1), nullValue());
+    assertThat(cache.getEvictionCount(), equalTo(1L));
+    assertThat(cache.getElementCountInMemory(), equalTo(0L));
+  }
+
+  @Test
+  public void providerConfiguration()
+  {
+    Properties properties = new Properties();
+    properties.setProperty("hibernate.cache.embedded.max_entries", "100");
+    properties.setProperty("hibernate.cache.embedded.countries.max_entries", "1");
+
+    EmbeddedCacheProvider provider = new EmbeddedCacheProvider();
+    EmbeddedCache countries = (EmbeddedCache)provider.buildCache("countries", properties);
+    countries.put("RO", "Romania");
+    countries.put("FR", "France");
+    assertThat(countries.getElementCountInMemory(), equalTo(1L));
+    assertThat(EmbeddedCacheProvider.getCache("countries"), sameInstance(countries));
+
+    // update timestamps region is never bounded
+    EmbeddedCache timestamps = (EmbeddedCache)provider.buildCache("org.hibernate.cache.UpdateTimestampsCache", properties);
+    for(int i = 0; i < 200; ++i) {
+      timestamps.put("table" + i, (long)i);
+    }
+    assertThat(timestamps.getElementCountInMemory(), equalTo(200L));
+
+    countries.destroy();
+    timestamps.destroy();
+    assertThat(EmbeddedCacheProvider.getCache("countries"), nullValue());
+  }
+}
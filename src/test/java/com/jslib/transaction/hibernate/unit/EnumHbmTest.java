@@ -0,0 +1,104 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.jslib.hibernate.hbm.CodedEnum;
+import com.jslib.hibernate.hbm.EnumHbm;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EnumHbmTest
+{
+  @Mock
+  private ResultSet resultSet;
+  @Mock
+  private PreparedStatement statement;
+
+  @Test
+  public void ordinalCodes() throws Exception
+  {
+    EnumHbm hbm = enumHbm(Color.class, null);
+    when(resultSet.getInt("color")).thenReturn(2);
+
+    assertThat(hbm.sqlTypes()[0], equalTo(Types.TINYINT));
+    assertThat(hbm.nullSafeGet(resultSet, new String[] { "color" }, null), equalTo(Color.BLUE));
+
+    hbm.nullSafeSet(statement, Color.GREEN, 1);
+    verify(statement).setByte(1, (byte)1);
+  }
+
+  @Test
+  public void explicitCodes() throws Exception
+  {
+    EnumHbm hbm = enumHbm(State.class, "smallint");
+    when(resultSet.getInt("state")).thenReturn(300);
+
+    assertThat(hbm.sqlTypes()[0], equalTo(Types.SMALLINT));
+    assertThat(hbm.nullSafeGet(resultSet, new String[] { "state" }, null), equalTo(State.CLOSED));
+
+    hbm.nullSafeSet(statement, State.ACTIVE, 1);
+    verify(statement).setShort(1, (short)20);
+  }
+
+  @Test(expected = HibernateException.class)
+  public void invalidCode() throws Exception
+  {
+    EnumHbm hbm = enumHbm(State.class, null);
+    when(resultSet.getInt("state")).thenReturn(11);
+    hbm.nullSafeGet(resultSet, new String[] { "state" }, null);
+  }
+
+  @Test(expected = HibernateException.class)
+  public void codesNotFitTinyint()
+  {
+    enumHbm(State.class, "tinyint");
+  }
+
+  private static EnumHbm enumHbm(Class<?> enumClass, String sqlType)
+  {
+    Properties parameters = new Properties();
+    parameters.setProperty(EnumHbm.ENUM_CLASS_PARAMETER, enumClass.getName());
+    if(sqlType != null) {
+      parameters.setProperty(EnumHbm.SQL_TYPE_PARAMETER, sqlType);
+    }
+    EnumHbm hbm = new EnumHbm();
+    hbm.setParameterValues(parameters);
+    return hbm;
+  }
+
+  private static enum Color
+  {
+    RED, GREEN, BLUE
+  }
+
+  private static enum State implements CodedEnum
+  {
+    CREATED(10), ACTIVE(20), CLOSED(300);
+
+    private final int code;
+
+    private State(int code)
+    {
+      this.code = code;
+    }
+
+    @Override
+    public int code()
+    {
+      return code;
+    }
+  }
+}
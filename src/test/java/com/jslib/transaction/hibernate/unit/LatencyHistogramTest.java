@@ -0,0 +1,63 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jslib.transaction.hibernate.LatencyHistogram;
+
+public class LatencyHistogramTest
+{
+  private LatencyHistogram histogram;
+
+  @Before
+  public void beforeTest()
+  {
+    histogram = new LatencyHistogram();
+  }
+
+  @Test
+  public void emptyHistogram()
+  {
+    assertThat(histogram.getCount(), equalTo(0L));
+    assertThat(histogram.getMax(), equalTo(0L));
+    assertThat(histogram.getPercentile(99), equalTo(0L));
+  }
+
+  @Test
+  public void smallValuesAreExact()
+  {
+    for(long value = 0; value < 8; ++value) {
+      histogram.record(value);
+    }
+    assertThat(histogram.getCount(), equalTo(8L));
+    assertThat(histogram.getMax(), equalTo(7L));
+    assertThat(histogram.getPercentile(50), equalTo(3L));
+    assertThat(histogram.getMean(), closeTo(3.5, 0.001));
+  }
+
+  @Test
+  public void percentileRelativeError()
+  {
+    for(long value = 1; value <= 1000000; ++value) {
+      histogram.record(value);
+    }
+    long median = histogram.getPercentile(50);
+    assertThat(median, greaterThanOrEqualTo(500000L));
+    assertThat(median, lessThanOrEqualTo(562500L));
+    assertThat(histogram.getPercentile(100), equalTo(1000000L));
+  }
+
+  @Test
+  public void negativeValueRecordedAsZero()
+  {
+    histogram.record(-1);
+    assertThat(histogram.getMax(), equalTo(0L));
+    assertThat(histogram.getPercentile(100), equalTo(0L));
+  }
+}
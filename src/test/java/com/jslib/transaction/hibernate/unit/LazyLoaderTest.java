@@ -0,0 +1,201 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.collection.PersistentCollection;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.jslib.api.transaction.TransactionContext;
+import com.jslib.transaction.hibernate.SessionManager;
+import com.jslib.transaction.hibernate.SessionManagerImpl;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LazyLoaderTest
+{
+  @Mock
+  private TransactionContext context;
+
+  @Mock
+  private Session session;
+
+  @Mock
+  private SessionFactoryImplementor sessionFactory;
+
+  @Mock
+  private ClassMetadata metadata;
+
+  @Mock
+  private Query query;
+
+  private SessionManager sm;
+
+  @Before
+  public void beforeTest()
+  {
+    when(context.getResourceManager()).thenReturn(session);
+    sm = new SessionManagerImpl(context);
+  }
+
+  @Test
+  public void list_Proxies()
+  {
+    LazyInitializer initializer1 = initializer("Customer", 1);
+    LazyInitializer initializer2 = initializer("Customer", 2);
+    givenQuery(new Order(proxy(initializer1)), new Order(proxy(initializer2)));
+    givenIdentifier("Customer", "id");
+
+    sm.HQL("from Order o").load("customer").list();
+
+    verify(session).createQuery("from Customer e where e.id in (:ids)");
+    verify(query).setParameterList("ids", Arrays.asList(1, 2));
+    verify(initializer1).initialize();
+    verify(initializer2).initialize();
+  }
+
+  @Test
+  public void list_ProxyFirstElement()
+  {
+    LazyInitializer initializer1 = initializer("Customer", 1);
+    LazyInitializer initializer2 = initializer("Customer", 2);
+    Order order = new Order(proxy(initializer1));
+    LazyInitializer orderInitializer = mock(LazyInitializer.class);
+    when(orderInitializer.getImplementation()).thenReturn(order);
+    givenQuery(proxy(orderInitializer), new Order(proxy(initializer2)));
+    givenIdentifier("Customer", "id");
+
+    sm.HQL("from Order o").load("customer").list();
+
+    // lazy field is read from actual entity instance, not from proxy subclass
+    verify(query).setParameterList("ids", Arrays.asList(1, 2));
+    verify(initializer1).initialize();
+    verify(initializer2).initialize();
+  }
+
+  @Test
+  public void list_CompositeIdentifier()
+  {
+    LazyInitializer initializer1 = mock(LazyInitializer.class);
+    when(initializer1.getEntityName()).thenReturn("Customer");
+    when(initializer1.isUninitialized()).thenReturn(true);
+    LazyInitializer initializer2 = mock(LazyInitializer.class);
+    when(initializer2.getEntityName()).thenReturn("Customer");
+    when(initializer2.isUninitialized()).thenReturn(true);
+    givenQuery(new Order(proxy(initializer1)), new Order(proxy(initializer2)));
+    givenIdentifier("Customer", null);
+
+    sm.HQL("from Order o").load("customer").list();
+
+    // no batch query since composite identifier cannot be selected by IN clause
+    verify(session, times(1)).createQuery(anyString());
+    verify(initializer1).initialize();
+    verify(initializer2).initialize();
+  }
+
+  @Test
+  public void list_Collections()
+  {
+    PersistentCollection items = mock(PersistentCollection.class);
+    Order order1 = new Order(items);
+    Order order2 = new Order(items);
+    givenQuery(order1, order2);
+    givenIdentifier("Order", "id");
+    when(session.getEntityName(order1)).thenReturn("Order");
+    when(session.getEntityName(order2)).thenReturn("Order");
+    when(session.getIdentifier(order1)).thenReturn(1);
+    when(session.getIdentifier(order2)).thenReturn(2);
+
+    sm.HQL("from Order o").load("customer").list();
+
+    verify(session).createQuery("select o from Order o left join fetch o.customer where o.id in (:ids)");
+    verify(query).setParameterList("ids", Arrays.asList(1, 2));
+    verify(items, never()).forceInitialization();
+  }
+
+  @Test
+  public void list_SingleEntity()
+  {
+    LazyInitializer initializer = mock(LazyInitializer.class);
+    givenQuery(new Order(proxy(initializer)));
+
+    List<Order> orders = sm.HQL("from Order o").load("customer").list();
+
+    assertThat(orders.size(), equalTo(1));
+    verify(session, times(1)).createQuery(anyString());
+    verify(initializer).initialize();
+  }
+
+  @Test
+  public void get()
+  {
+    LazyInitializer initializer = mock(LazyInitializer.class);
+    Order order = new Order(proxy(initializer));
+    when(session.get(Order.class, 1)).thenReturn(order);
+
+    assertThat(sm.get(Order.class, 1, "customer"), equalTo(order));
+    verify(session, never()).createQuery(anyString());
+    verify(initializer).initialize();
+  }
+
+  // --------------------------------------------------------------------------------------------
+
+  private void givenQuery(Object... entities)
+  {
+    when(session.createQuery(anyString())).thenReturn(query);
+    when(query.list()).thenReturn(Arrays.asList(entities), Collections.emptyList());
+  }
+
+  private void givenIdentifier(String entityName, String identifierName)
+  {
+    when(session.getSessionFactory()).thenReturn(sessionFactory);
+    when(sessionFactory.getClassMetadata(entityName)).thenReturn(metadata);
+    when(metadata.getIdentifierPropertyName()).thenReturn(identifierName);
+  }
+
+  private static LazyInitializer initializer(String entityName, int id)
+  {
+    LazyInitializer initializer = mock(LazyInitializer.class);
+    when(initializer.getEntityName()).thenReturn(entityName);
+    when(initializer.getIdentifier()).thenReturn(id);
+    when(initializer.isUninitialized()).thenReturn(true);
+    return initializer;
+  }
+
+  private static HibernateProxy proxy(LazyInitializer initializer)
+  {
+    HibernateProxy proxy = mock(HibernateProxy.class);
+    when(proxy.getHibernateLazyInitializer()).thenReturn(initializer);
+    return proxy;
+  }
+
+  private static class Order
+  {
+    @SuppressWarnings("unused")
+    private Object customer;
+
+    Order(Object customer)
+    {
+      this.customer = customer;
+    }
+  }
+}
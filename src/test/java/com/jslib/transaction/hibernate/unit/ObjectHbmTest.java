@@ -0,0 +1,140 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.Serializable;
+import java.net.URL;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.TimeZone;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.jslib.hibernate.hbm.ObjectHbm;
+import com.jslib.hibernate.hbm.TimeZoneHbm;
+import com.jslib.hibernate.hbm.UrlHbm;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ObjectHbmTest
+{
+  private static final String[] COLUMNS = new String[] { "value" };
+
+  @Mock
+  private ResultSet resultSet;
+  @Mock
+  private PreparedStatement statement;
+
+  @Test
+  public void mutableNotCopied()
+  {
+    ObjectHbm<TimeZone> hbm = new TimeZoneType(false);
+    TimeZone timeZone = TimeZone.getTimeZone("Europe/Bucharest");
+
+    assertThat(hbm.isMutable(), equalTo(true));
+    assertThat(hbm.deepCopy(timeZone), sameInstance(timeZone));
+    Serializable cached = hbm.disassemble(timeZone);
+    assertThat(cached, sameInstance(timeZone));
+    assertThat(hbm.assemble(cached, null), sameInstance(timeZone));
+  }
+
+  @Test
+  public void mutableCopied()
+  {
+    ObjectHbm<TimeZone> hbm = new TimeZoneType(true);
+    TimeZone timeZone = TimeZone.getTimeZone("Europe/Bucharest");
+
+    Object copy = hbm.deepCopy(timeZone);
+    assertThat(copy, not(sameInstance(timeZone)));
+    assertThat(copy, equalTo(timeZone));
+
+    // cached value is a value instance, compatible with entries stored by not copying types
+    Serializable cached = hbm.disassemble(timeZone);
+    assertThat(cached, not(sameInstance(timeZone)));
+    assertThat(cached, equalTo(timeZone));
+    Object assembled = hbm.assemble(timeZone, null);
+    assertThat(assembled, not(sameInstance(timeZone)));
+    assertThat(assembled, equalTo(timeZone));
+  }
+
+  @Test
+  public void immutableNotCopied()
+  {
+    ObjectHbm<Thread.State> hbm = new ObjectHbm<Thread.State>(Thread.State.class) {};
+    assertThat(hbm.isMutable(), equalTo(false));
+    assertThat(hbm.deepCopy(Thread.State.NEW), sameInstance(Thread.State.NEW));
+    assertThat(hbm.assemble(Thread.State.NEW, null), sameInstance(Thread.State.NEW));
+  }
+
+  @Test
+  public void timeZoneCodec() throws Exception
+  {
+    TimeZoneHbm hbm = new TimeZoneHbm();
+    when(resultSet.getString("value")).thenReturn("Europe/Bucharest");
+
+    TimeZone first = (TimeZone)hbm.nullSafeGet(resultSet, COLUMNS, null);
+    TimeZone second = (TimeZone)hbm.nullSafeGet(resultSet, COLUMNS, null);
+    assertThat(first.getID(), equalTo("Europe/Bucharest"));
+    assertThat(second, equalTo(first));
+
+    // every entity has its own instance; altering one does not change the others
+    assertThat(second, not(sameInstance(first)));
+    first.setRawOffset(0);
+    assertThat(((TimeZone)hbm.nullSafeGet(resultSet, COLUMNS, null)).getRawOffset(), equalTo(second.getRawOffset()));
+
+    hbm.nullSafeSet(statement, second, 1);
+    verify(statement).setString(1, "Europe/Bucharest");
+  }
+
+  @Test
+  public void timeZoneCodec_InvalidId() throws Exception
+  {
+    TimeZoneHbm hbm = new TimeZoneHbm();
+    when(resultSet.getString("value")).thenReturn("Invalid/Zone");
+    assertThat(((TimeZone)hbm.nullSafeGet(resultSet, COLUMNS, null)).getID(), equalTo("GMT"));
+
+    when(resultSet.getString("value")).thenReturn("GMT+02:00");
+    assertThat(((TimeZone)hbm.nullSafeGet(resultSet, COLUMNS, null)).getRawOffset(), equalTo(2 * 3600 * 1000));
+  }
+
+  @Test
+  public void urlCodec() throws Exception
+  {
+    UrlHbm hbm = new UrlHbm();
+    when(resultSet.getString("value")).thenReturn("http://localhost/index.html");
+
+    URL url = (URL)hbm.nullSafeGet(resultSet, COLUMNS, null);
+    assertThat(url, equalTo(new URL("http://localhost/index.html")));
+    assertThat(hbm.nullSafeGet(resultSet, COLUMNS, null), sameInstance(url));
+
+    hbm.nullSafeSet(statement, url, 1);
+    verify(statement).setString(1, "http://localhost/index.html");
+  }
+
+  @Test
+  public void enumCodec() throws Exception
+  {
+    ObjectHbm<Thread.State> hbm = new ObjectHbm<Thread.State>(Thread.State.class) {};
+    when(resultSet.getString("value")).thenReturn("RUNNABLE");
+    assertThat(hbm.nullSafeGet(resultSet, COLUMNS, null), sameInstance(Thread.State.RUNNABLE));
+
+    when(resultSet.getString("value")).thenReturn(null);
+    assertThat(hbm.nullSafeGet(resultSet, COLUMNS, null), nullValue());
+  }
+
+  private static class TimeZoneType extends ObjectHbm<TimeZone>
+  {
+    TimeZoneType(boolean copy)
+    {
+      super(TimeZone.class, true, copy);
+    }
+  }
+}
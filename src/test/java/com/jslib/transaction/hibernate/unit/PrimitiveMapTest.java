@@ -0,0 +1,68 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.jslib.transaction.hibernate.IntLongMap;
+import com.jslib.transaction.hibernate.LongDoubleMap;
+import com.jslib.transaction.hibernate.LongObjectMap;
+
+public class PrimitiveMapTest
+{
+  @Test
+  public void intLongMap()
+  {
+    IntLongMap map = new IntLongMap();
+    for(int i = -1000; i < 1000; ++i) {
+      map.put(i, i * 10L);
+    }
+    map.put(7, 77L);
+
+    assertThat(map.size(), equalTo(2000));
+    assertThat(map.get(0), equalTo(0L));
+    assertThat(map.containsKey(0), equalTo(true));
+    assertThat(map.get(-1000), equalTo(-10000L));
+    assertThat(map.get(7), equalTo(77L));
+    assertThat(map.get(1000, -1L), equalTo(-1L));
+    assertThat(map.containsKey(1000), equalTo(false));
+
+    AtomicLong sum = new AtomicLong();
+    map.forEach((key, value) -> sum.addAndGet(value));
+    assertThat(sum.get(), equalTo(-10000L + 77L - 70L));
+  }
+
+  @Test
+  public void longDoubleMap()
+  {
+    LongDoubleMap map = new LongDoubleMap(3);
+    map.put(Long.MAX_VALUE, 1.5);
+    map.put(Long.MIN_VALUE, 2.5);
+    map.put(1L << 40, 3.5);
+
+    assertThat(map.size(), equalTo(3));
+    assertThat(map.get(Long.MAX_VALUE), equalTo(1.5));
+    assertThat(map.get(Long.MIN_VALUE), equalTo(2.5));
+    assertThat(map.get(1L << 40), equalTo(3.5));
+    assertThat(map.get(0L), equalTo(0.0));
+    assertThat(map.isEmpty(), equalTo(false));
+  }
+
+  @Test
+  public void longObjectMap()
+  {
+    LongObjectMap<String> map = new LongObjectMap<>();
+    for(long i = 0; i < 100; ++i) {
+      map.put(i * 1024, Long.toString(i));
+    }
+
+    assertThat(map.size(), equalTo(100));
+    assertThat(map.get(0L), equalTo("0"));
+    assertThat(map.get(99L * 1024), equalTo("99"));
+    assertThat(map.get(1L), nullValue());
+  }
+}
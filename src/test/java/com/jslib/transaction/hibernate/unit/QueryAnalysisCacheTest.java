@@ -0,0 +1,135 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Properties;
+
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.TypeHelper;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.type.StandardBasicTypes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.jslib.api.transaction.TransactionContext;
+import com.jslib.transaction.hibernate.QueryAnalysisCache;
+import com.jslib.transaction.hibernate.SessionManager;
+import com.jslib.transaction.hibernate.SessionManagerImpl;
+
+@RunWith(MockitoJUnitRunner.class)
+public class QueryAnalysisCacheTest
+{
+  @Mock
+  private TransactionContext context;
+
+  @Mock
+  private Session session;
+
+  @Mock
+  private Query query;
+
+  @Mock
+  private SessionFactoryImplementor sessionFactory;
+
+  @Mock
+  private TypeHelper typeHelper;
+
+  private QueryAnalysisCache.Observer observer;
+
+  private SessionManager sm;
+
+  @Before
+  public void beforeTest()
+  {
+    Properties properties = new Properties();
+    properties.setProperty(QueryAnalysisCache.CAPACITY_PROPERTY, "8");
+    properties.setProperty("hibernate.query.in_clause_padding", "true");
+    properties.setProperty("hibernate.query.in_clause_max_size", "6");
+    when(sessionFactory.getProperties()).thenReturn(properties);
+    observer = new QueryAnalysisCache.Observer(null);
+    observer.sessionFactoryCreated(sessionFactory);
+
+    when(context.getResourceManager()).thenReturn(session);
+    when(session.getSessionFactory()).thenReturn(sessionFactory);
+    when(session.createQuery(anyString())).thenReturn(query);
+    sm = new SessionManagerImpl(context);
+  }
+
+  @After
+  public void afterTest()
+  {
+    observer.sessionFactoryClosed(sessionFactory);
+  }
+
+  @Test
+  public void resolveTypeOnce()
+  {
+    when(sessionFactory.getTypeHelper()).thenReturn(typeHelper);
+    when(typeHelper.heuristicType("java.lang.Integer")).thenReturn(StandardBasicTypes.INTEGER);
+
+    for(int i = 0; i < 3; ++i) {
+      sm.HQL("from Person p where p.age>:age").param("age", 18).list();
+    }
+
+    verify(typeHelper, times(1)).heuristicType("java.lang.Integer");
+    verify(query, times(3)).setParameter("age", 18, StandardBasicTypes.INTEGER);
+
+    QueryAnalysisCache cache = QueryAnalysisCache.getInstance(sessionFactory);
+    assertThat(cache.getMissCount(), equalTo(1L));
+    assertThat(cache.getHitCount(), equalTo(2L));
+  }
+
+  @Test
+  public void boundedSize()
+  {
+    for(int i = 0; i < 100; ++i) {
+      sm.HQL("from Person p where p.id=" + i).list();
+    }
+
+    QueryAnalysisCache cache = QueryAnalysisCache.getInstance(sessionFactory);
+    assertThat(cache.getCapacity(), equalTo(8));
+    assertThat(cache.getSize(), lessThanOrEqualTo(8));
+    assertThat(cache.getMissCount(), equalTo(100L));
+  }
+
+  @Test
+  public void inClausePadding()
+  {
+    when(sessionFactory.getTypeHelper()).thenReturn(typeHelper);
+    when(typeHelper.heuristicType("java.lang.Integer")).thenReturn(StandardBasicTypes.INTEGER);
+    sm.HQL("from Person p where p.id in (:ids)").param("ids", Arrays.asList(1, 2, 3)).list();
+    sm.HQL("from Person p where p.id in (:ids)").param("ids", Arrays.asList(1, 2, 3, 4, 5)).list();
+    sm.HQL("from Person p where p.id in (:ids)").param("ids", Arrays.asList(1, 2, 3, 4, 5, 6, 7)).list();
+
+    @SuppressWarnings("rawtypes")
+    ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+    verify(query, times(3)).setParameterList(eq("ids"), captor.capture(), eq(StandardBasicTypes.INTEGER));
+    // padded to next power of two, capped to maximum size; lists exceeding maximum size are not padded
+    assertThat(captor.getAllValues().get(0), equalTo(Arrays.asList(1, 2, 3, 3)));
+    assertThat(captor.getAllValues().get(1), equalTo(Arrays.asList(1, 2, 3, 4, 5, 5)));
+    assertThat(captor.getAllValues().get(2), equalTo(Arrays.asList(1, 2, 3, 4, 5, 6, 7)));
+  }
+
+  @Test
+  public void closedSessionFactory()
+  {
+    observer.sessionFactoryClosed(sessionFactory);
+    assertThat(QueryAnalysisCache.getInstance(sessionFactory), nullValue());
+  }
+}
@@ -0,0 +1,126 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.jslib.api.transaction.TransactionContext;
+import com.jslib.transaction.hibernate.SessionManager;
+import com.jslib.transaction.hibernate.SessionManagerImpl;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ScrollStreamTest
+{
+  @Mock
+  private TransactionContext context;
+
+  @Mock
+  private Session session;
+
+  @Mock
+  private Query query;
+
+  @Mock
+  private ScrollableResults results;
+
+  private SessionManager sm;
+
+  @Before
+  public void beforeTest()
+  {
+    when(context.getResourceManager()).thenReturn(session);
+    when(session.createQuery(anyString())).thenReturn(query);
+    when(query.scroll(ScrollMode.FORWARD_ONLY)).thenReturn(results);
+    sm = new SessionManagerImpl(context);
+  }
+
+  @Test
+  public void stream()
+  {
+    when(session.getFlushMode()).thenReturn(FlushMode.AUTO);
+    when(results.next()).thenReturn(true, true, true, true, true, false);
+    when(results.get()).thenReturn(new Object[] { 1 }, new Object[] { 2 }, new Object[] { 3 }, new Object[] { 4 }, new Object[] { 5 });
+
+    List<Integer> values;
+    try(Stream<Integer> stream = sm.HQL("select p.id from Person p").fetchSize(2).stream()) {
+      values = stream.collect(Collectors.toList());
+    }
+
+    assertThat(values, contains(1, 2, 3, 4, 5));
+    verify(query).setReadOnly(true);
+    verify(query).setFetchSize(2);
+    verify(results).close();
+
+    // flush before query execution then flush and clear every two rows
+    InOrder inOrder = inOrder(session, query);
+    inOrder.verify(session).flush();
+    inOrder.verify(query).scroll(ScrollMode.FORWARD_ONLY);
+    inOrder.verify(session).flush();
+    inOrder.verify(session).clear();
+    inOrder.verify(session).flush();
+    inOrder.verify(session).clear();
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void stream_DefaultFetchSize()
+  {
+    when(session.getFlushMode()).thenReturn(FlushMode.AUTO);
+    when(results.next()).thenReturn(true, true, true, false);
+    when(results.get()).thenReturn(new Object[] { 1 }, new Object[] { 2 }, new Object[] { 3 });
+
+    try(Stream<Integer> stream = sm.HQL("select p.id from Person p").stream()) {
+      assertThat(stream.collect(Collectors.toList()), contains(1, 2, 3));
+    }
+
+    verify(query).setFetchSize(1000);
+    verify(session, times(1)).flush();
+    verify(session, never()).clear();
+  }
+
+  @Test
+  public void stream_ManualFlushMode()
+  {
+    when(session.getFlushMode()).thenReturn(FlushMode.MANUAL);
+    when(results.next()).thenReturn(true, true, true, false);
+    when(results.get()).thenReturn(new Object[] { 1 }, new Object[] { 2 }, new Object[] { 3 });
+
+    try(Stream<Integer> stream = sm.HQL("select p.id from Person p").fetchSize(2).stream()) {
+      assertThat(stream.collect(Collectors.toList()), contains(1, 2, 3));
+    }
+
+    verify(session, never()).flush();
+    verify(session, times(2)).isDirty();
+    verify(session, times(1)).clear();
+  }
+
+  @Test(expected = HibernateException.class)
+  public void stream_ManualFlushModeDirtySession()
+  {
+    when(session.getFlushMode()).thenReturn(FlushMode.MANUAL);
+    when(session.isDirty()).thenReturn(true);
+    sm.HQL("select p.id from Person p").stream();
+  }
+}
@@ -5,29 +5,55 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.TypeHelper;
+import org.hibernate.engine.NamedQueryDefinition;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.jdbc.Work;
+import org.hibernate.transform.ResultTransformer;
+import org.hibernate.type.StandardBasicTypes;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
 import com.jslib.api.transaction.TransactionContext;
+import com.jslib.lang.BugError;
+import com.jslib.transaction.hibernate.IntLongMap;
 import com.jslib.transaction.hibernate.SessionManager;
 import com.jslib.transaction.hibernate.SessionManagerImpl;
 
@@ -37,7 +63,7 @@ public class SessionManagerTest
   @Mock
   private TransactionContext context;
 
-  @Mock
+  @Mock(extraInterfaces = SessionImplementor.class)
   private Session session;
 
   @Mock
@@ -46,6 +72,12 @@ public class SessionManagerTest
   @Mock
   private SQLQuery sqlQuery;
 
+  @Mock
+  private SessionFactory sessionFactory;
+
+  @Mock
+  private StatelessSession statelessSession;
+
   private SessionManager sm;
 
   @Before
@@ -103,6 +135,41 @@ public class SessionManagerTest
     assertThat(persons.get(1).id, equalTo(2));
   }
 
+  @Test
+  public void saveCollectionInBatches()
+  {
+    List<Person> persons = Arrays.asList(new Person(), new Person(), new Person(), new Person(), new Person());
+    sm.save(persons, 2);
+
+    for(Person person : persons) {
+      verify(session, times(1)).saveOrUpdate(person);
+    }
+    // two full batches and the last partial one
+    verify(session, times(3)).flush();
+    verify(session, times(3)).clear();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void saveCollectionInBatches_ZeroBatchSize()
+  {
+    sm.save(Arrays.asList(new Person()), 0);
+  }
+
+  @Test
+  public void insertCollection()
+  {
+    when(session.getSessionFactory()).thenReturn(sessionFactory);
+    when(sessionFactory.openStatelessSession(any())).thenReturn(statelessSession);
+
+    List<Person> persons = Arrays.asList(new Person(), new Person());
+    sm.insert(persons);
+
+    verify(statelessSession, times(1)).insert(persons.get(0));
+    verify(statelessSession, times(1)).insert(persons.get(1));
+    verify(statelessSession, times(1)).close();
+    verify(session, times(0)).saveOrUpdate(any());
+  }
+
   @Test
   public void getObjectById()
   {
@@ -145,6 +212,42 @@ public class SessionManagerTest
     assertThat(idCaptor.getValue(), equalTo(1964));
   }
 
+  @Test
+  public void deleteCollectionInChunks()
+  {
+    when(session.createQuery("delete from Person where id in(:ids)")).thenReturn(query);
+
+    List<Integer> ids = new ArrayList<>();
+    for(int i = 0; i < 2500; ++i) {
+      ids.add(i);
+    }
+    sm.delete("Person", ids);
+
+    // default IN clause maximum size is 1000
+    verify(query, times(3)).setParameterList(eq("ids"), any(Collection.class));
+    verify(query, times(3)).executeUpdate();
+  }
+
+  @Test
+  public void bulkDeleteInChunks()
+  {
+    when(session.createQuery(any(String.class))).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(10, 10, 5);
+
+    long[] ids = new long[25];
+    for(int i = 0; i < ids.length; ++i) {
+      ids[i] = i + 1;
+    }
+    List<String> progress = new ArrayList<>();
+    long rows = sm.bulkDelete("Person", ids).chunkSize(10).progress((completed, count, deleted) -> progress.add(completed + "/" + count + ":" + deleted)).execute();
+
+    assertThat(rows, equalTo(25L));
+    assertThat(progress, equalTo(Arrays.asList("1/3:10", "2/3:20", "3/3:25")));
+    verify(session, times(2)).createQuery("delete from Person where id in(?,?,?,?,?,?,?,?,?,?)");
+    verify(session, times(1)).createQuery("delete from Person where id in(?,?,?,?,?)");
+    verify(query, times(25)).setLong(anyInt(), anyLong());
+  }
+
   @Test
   public void hqlQuery()
   {
@@ -165,6 +268,115 @@ public class SessionManagerTest
     verify(query, times(0)).setParameter(any(String.class), any(Object.class));
   }
 
+  @Test
+  public void hqlKeysetPage()
+  {
+    when(session.createQuery("from Person p where (p.age>?) and p.id > :keysetValue order by p.id")).thenReturn(query);
+
+    sm.HQL("from Person p where p.age>?", 18).after("p.id", 1964).limit(10).list();
+
+    verify(query).setParameter(0, 18);
+    verify(query).setParameter("keysetValue", 1964);
+    verify(query).setMaxResults(10);
+  }
+
+  @Test
+  public void hqlKeysetFirstPage()
+  {
+    when(session.createQuery("from Person p order by p.id")).thenReturn(query);
+
+    sm.HQL("from Person p").after("p.id", null).limit(10).list();
+
+    verify(query, times(0)).setParameter(any(String.class), any(Object.class));
+    verify(query).setMaxResults(10);
+  }
+
+  @Test
+  public void hqlKeysetPages()
+  {
+    Query firstPage = mock(Query.class);
+    when(session.createQuery("select p.id from Person p order by p.id")).thenReturn(firstPage);
+    when(firstPage.list()).thenReturn(Arrays.asList(1, 2));
+    when(session.createQuery("select p.id from Person p where p.id > :keysetValue order by p.id")).thenReturn(query);
+    when(query.list()).thenReturn(Arrays.asList(3));
+    when(session.getSessionFactory()).thenReturn(sessionFactory);
+    when(session.getFlushMode()).thenReturn(FlushMode.AUTO);
+    org.hibernate.Transaction transaction = mock(org.hibernate.Transaction.class);
+    when(transaction.isActive()).thenReturn(true);
+    when(session.getTransaction()).thenReturn(transaction);
+
+    Iterator<List<Integer>> pages = sm.HQL("select p.id from Person p").pages("p.id", 2);
+
+    assertThat(pages.next(), equalTo(Arrays.asList(1, 2)));
+    assertThat(pages.next(), equalTo(Arrays.asList(3)));
+    assertThat(pages.hasNext(), equalTo(false));
+    verify(query).setParameter("keysetValue", 2);
+
+    // session is flushed before clear so that pending changes are not lost
+    InOrder order = inOrder(session);
+    order.verify(session).flush();
+    order.verify(session).clear();
+  }
+
+  @Test
+  public void hqlKeysetPages_ReadOnly()
+  {
+    Query firstPage = mock(Query.class);
+    when(session.createQuery("select p.id from Person p order by p.id")).thenReturn(firstPage);
+    when(firstPage.list()).thenReturn(Arrays.asList(1, 2));
+    when(session.createQuery("select p.id from Person p where p.id > :keysetValue order by p.id")).thenReturn(query);
+    when(query.list()).thenReturn(Arrays.asList(3, 4), Arrays.asList(5));
+    when(session.getSessionFactory()).thenReturn(sessionFactory);
+    when(session.getFlushMode()).thenReturn(FlushMode.AUTO);
+    // read-only transaction has no active Hibernate transaction
+    when(session.getTransaction()).thenReturn(mock(org.hibernate.Transaction.class));
+    when(session.isDirty()).thenReturn(false, true);
+
+    Iterator<List<Integer>> pages = sm.HQL("select p.id from Person p").pages("p.id", 2);
+    while(pages.hasNext()) {
+      pages.next();
+    }
+
+    // never flush outside transaction; session is cleared only if it has no pending changes
+    verify(session, never()).flush();
+    verify(session, times(2)).isDirty();
+    verify(session, times(1)).clear();
+  }
+
+  @Test(expected = HibernateException.class)
+  public void hqlKeysetPages_NullSortKey()
+  {
+    when(session.createQuery("select p.age from Person p order by p.age")).thenReturn(query);
+    when(query.list()).thenReturn(Arrays.asList(18, null));
+
+    sm.HQL("select p.age from Person p").pages("p.age", 2).next();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void hqlKeysetPages_NestedSortKey()
+  {
+    sm.HQL("from Person p").pages("p.team.id", 2);
+  }
+
+  @Test
+  public void hqlListDto()
+  {
+    when(session.createQuery("select p.id as id from Person p")).thenReturn(query);
+    ArgumentCaptor<ResultTransformer> transformerCaptor = ArgumentCaptor.forClass(ResultTransformer.class);
+    when(query.setResultTransformer(transformerCaptor.capture())).thenReturn(query);
+    when(query.list()).thenAnswer(invocation -> {
+      String[] aliases = new String[] { "id" };
+      ResultTransformer transformer = transformerCaptor.getValue();
+      return Arrays.asList(transformer.transformTuple(new Object[] { 1964 }, aliases), transformer.transformTuple(new Object[] { 1965 }, aliases));
+    });
+
+    List<Person> persons = sm.HQL("select p.id as id from Person p").list(Person.class);
+
+    assertThat(persons.size(), equalTo(2));
+    assertThat(persons.get(0).id, equalTo(1964));
+    assertThat(persons.get(1).id, equalTo(1965));
+  }
+
   @Test
   public void sqlQuery()
   {
@@ -185,6 +397,108 @@ public class SessionManagerTest
     verify(sqlQuery, times(0)).setParameter(any(String.class), any(Object.class));
   }
 
+  @Test
+  public void namedHqlQuery()
+  {
+    NamedQueryDefinition definition = mock(NamedQueryDefinition.class);
+    when(definition.getQueryString()).thenReturn("select p from Person p where p.id=?");
+    SessionFactoryImplementor factory = mock(SessionFactoryImplementor.class);
+    when(factory.getNamedQuery("person.byId")).thenReturn(definition);
+    when(session.getSessionFactory()).thenReturn(factory);
+
+    ArgumentCaptor<String> queryCaptor = ArgumentCaptor.forClass(String.class);
+    when(session.createQuery(queryCaptor.capture())).thenReturn(query);
+    when(query.setParameter(0, 1964)).thenReturn(query);
+
+    sm.namedHQL("person.byId", 1964).object();
+
+    assertThat(queryCaptor.getValue(), equalTo("select p from Person p where p.id=?"));
+  }
+
+  @Test(expected = BugError.class)
+  public void namedHqlQuery_Missing()
+  {
+    SessionFactoryImplementor factory = mock(SessionFactoryImplementor.class);
+    when(session.getSessionFactory()).thenReturn(factory);
+    sm.namedHQL("person.byName", "John");
+  }
+
+  @Test
+  public void sqlIntArray() throws Exception
+  {
+    ResultSet resultSet = mock(ResultSet.class);
+    when(resultSet.next()).thenReturn(true, true, true, false);
+    when(resultSet.getInt(1)).thenReturn(10, 20, 30);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(statement.executeQuery()).thenReturn(resultSet);
+    Connection connection = mock(Connection.class);
+    when(connection.prepareStatement("SELECT age FROM person WHERE age>?")).thenReturn(statement);
+
+    jdbcConnection(connection);
+
+    int[] ages = sm.SQL("SELECT age FROM person WHERE age>?", 5).intArray();
+
+    assertThat(ages.length, equalTo(3));
+    assertThat(ages[2], equalTo(30));
+    // parameter bound with Hibernate type resolved from value class
+    verify(statement).setInt(1, 5);
+    verify(resultSet).close();
+    verify(statement).close();
+  }
+
+  @Test
+  public void sqlIntToLongMap() throws Exception
+  {
+    ResultSet resultSet = mock(ResultSet.class);
+    when(resultSet.next()).thenReturn(true, true, false);
+    when(resultSet.getInt(1)).thenReturn(1, 2);
+    when(resultSet.getLong(2)).thenReturn(10L, 0L);
+    // second row value is SQL NULL
+    when(resultSet.wasNull()).thenReturn(false, false, false, true);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(statement.executeQuery()).thenReturn(resultSet);
+    Connection connection = mock(Connection.class);
+    when(connection.prepareStatement("SELECT person_id,MAX(score) FROM ticket GROUP BY person_id")).thenReturn(statement);
+    jdbcConnection(connection);
+
+    IntLongMap map = sm.SQL("SELECT person_id,MAX(score) FROM ticket GROUP BY person_id").intToLongMap();
+    assertThat(map.size(), equalTo(1));
+    assertThat(map.get(1), equalTo(10L));
+    assertThat(map.get(2, -1L), equalTo(-1L));
+  }
+
+  @Test(expected = HibernateException.class)
+  public void sqlIntToLongMap_NullKey() throws Exception
+  {
+    ResultSet resultSet = mock(ResultSet.class);
+    when(resultSet.next()).thenReturn(true, false);
+    when(resultSet.wasNull()).thenReturn(true);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(statement.executeQuery()).thenReturn(resultSet);
+    Connection connection = mock(Connection.class);
+    when(connection.prepareStatement("SELECT person_id,COUNT(*) FROM ticket GROUP BY person_id")).thenReturn(statement);
+    jdbcConnection(connection);
+
+    sm.SQL("SELECT person_id,COUNT(*) FROM ticket GROUP BY person_id").intToLongMap();
+  }
+
+  /** Execute session work on given JDBC connection, with session factory resolving integer type. */
+  private void jdbcConnection(Connection connection)
+  {
+    SessionFactoryImplementor factory = mock(SessionFactoryImplementor.class);
+    TypeHelper typeHelper = mock(TypeHelper.class);
+    lenient().when(factory.getTypeHelper()).thenReturn(typeHelper);
+    lenient().when(typeHelper.heuristicType("java.lang.Integer")).thenReturn(StandardBasicTypes.INTEGER);
+    when(((SessionImplementor)session).getFactory()).thenReturn(factory);
+
+    when(session.getFlushMode()).thenReturn(FlushMode.MANUAL);
+    doAnswer(invocation -> {
+      Work work = invocation.getArgument(0);
+      work.execute(connection);
+      return null;
+    }).when(session).doWork(any(Work.class));
+  }
+
   @Test
   public void hibernateSessionGetter()
   {
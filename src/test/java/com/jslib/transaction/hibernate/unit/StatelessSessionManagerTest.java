@@ -0,0 +1,77 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.jslib.api.transaction.TransactionContext;
+import com.jslib.lang.BugError;
+import com.jslib.transaction.hibernate.StatelessSessionManager;
+import com.jslib.transaction.hibernate.StatelessSessionManagerImpl;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StatelessSessionManagerTest
+{
+  @Mock
+  private TransactionContext context;
+
+  @Mock
+  private StatelessSession session;
+
+  @Mock
+  private Query query;
+
+  private StatelessSessionManager sm;
+
+  @Before
+  public void beforeTest() throws Exception
+  {
+    sm = new StatelessSessionManagerImpl(context);
+  }
+
+  @Test
+  public void insertCollection()
+  {
+    when(context.getResourceManager()).thenReturn(session);
+
+    List<Object> objects = Arrays.asList(new Object(), new Object());
+    sm.insert(objects);
+
+    verify(session, times(1)).insert(objects.get(0));
+    verify(session, times(1)).insert(objects.get(1));
+  }
+
+  @Test
+  public void query()
+  {
+    when(context.getResourceManager()).thenReturn(session);
+    when(session.createQuery("from Person where id=?")).thenReturn(query);
+
+    Query q = sm.query("from Person where id=?", 1964);
+
+    assertThat(q, equalTo(query));
+    verify(query, times(1)).setParameter(eq(0), eq(1964));
+  }
+
+  @Test(expected = BugError.class)
+  public void regularTransaction()
+  {
+    when(context.getResourceManager()).thenReturn(org.mockito.Mockito.mock(Session.class));
+    sm.getSession();
+  }
+}
@@ -0,0 +1,564 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.HibernateException;
+import org.hibernate.StatelessSession;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.classic.Session;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.jdbc.Work;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.jslib.api.transaction.Transaction;
+import com.jslib.api.transaction.TransactionException;
+import com.jslib.api.transaction.WorkingUnit;
+import com.jslib.transaction.hibernate.TransactionBinding;
+import com.jslib.transaction.hibernate.TransactionListener;
+import com.jslib.transaction.hibernate.TransactionManagerImpl;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TransactionManagerTest
+{
+  /** Timeout for background tasks, e.g. replica health check, milliseconds. */
+  private static final long TIMEOUT = 5000;
+
+  @Mock
+  private Configuration configuration;
+
+  @Mock
+  private SessionFactoryImplementor primary;
+
+  @Mock
+  private Session primarySession;
+
+  @Mock
+  private SessionFactoryImplementor replica;
+
+  @Mock
+  private Session replicaSession;
+
+  @Mock
+  private ConnectionProvider replicaConnectionProvider;
+
+  @Mock
+  private Connection replicaConnection;
+
+  private final Properties properties = new Properties();
+
+  /** Tenants session factories and sessions, by schema. Primary session factory has null schema. */
+  private final Map<String, SessionFactoryImplementor> tenantFactories = new HashMap<>();
+  private final Map<String, Session> tenantSessions = new HashMap<>();
+
+  private TransactionManagerImpl transactionManager;
+
+  @Before
+  public void beforeTest()
+  {
+    lenient().when(configuration.getProperty(anyString())).thenAnswer(invocation -> properties.getProperty(invocation.getArgument(0)));
+    lenient().when(configuration.getProperties()).thenReturn(properties);
+    lenient().when(primary.openSession()).thenReturn(primarySession);
+  }
+
+  @After
+  public void afterTest()
+  {
+    if(transactionManager != null) {
+      transactionManager.destroy();
+    }
+  }
+
+  @Test
+  public void getTransaction()
+  {
+    transactionManager = primaryTransactionManager();
+    assertThat(transactionManager.getTransaction(), nullValue());
+
+    Transaction transaction = transactionManager.createReadOnlyTransaction(null);
+    assertThat(transactionManager.getTransaction(), sameInstance(transaction));
+    transaction.close();
+    assertThat(transactionManager.getTransaction(), nullValue());
+  }
+
+  @Test
+  public void statelessTransaction_CommitFailure()
+  {
+    transactionManager = primaryTransactionManager();
+    StatelessSession statelessSession = mock(StatelessSession.class);
+    org.hibernate.Transaction hibernateTransaction = mock(org.hibernate.Transaction.class);
+    when(primary.openStatelessSession()).thenReturn(statelessSession);
+    when(statelessSession.getTransaction()).thenReturn(hibernateTransaction);
+    doThrow(new HibernateException("commit")).when(hibernateTransaction).commit();
+
+    Transaction transaction = transactionManager.createStatelessTransaction(null);
+    transaction.getResourceManager();
+    try {
+      transaction.commit();
+      fail("Commit failure not propagated.");
+    }
+    catch(TransactionException expected) {}
+    // rollback from usual catch block is ignored on a transaction closed by failed commit
+    transaction.rollback();
+
+    verify(hibernateTransaction, never()).rollback();
+    verify(statelessSession, times(1)).close();
+  }
+
+  @Test
+  public void transactionListener_CommitFailure()
+  {
+    transactionManager = primaryTransactionManager();
+    TransactionListener listener = mock(TransactionListener.class);
+    transactionManager.setTransactionListener(listener);
+    org.hibernate.Transaction hibernateTransaction = mock(org.hibernate.Transaction.class);
+    when(primarySession.getTransaction()).thenReturn(hibernateTransaction);
+    doThrow(new HibernateException("commit")).when(hibernateTransaction).commit();
+
+    Transaction transaction = transactionManager.createTransaction(null);
+    try {
+      transaction.commit();
+      fail("Commit failure not propagated.");
+    }
+    catch(TransactionException expected) {}
+    transaction.rollback();
+
+    // failed transaction is counted once, as failure, not also as rollback
+    verify(listener).onOpen();
+    verify(listener).onConnect(anyLong());
+    InOrder inOrder = inOrder(listener);
+    inOrder.verify(listener).onFailure();
+    inOrder.verify(listener).onClose(anyLong());
+    verifyNoMoreInteractions(listener);
+  }
+
+  @Test
+  public void lazyTransaction()
+  {
+    properties.setProperty("hibernate.transaction.lazy", "true");
+    transactionManager = primaryTransactionManager();
+    org.hibernate.Transaction hibernateTransaction = mock(org.hibernate.Transaction.class);
+    when(primarySession.getTransaction()).thenReturn(hibernateTransaction);
+
+    Transaction transaction = transactionManager.createTransaction(null);
+    // session is opened and transaction started only on first resource manager access
+    verify(primary, never()).openSession();
+    assertThat(transaction.getResourceManager(), equalTo(primarySession));
+    assertThat(transaction.getResourceManager(), equalTo(primarySession));
+    verify(primary, times(1)).openSession();
+    verify(hibernateTransaction).begin();
+
+    transaction.commit();
+    verify(hibernateTransaction).commit();
+    verify(primarySession).close();
+  }
+
+  @Test
+  public void lazyTransaction_Untouched()
+  {
+    properties.setProperty("hibernate.transaction.lazy", "true");
+    transactionManager = primaryTransactionManager();
+
+    Transaction transaction = transactionManager.createTransaction(null);
+    assertThat(transactionManager.getTransaction(), sameInstance(transaction));
+    transaction.commit();
+    transaction.close();
+
+    verify(primary, never()).openSession();
+    assertThat(transactionManager.getTransaction(), nullValue());
+  }
+
+  @Test
+  public void bind() throws Exception
+  {
+    transactionManager = primaryTransactionManager();
+    Transaction transaction = transactionManager.createReadOnlyTransaction(null);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.submit(() -> {
+      assertThat(transactionManager.getTransaction(), nullValue());
+      TransactionBinding binding = transactionManager.bind(transaction);
+      try {
+        assertThat(transactionManager.getTransaction(), sameInstance(transaction));
+        assertThat(transaction.getResourceManager(), equalTo(primarySession));
+      }
+      finally {
+        binding.close();
+      }
+      // binding restores thread previous transaction
+      assertThat(transactionManager.getTransaction(), nullValue());
+    }).get(TIMEOUT, TimeUnit.MILLISECONDS);
+    executor.shutdown();
+
+    assertThat(transactionManager.getTransaction(), sameInstance(transaction));
+    transaction.close();
+    verify(primarySession).close();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void bind_NotHibernateTransaction()
+  {
+    transactionManager = primaryTransactionManager();
+    transactionManager.bind(mock(Transaction.class));
+  }
+
+  @Test
+  public void bind_OtherTransactionManager()
+  {
+    transactionManager = primaryTransactionManager();
+    TransactionManagerImpl otherTransactionManager = new TransactionManagerImpl(configuration);
+    Transaction transaction = otherTransactionManager.createReadOnlyTransaction(null);
+    try {
+      transactionManager.bind(transaction);
+      fail("Transaction from other transaction manager bound.");
+    }
+    catch(IllegalArgumentException expected) {}
+    finally {
+      transaction.close();
+      otherTransactionManager.destroy();
+    }
+  }
+
+  @Test
+  public void execAsync_Saturated() throws Exception
+  {
+    properties.setProperty("hibernate.async.pool_size", "1");
+    properties.setProperty("hibernate.async.queue_size", "1");
+    transactionManager = primaryTransactionManager();
+    when(primarySession.getTransaction()).thenReturn(mock(org.hibernate.Transaction.class));
+
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Integer> running = transactionManager.execAsync(blockingWorkingUnit(started, release));
+    assertThat(started.await(TIMEOUT, TimeUnit.MILLISECONDS), equalTo(true));
+    CompletableFuture<Integer> queued = transactionManager.execAsync(blockingWorkingUnit(new CountDownLatch(1), release));
+
+    // one working unit running and one queued; next one is rejected without blocking caller
+    CompletableFuture<Integer> rejected = transactionManager.execAsync(blockingWorkingUnit(new CountDownLatch(1), release));
+    assertThat(rejected.isCompletedExceptionally(), equalTo(true));
+    assertThat(asyncException(rejected).getMessage(), equalTo("Asynchronous transactions executor saturated."));
+
+    release.countDown();
+    assertThat(running.get(TIMEOUT, TimeUnit.MILLISECONDS), equalTo(1));
+    assertThat(queued.get(TIMEOUT, TimeUnit.MILLISECONDS), equalTo(1));
+  }
+
+  @Test
+  public void execAsync_Destroyed() throws Exception
+  {
+    transactionManager = primaryTransactionManager();
+    when(primarySession.getTransaction()).thenReturn(mock(org.hibernate.Transaction.class));
+
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Integer> running = transactionManager.execAsync(blockingWorkingUnit(started, release));
+    assertThat(started.await(TIMEOUT, TimeUnit.MILLISECONDS), equalTo(true));
+
+    TransactionManagerImpl destroyedTransactionManager = transactionManager;
+    transactionManager = null;
+    Thread destroy = new Thread(destroyedTransactionManager::destroy);
+    destroy.start();
+
+    // session factory is not closed while asynchronous transaction is running
+    destroy.join(100);
+    verify(primary, never()).close();
+    CompletableFuture<Integer> rejected = destroyedTransactionManager.execAsync(blockingWorkingUnit(new CountDownLatch(1), release));
+    assertThat(asyncException(rejected).getMessage(), equalTo("Transaction manager destroyed. Asynchronous transaction rejected."));
+
+    release.countDown();
+    assertThat(running.get(TIMEOUT, TimeUnit.MILLISECONDS), equalTo(1));
+    destroy.join(TIMEOUT);
+    verify(primary).close();
+  }
+
+  @Test
+  public void readOnlyTransaction_Replica() throws Exception
+  {
+    transactionManager = replicaTransactionManager(true);
+    Transaction transaction = awaitReplicaTransaction();
+
+    assertThat(transaction.getResourceManager(), equalTo(replicaSession));
+    verify(replicaSession).doWork(any(Work.class));
+    transaction.close();
+    verify(replicaSession).close();
+  }
+
+  @Test
+  public void replicaSessionFactory_NoSchemaExport()
+  {
+    properties.setProperty("hibernate.hbm2ddl.auto", "create");
+    properties.setProperty("hibernate.replicas.urls", "jdbc:mysql://replica:3306/");
+    lenient().when(configuration.setProperty(anyString(), anyString())).thenAnswer(invocation -> {
+      properties.setProperty(invocation.getArgument(0), invocation.getArgument(1));
+      return configuration;
+    });
+    // configuration properties in effect for every session factory build, primary first
+    List<Properties> buildProperties = new ArrayList<>();
+    when(configuration.buildSessionFactory()).thenAnswer(invocation -> {
+      buildProperties.add((Properties)properties.clone());
+      return buildProperties.size() == 1 ? primary : replica;
+    });
+    transactionManager = new TransactionManagerImpl(configuration);
+
+    assertThat(buildProperties.size(), equalTo(2));
+    assertThat(buildProperties.get(0).getProperty("hibernate.hbm2ddl.auto"), equalTo("create"));
+    assertThat(buildProperties.get(1).getProperty("hibernate.hbm2ddl.auto"), nullValue());
+    assertThat(buildProperties.get(1).getProperty("hibernate.query.startup_check"), equalTo("false"));
+    assertThat(buildProperties.get(1).getProperty("hibernate.connection.url"), equalTo("jdbc:mysql://replica:3306/"));
+    // replica caches would not be invalidated by primary writes
+    assertThat(buildProperties.get(1).getProperty("hibernate.cache.use_second_level_cache"), equalTo("false"));
+    assertThat(buildProperties.get(1).getProperty("hibernate.cache.use_query_cache"), equalTo("false"));
+    // shared configuration is restored after replica build
+    assertThat(properties.getProperty("hibernate.hbm2ddl.auto"), equalTo("create"));
+  }
+
+  @Test
+  public void readOnlyTransaction_NoHealthyReplica() throws Exception
+  {
+    transactionManager = replicaTransactionManager(false);
+    verify(replicaConnection, timeout(TIMEOUT)).isValid(anyInt());
+
+    Transaction transaction = transactionManager.createReadOnlyTransaction(null);
+    assertThat(transaction.getResourceManager(), equalTo(primarySession));
+    transaction.close();
+    verify(replica, never()).openSession();
+  }
+
+  @Test
+  public void readOnlyTransaction_ReplicaFallback() throws Exception
+  {
+    transactionManager = replicaTransactionManager(true);
+    awaitReplicaTransaction().close();
+
+    // replica becomes unreachable after health check
+    doThrow(new HibernateException("Connection refused.")).when(replicaSession).doWork(any(Work.class));
+    Transaction transaction = transactionManager.createReadOnlyTransaction(null);
+    assertThat(transaction.getResourceManager(), equalTo(primarySession));
+    transaction.close();
+
+    // failed replica is ejected from selection until next health check
+    transaction = transactionManager.createReadOnlyTransaction(null);
+    assertThat(transaction.getResourceManager(), equalTo(primarySession));
+    transaction.close();
+  }
+
+  @Test
+  public void readOnlyTransaction_LazyReplicaFallback() throws Exception
+  {
+    properties.setProperty("hibernate.transaction.lazy", "true");
+    transactionManager = replicaTransactionManager(true);
+    awaitReplicaTransaction().close();
+
+    doThrow(new HibernateException("Connection refused.")).when(replicaSession).doWork(any(Work.class));
+    Transaction transaction = transactionManager.createReadOnlyTransaction(null);
+    assertThat(transaction.getResourceManager(), equalTo(primarySession));
+    transaction.close();
+  }
+
+  @Test
+  public void tenantTransaction()
+  {
+    transactionManager = tenantTransactionManager("alpha");
+
+    Transaction transaction = transactionManager.createReadOnlyTransaction("alpha");
+    assertThat(transaction.getResourceManager(), equalTo(tenantSessions.get("alpha")));
+    transaction.close();
+    transaction = transactionManager.createReadOnlyTransaction("alpha");
+    assertThat(transaction.getResourceManager(), equalTo(tenantSessions.get("alpha")));
+    transaction.close();
+
+    // primary and alpha tenant session factories, built from shared configuration with default schema restored
+    verify(configuration, times(2)).buildSessionFactory();
+    assertThat(properties.getProperty("hibernate.default_schema"), nullValue());
+    assertThat(properties.getProperty("hibernate.query.startup_check"), nullValue());
+  }
+
+  @Test
+  public void tenantTransaction_Eviction() throws Exception
+  {
+    properties.setProperty("hibernate.tenants.max_size", "1");
+    transactionManager = tenantTransactionManager("alpha", "beta");
+
+    Transaction alpha = transactionManager.createReadOnlyTransaction("alpha");
+    // a thread has a single transaction; open beta transaction on another thread
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Transaction beta = executor.submit(() -> transactionManager.createReadOnlyTransaction("beta")).get();
+    executor.shutdown();
+    // tenants with active transactions are not evicted
+    verify(tenantFactories.get("alpha"), never()).close();
+
+    alpha.close();
+    verify(tenantFactories.get("alpha")).close();
+    beta.close();
+    verify(tenantFactories.get("beta"), never()).close();
+  }
+
+  @Test
+  public void tenantTransaction_PoolBudget() throws Exception
+  {
+    properties.setProperty("hibernate.tenants.pool_budget", "1");
+    properties.setProperty("hibernate.tenants.pool_timeout", "0");
+    transactionManager = tenantTransactionManager("alpha", "beta");
+
+    Transaction alpha = transactionManager.createReadOnlyTransaction("alpha");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(() -> transactionManager.createReadOnlyTransaction("beta")).get();
+      fail("Pool budget exceeded.");
+    }
+    catch(ExecutionException expected) {
+      assertThat(expected.getCause(), instanceOf(TransactionException.class));
+    }
+    executor.shutdown();
+
+    alpha.close();
+    transactionManager.createReadOnlyTransaction("beta").close();
+  }
+
+  @Test
+  public void tenantTransaction_ConcurrentBuild() throws Exception
+  {
+    transactionManager = tenantTransactionManager("alpha", "beta");
+    transactionManager.createReadOnlyTransaction("alpha").close();
+
+    CountDownLatch buildStarted = new CountDownLatch(1);
+    CountDownLatch buildRelease = new CountDownLatch(1);
+    SessionFactoryImplementor beta = tenantFactories.get("beta");
+    tenantFactories.put("beta", null);
+    when(configuration.buildSessionFactory()).thenAnswer(invocation -> {
+      buildStarted.countDown();
+      buildRelease.await();
+      return beta;
+    });
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<?> future = executor.submit(() -> transactionManager.createReadOnlyTransaction("beta").close());
+    assertThat(buildStarted.await(TIMEOUT, TimeUnit.MILLISECONDS), equalTo(true));
+
+    // beta session factory build does not block transactions on already built tenants
+    Transaction alpha = transactionManager.createReadOnlyTransaction("alpha");
+    assertThat(alpha.getResourceManager(), equalTo(tenantSessions.get("alpha")));
+    alpha.close();
+
+    buildRelease.countDown();
+    future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    executor.shutdown();
+  }
+
+  /** Working unit signaling its start and blocking until released. */
+  private static WorkingUnit<Session, Integer> blockingWorkingUnit(CountDownLatch started, CountDownLatch release)
+  {
+    return (session, args) -> {
+      started.countDown();
+      release.await();
+      return 1;
+    };
+  }
+
+  /** Get the exception an asynchronous transaction future was completed with. */
+  private static Throwable asyncException(CompletableFuture<?> future) throws Exception
+  {
+    try {
+      future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+    catch(ExecutionException e) {
+      return e.getCause();
+    }
+    fail("Asynchronous transaction not rejected.");
+    return null;
+  }
+
+  /** Create transaction manager with primary database only. */
+  private TransactionManagerImpl primaryTransactionManager()
+  {
+    when(configuration.buildSessionFactory()).thenReturn(primary);
+    return new TransactionManagerImpl(configuration);
+  }
+
+  /** Create transaction manager with session factories for given tenants schemas. */
+  private TransactionManagerImpl tenantTransactionManager(String... schemas)
+  {
+    lenient().when(configuration.setProperty(anyString(), anyString())).thenAnswer(invocation -> {
+      properties.setProperty(invocation.getArgument(0), invocation.getArgument(1));
+      return configuration;
+    });
+    tenantFactories.put(null, primary);
+    for(String schema : schemas) {
+      SessionFactoryImplementor sessionFactory = mock(SessionFactoryImplementor.class);
+      Session session = mock(Session.class);
+      lenient().when(sessionFactory.openSession()).thenReturn(session);
+      tenantFactories.put(schema, sessionFactory);
+      tenantSessions.put(schema, session);
+    }
+    when(configuration.buildSessionFactory()).thenAnswer(invocation -> tenantFactories.get(properties.getProperty("hibernate.default_schema")));
+    return new TransactionManagerImpl(configuration);
+  }
+
+  /** Create transaction manager with primary database and a read replica with given health. */
+  private TransactionManagerImpl replicaTransactionManager(boolean healthy) throws Exception
+  {
+    properties.setProperty("hibernate.replicas.urls", "jdbc:mysql://replica:3306/");
+    when(configuration.buildSessionFactory()).thenReturn(primary, replica);
+    lenient().when(replica.getConnectionProvider()).thenReturn(replicaConnectionProvider);
+    lenient().when(replicaConnectionProvider.getConnection()).thenReturn(replicaConnection);
+    lenient().when(replicaConnection.isValid(anyInt())).thenReturn(healthy);
+    lenient().when(replica.openSession()).thenReturn(replicaSession);
+    return new TransactionManagerImpl(configuration);
+  }
+
+  /** Wait for replica first health check and return a read-only transaction executed on replica. */
+  private Transaction awaitReplicaTransaction() throws Exception
+  {
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    for(;;) {
+      Transaction transaction = transactionManager.createReadOnlyTransaction(null);
+      if(transaction.getResourceManager() == replicaSession) {
+        return transaction;
+      }
+      transaction.close();
+      if(System.currentTimeMillis() > deadline) {
+        throw new AssertionError("Read replica not healthy.");
+      }
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.jslib.transaction.hibernate.unit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.jslib.hibernate.hbm.TimeOrderedUuidGenerator;
+import com.jslib.hibernate.hbm.UuidHbm;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UuidHbmTest
+{
+  private static final UUID UUID_VALUE = UUID.fromString("01234567-89ab-cdef-fedc-ba9876543210");
+  private static final byte[] UUID_BYTES = new byte[] { 0x01, 0x23, 0x45, 0x67, (byte)0x89, (byte)0xab, (byte)0xcd, (byte)0xef, (byte)0xfe, (byte)0xdc, (byte)0xba, (byte)0x98, 0x76, 0x54, 0x32, 0x10 };
+
+  @Mock
+  private ResultSet resultSet;
+  @Mock
+  private PreparedStatement statement;
+
+  @Test
+  public void bytesConversion()
+  {
+    assertThat(UuidHbm.toBytes(UUID_VALUE), equalTo(UUID_BYTES));
+    assertThat(UuidHbm.fromBytes(UUID_BYTES), equalTo(UUID_VALUE));
+  }
+
+  @Test
+  public void binaryStorage() throws Exception
+  {
+    UuidHbm hbm = uuidHbm("binary");
+    when(resultSet.getBytes("id")).thenReturn(UUID_BYTES);
+
+    assertThat(hbm.sqlTypes()[0], equalTo(Types.BINARY));
+    assertThat(hbm.nullSafeGet(resultSet, new String[] { "id" }, null), equalTo(UUID_VALUE));
+
+    hbm.nullSafeSet(statement, UUID_VALUE, 1);
+    verify(statement).setBytes(1, UUID_BYTES);
+  }
+
+  @Test
+  public void dualStorage_LegacyString() throws Exception
+  {
+    UuidHbm hbm = uuidHbm("dual");
+    when(resultSet.getBytes("id")).thenReturn(UUID_VALUE.toString().getBytes(StandardCharsets.US_ASCII));
+
+    assertThat(hbm.nullSafeGet(resultSet, new String[] { "id" }, null), equalTo(UUID_VALUE));
+  }
+
+  @Test
+  public void timeOrderedUuid()
+  {
+    UUID first = TimeOrderedUuidGenerator.next();
+    UUID second = TimeOrderedUuidGenerator.next();
+
+    assertThat(first.version(), equalTo(7));
+    assertThat(first.variant(), equalTo(2));
+    assertThat(second.getMostSignificantBits() >>> 16, greaterThanOrEqualTo(first.getMostSignificantBits() >>> 16));
+  }
+
+  private static UuidHbm uuidHbm(String storage)
+  {
+    Properties parameters = new Properties();
+    parameters.setProperty(UuidHbm.STORAGE_PARAMETER, storage);
+    UuidHbm hbm = new UuidHbm();
+    hbm.setParameterValues(parameters);
+    return hbm;
+  }
+}